@@ -0,0 +1,17 @@
+#!/bin/bash
+# Builds and runs the JMH benchmarks and stores the JSON results under results/, named after
+# the backend version and commit, so runs from different releases can be compared with:
+#   java -cp target/benchmarks.jar no.snabel.benchmarks.CompareResults results/<old>.json results/<new>.json
+# Extra arguments go to JMH, e.g. ./run.sh InvoiceRender -p lines=500
+set -e
+cd "$(dirname "$0")"
+
+(cd .. && ./mvnw -q install -DskipTests)
+../mvnw -q package
+
+mkdir -p results
+VERSION=$(cd .. && ./mvnw -q help:evaluate -Dexpression=project.version -DforceStdout)
+OUT="results/${VERSION}-$(git rev-parse --short HEAD).json"
+
+java -jar target/benchmarks.jar -rf json -rff "$OUT" "$@"
+echo "Results written to benchmarks/$OUT"
@@ -0,0 +1,68 @@
+package no.snabel.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH JSON result files and lists every benchmark whose score moved by more than
+ * the threshold. Exits with status 1 if any benchmark got slower by more than that.
+ *
+ * Usage: java -cp target/benchmarks.jar no.snabel.benchmarks.CompareResults old.json new.json [percent]
+ */
+public class CompareResults {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: CompareResults <baseline.json> <candidate.json> [threshold percent, default 10]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+
+        Map<String, JsonNode> baseline = load(new File(args[0]));
+        Map<String, JsonNode> candidate = load(new File(args[1]));
+
+        boolean regressed = false;
+        for (Map.Entry<String, JsonNode> entry : candidate.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            JsonNode after = entry.getValue().get("primaryMetric");
+            if (before == null) {
+                System.out.printf("NEW        %-70s %12.3f %s%n", entry.getKey(),
+                        after.get("score").asDouble(), after.get("scoreUnit").asText());
+                continue;
+            }
+            double old = before.get("primaryMetric").get("score").asDouble();
+            double now = after.get("score").asDouble();
+            double change = (now - old) / old * 100;
+            // Lower is better for time per operation, higher for throughput
+            boolean timeUnit = after.get("scoreUnit").asText().endsWith("/op");
+            double worse = timeUnit ? change : -change;
+            String verdict = worse > threshold ? "SLOWER" : worse < -threshold ? "FASTER" : "same";
+            regressed |= worse > threshold;
+            System.out.printf("%-10s %-70s %12.3f -> %12.3f %s (%+.1f%%)%n", verdict, entry.getKey(),
+                    old, now, after.get("scoreUnit").asText(), change);
+        }
+        System.exit(regressed ? 1 : 0);
+    }
+
+    private static Map<String, JsonNode> load(File file) throws Exception {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(run.get("benchmark").asText());
+            JsonNode params = run.get("params");
+            if (params != null) {
+                Iterator<Map.Entry<String, JsonNode>> fields = params.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> param = fields.next();
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+                }
+            }
+            results.put(key.toString(), run);
+        }
+        return results;
+    }
+}
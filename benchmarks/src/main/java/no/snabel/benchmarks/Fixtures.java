@@ -0,0 +1,78 @@
+package no.snabel.benchmarks;
+
+import no.snabel.model.Customer;
+import no.snabel.model.Invoice;
+import no.snabel.model.InvoiceLine;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+
+/**
+ * Detached entities shaped like a real invoice, for benchmarks that run without a database.
+ */
+public final class Fixtures {
+
+    private static final BigDecimal VAT_RATE = new BigDecimal("25.00");
+
+    private Fixtures() {
+    }
+
+    public static Customer supplier() {
+        Customer customer = new Customer();
+        customer.id = 1L;
+        customer.organizationNumber = "123456789";
+        customer.companyName = "Benchmark AS";
+        customer.address = "Testveien 1";
+        customer.postalCode = "0001";
+        customer.city = "Oslo";
+        customer.country = "Norge";
+        customer.email = "post@benchmark.no";
+        customer.phone = "+47 12345678";
+        customer.bankAccount = "12345678903";
+        return customer;
+    }
+
+    public static Invoice invoice(int lineCount) {
+        Invoice invoice = new Invoice();
+        invoice.id = 1L;
+        invoice.customer = supplier();
+        invoice.invoiceNumber = "BENCH-2024-001";
+        invoice.invoiceDate = LocalDate.of(2024, 12, 1);
+        invoice.dueDate = LocalDate.of(2024, 12, 31);
+        invoice.clientName = "Kunde AS";
+        invoice.clientOrganizationNumber = "987654321";
+        invoice.clientAddress = "Kundeveien 2";
+        invoice.clientPostalCode = "0002";
+        invoice.clientCity = "Oslo";
+        invoice.status = "SENT";
+        invoice.paymentTerms = "30 dager";
+        invoice.paymentReference = "1234567890128";
+        invoice.bankAccount = "12345678903";
+        invoice.lines = new ArrayList<>(lineCount);
+
+        BigDecimal subtotal = BigDecimal.ZERO;
+        BigDecimal vat = BigDecimal.ZERO;
+        for (int i = 1; i <= lineCount; i++) {
+            InvoiceLine line = new InvoiceLine();
+            line.invoice = invoice;
+            line.lineNumber = i;
+            line.description = "Konsulenttimer, leveranse " + i;
+            line.itemName = "Konsulenttime";
+            line.itemId = "KT-" + i;
+            line.quantity = BigDecimal.valueOf(1 + i % 8).setScale(2);
+            line.unitPrice = new BigDecimal("1250.00");
+            line.vatRate = VAT_RATE;
+            line.lineTotal = line.quantity.multiply(line.unitPrice).setScale(2, RoundingMode.HALF_UP);
+            line.vatAmount = line.lineTotal.multiply(VAT_RATE).movePointLeft(2).setScale(2, RoundingMode.HALF_UP);
+            invoice.lines.add(line);
+            subtotal = subtotal.add(line.lineTotal);
+            vat = vat.add(line.vatAmount);
+        }
+        invoice.subtotal = subtotal;
+        invoice.vatAmount = vat;
+        invoice.totalAmount = subtotal.add(vat);
+        return invoice;
+    }
+}
@@ -0,0 +1,49 @@
+package no.snabel.security;
+
+import io.quarkus.elytron.security.common.BcryptUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One password check, as done for every login and client_credentials token request that
+ * misses the client cache.
+ *
+ * The default cost is the one {@link BcryptUtil#bcryptHash(String)} uses for stored hashes;
+ * run with {@code -p cost=12} to see what raising it would cost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BcryptBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({"10"})
+    int cost;
+
+    private String hash;
+
+    @Setup
+    public void setUp() {
+        hash = BcryptUtil.bcryptHash(PASSWORD, cost);
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return BcryptUtil.matches(PASSWORD, hash);
+    }
+}
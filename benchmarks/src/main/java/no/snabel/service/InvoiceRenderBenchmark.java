@@ -0,0 +1,51 @@
+package no.snabel.service;
+
+import no.snabel.benchmarks.Fixtures;
+import no.snabel.model.Invoice;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PDF and EHF rendering of one invoice, by number of lines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class InvoiceRenderBenchmark {
+
+    @Param({"1", "50", "500"})
+    int lines;
+
+    private final InvoicePdfService pdfService = new InvoicePdfService();
+    private final EHFInvoiceService ehfService = new EHFInvoiceService();
+    private Invoice invoice;
+
+    @Setup
+    public void setUp() {
+        invoice = Fixtures.invoice(lines);
+    }
+
+    @Benchmark
+    public byte[] generatePdf() {
+        return pdfService.generatePdf(invoice);
+    }
+
+    @Benchmark
+    public String generateEHF() {
+        return ehfService.generateEHF(invoice);
+    }
+}
@@ -0,0 +1,47 @@
+#!/bin/bash
+# Runs the load test on one box: builds the backend, starts it against the local Postgres with
+# the per-IP auth throttling lifted (every request comes from 127.0.0.1), seeds the synthetic
+# tenants, drives the workload and stops the backend again.
+#
+#   loadtest/run.sh --tenants=50 --rps=300 --duration=120
+#
+# Arguments go to the load test (java -jar target/loadtest.jar --help). Set SKIP_BUILD=1 to reuse
+# the last build, and DB_URL/DB_USER/DB_PASSWORD for a database other than the default.
+set -e
+cd "$(dirname "$0")"
+
+DB_URL=${DB_URL:-jdbc:postgresql://localhost:5432/snabel_accounting}
+DB_USER=${DB_USER:-snabel}
+DB_PASSWORD=${DB_PASSWORD:-snabel}
+PORT=${PORT:-8080}
+
+if [ -z "$SKIP_BUILD" ]; then
+    (cd .. && ./mvnw -q package -DskipTests)
+    ../mvnw -q package
+fi
+
+mkdir -p target
+java -Dquarkus.http.port="$PORT" \
+     -Dquarkus.datasource.jdbc.url="$DB_URL" \
+     -Dquarkus.datasource.reactive.url="${DB_URL#jdbc:}" \
+     -Dquarkus.datasource.username="$DB_USER" \
+     -Dquarkus.datasource.password="$DB_PASSWORD" \
+     -Dsnabel.auth.rate-limit.ip.max=1000000000 \
+     -Dquarkus.log.category.\"no.snabel\".level=INFO \
+     -jar ../target/quarkus-app/quarkus-run.jar > target/backend.log 2>&1 &
+BACKEND=$!
+trap 'kill $BACKEND 2>/dev/null; wait $BACKEND 2>/dev/null' EXIT
+
+echo "Waiting for the backend on port $PORT (log: loadtest/target/backend.log)"
+for i in $(seq 1 60); do
+    if curl -s -o /dev/null "http://localhost:$PORT/q/metrics"; then
+        break
+    fi
+    if ! kill -0 $BACKEND 2>/dev/null; then
+        echo "Backend exited during startup"; tail -20 target/backend.log; exit 1
+    fi
+    sleep 1
+done
+
+java -jar target/loadtest.jar --base-url="http://localhost:$PORT" \
+     --db-url="$DB_URL" --db-user="$DB_USER" --db-password="$DB_PASSWORD" "$@"
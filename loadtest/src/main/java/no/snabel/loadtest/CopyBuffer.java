@@ -0,0 +1,82 @@
+package no.snabel.loadtest;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Streams rows into one table with {@code COPY ... FROM STDIN} (text format), sending about
+ * a megabyte at a time.
+ */
+final class CopyBuffer implements AutoCloseable {
+
+    private static final int FLUSH_BYTES = 1 << 20;
+
+    private final CopyIn copy;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(FLUSH_BYTES + 8192);
+    private final StringBuilder line = new StringBuilder(256);
+
+    CopyBuffer(Connection connection, String table, String columns) throws SQLException {
+        this.copy = connection.unwrap(PGConnection.class).getCopyAPI()
+                .copyIn("COPY " + table + " (" + columns + ") FROM STDIN");
+    }
+
+    void row(Object... values) throws SQLException {
+        line.setLength(0);
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                line.append('\t');
+            }
+            appendValue(values[i]);
+        }
+        line.append('\n');
+        buffer.writeBytes(line.toString().getBytes(StandardCharsets.UTF_8));
+        if (buffer.size() >= FLUSH_BYTES) {
+            flush();
+        }
+    }
+
+    /**
+     * Send the remaining rows and end the COPY; returns the number of rows written.
+     */
+    long finish() throws SQLException {
+        flush();
+        return copy.endCopy();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (copy.isActive()) {
+            copy.cancelCopy();
+        }
+    }
+
+    private void flush() throws SQLException {
+        if (buffer.size() > 0) {
+            copy.writeToCopy(buffer.toByteArray(), 0, buffer.size());
+            buffer.reset();
+        }
+    }
+
+    private void appendValue(Object value) {
+        if (value == null) {
+            line.append("\\N");
+            return;
+        }
+        String text = value.toString();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\' -> line.append("\\\\");
+                case '\t' -> line.append("\\t");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                default -> line.append(c);
+            }
+        }
+    }
+}
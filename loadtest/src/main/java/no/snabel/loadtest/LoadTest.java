@@ -0,0 +1,38 @@
+package no.snabel.loadtest;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.List;
+
+/**
+ * Seeds synthetic tenants, then runs the mixed workload against a running backend and reports
+ * latency percentiles, throughput and error rates per operation.
+ */
+public class LoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+
+        List<Tenant> tenants;
+        try (Connection connection = DriverManager.getConnection(options.dbUrl, options.dbUser, options.dbPassword)) {
+            if (!options.skipSeed) {
+                new TenantSeeder(options).seed(connection);
+            }
+            tenants = TenantSeeder.load(connection);
+        }
+        if (tenants.isEmpty()) {
+            System.err.println("No load-test tenants in the database; run without --skip-seed first");
+            System.exit(1);
+        }
+
+        Report report = new Report(options);
+        Workload workload = new Workload(options, tenants, report);
+        workload.loginAll();
+        workload.run();
+
+        report.print(System.out);
+        report.write(Path.of(options.report));
+        System.out.println("Report written to " + options.report);
+    }
+}
@@ -0,0 +1,17 @@
+package no.snabel.loadtest;
+
+/**
+ * Requests in the mixed workload.
+ */
+public enum Operation {
+    /** POST /api/auth/login (BCrypt verify) */
+    LOGIN,
+    /** GET /api/invoices */
+    LIST,
+    /** POST /api/invoices */
+    CREATE,
+    /** GET /api/invoices/{id}/pdf */
+    PDF,
+    /** GET /api/invoices/{id}/efaktura */
+    EHF
+}
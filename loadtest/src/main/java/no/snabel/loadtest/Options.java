@@ -0,0 +1,109 @@
+package no.snabel.loadtest;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Command line options, given as {@code --name=value}.
+ */
+public class Options {
+
+    public String dbUrl = "jdbc:postgresql://localhost:5432/snabel_accounting";
+    public String dbUser = "snabel";
+    public String dbPassword = "snabel";
+    public String baseUrl = "http://localhost:8080";
+
+    public int tenants = 20;
+    public int usersPerTenant = 5;
+    public int invoicesPerTenant = 200;
+    public int maxLinesPerInvoice = 20;
+    public int journalEntriesPerTenant = 500;
+    public long seed = 42;
+    public boolean skipSeed;
+
+    public int rps = 100;
+    public Duration warmup = Duration.ofSeconds(10);
+    public Duration duration = Duration.ofSeconds(60);
+    public int maxInFlight = 1000;
+    public final Map<Operation, Integer> mix = defaultMix();
+
+    public String report = "loadtest-report.json";
+
+    public static Options parse(String[] args) {
+        Options options = new Options();
+        for (String arg : args) {
+            if (arg.equals("--help")) {
+                usage(null);
+            }
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                usage("Unrecognized argument: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+                case "db-url" -> options.dbUrl = value;
+                case "db-user" -> options.dbUser = value;
+                case "db-password" -> options.dbPassword = value;
+                case "base-url" -> options.baseUrl = value;
+                case "tenants" -> options.tenants = Integer.parseInt(value);
+                case "users-per-tenant" -> options.usersPerTenant = Integer.parseInt(value);
+                case "invoices-per-tenant" -> options.invoicesPerTenant = Integer.parseInt(value);
+                case "max-lines-per-invoice" -> options.maxLinesPerInvoice = Integer.parseInt(value);
+                case "journal-entries-per-tenant" -> options.journalEntriesPerTenant = Integer.parseInt(value);
+                case "seed" -> options.seed = Long.parseLong(value);
+                case "skip-seed" -> options.skipSeed = Boolean.parseBoolean(value);
+                case "rps" -> options.rps = Integer.parseInt(value);
+                case "warmup" -> options.warmup = Duration.ofSeconds(Long.parseLong(value));
+                case "duration" -> options.duration = Duration.ofSeconds(Long.parseLong(value));
+                case "max-in-flight" -> options.maxInFlight = Integer.parseInt(value);
+                case "mix" -> options.mix(value);
+                case "report" -> options.report = value;
+                default -> usage("Unknown option: --" + name);
+            }
+        }
+        return options;
+    }
+
+    private static Map<Operation, Integer> defaultMix() {
+        // Insertion order matters: it fixes the operation sequence drawn for a given seed
+        Map<Operation, Integer> mix = new LinkedHashMap<>();
+        mix.put(Operation.LOGIN, 5);
+        mix.put(Operation.LIST, 40);
+        mix.put(Operation.CREATE, 20);
+        mix.put(Operation.PDF, 20);
+        mix.put(Operation.EHF, 15);
+        return mix;
+    }
+
+    // e.g. login=5,list=40,create=20,pdf=20,ehf=15; operations left out are not run
+    private void mix(String value) {
+        mix.clear();
+        for (String part : value.split(",")) {
+            String[] kv = part.split("=");
+            mix.put(Operation.valueOf(kv[0].trim().toUpperCase()), Integer.parseInt(kv[1].trim()));
+        }
+    }
+
+    private static void usage(String error) {
+        if (error != null) {
+            System.err.println(error);
+        }
+        System.err.println("""
+                Usage: java -jar loadtest.jar [--name=value ...]
+                  --db-url, --db-user, --db-password   Postgres the backend runs against
+                  --base-url                           backend URL (default http://localhost:8080)
+                  --tenants, --users-per-tenant, --invoices-per-tenant,
+                  --max-lines-per-invoice, --journal-entries-per-tenant
+                                                       synthetic data set size
+                  --seed                               random seed; same seed, same data set
+                  --skip-seed=true                     reuse tenants seeded by an earlier run
+                  --rps                                target arrival rate (requests per second)
+                  --warmup, --duration                 seconds; warmup requests are not reported
+                  --max-in-flight                      cap on outstanding requests
+                  --mix                                weights, default login=5,list=40,create=20,pdf=20,ehf=15
+                  --report                             JSON report file (default loadtest-report.json)""");
+        System.exit(error == null ? 0 : 2);
+    }
+}
@@ -0,0 +1,157 @@
+package no.snabel.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency, throughput and errors per operation for the measured part of a run.
+ *
+ * Latency is measured from when a request was scheduled to start, not from when it was sent,
+ * so time spent waiting behind a stalled client or server counts against the system instead
+ * of silently lowering the offered load.
+ */
+public class Report {
+
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(2);
+
+    private final Options options;
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+    private final Stats total = new Stats();
+    private final Instant startedAt = Instant.now();
+    private long measuredNanos;
+
+    public Report(Options options) {
+        this.options = options;
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+    }
+
+    /**
+     * @param error null for a 2xx response, otherwise the status code or exception name
+     */
+    public void record(Operation operation, long latencyNanos, String error) {
+        stats.get(operation).record(latencyNanos, error);
+        total.record(latencyNanos, error);
+    }
+
+    /** The request was never sent because max-in-flight requests were outstanding. */
+    public void dropped(Operation operation) {
+        stats.get(operation).dropped.increment();
+        total.dropped.increment();
+    }
+
+    public void setMeasuredNanos(long measuredNanos) {
+        this.measuredNanos = measuredNanos;
+    }
+
+    public void print(PrintStream out) {
+        double seconds = measuredNanos / 1e9;
+        out.printf("%nTarget %d req/s for %.0f s (after %d s warmup) against %s%n",
+                options.rps, seconds, options.warmup.toSeconds(), options.baseUrl);
+        out.printf("%-8s %9s %9s %8s %8s %9s %9s %9s %9s %9s%n",
+                "op", "requests", "req/s", "errors", "dropped", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            if (entry.getValue().histogram.getTotalCount() > 0 || entry.getValue().dropped.sum() > 0) {
+                printRow(out, entry.getKey().name().toLowerCase(), entry.getValue(), seconds);
+            }
+        }
+        printRow(out, "total", total, seconds);
+
+        Map<String, Long> errors = total.errorCounts();
+        if (!errors.isEmpty()) {
+            out.println("Errors: " + errors);
+        }
+    }
+
+    public void write(Path file) throws IOException {
+        double seconds = measuredNanos / 1e9;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("startedAt", startedAt.toString());
+        report.put("baseUrl", options.baseUrl);
+        report.put("tenants", options.tenants);
+        report.put("seed", options.seed);
+        report.put("targetRps", options.rps);
+        report.put("warmupSeconds", options.warmup.toSeconds());
+        report.put("measuredSeconds", seconds);
+        report.put("mix", options.mix);
+        Map<String, Object> operations = new LinkedHashMap<>();
+        stats.forEach((operation, s) -> operations.put(operation.name().toLowerCase(), s.toMap(seconds)));
+        report.put("operations", operations);
+        report.put("total", total.toMap(seconds));
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), report);
+    }
+
+    private static void printRow(PrintStream out, String name, Stats s, double seconds) {
+        Histogram h = s.histogram;
+        out.printf("%-8s %9d %9.1f %7.2f%% %8d %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                name, h.getTotalCount(), h.getTotalCount() / seconds, s.errorRate() * 100, s.dropped.sum(),
+                millis(h.getValueAtPercentile(50)), millis(h.getValueAtPercentile(90)),
+                millis(h.getValueAtPercentile(99)), millis(h.getValueAtPercentile(99.9)), millis(h.getMaxValue()));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static final class Stats {
+        final Histogram histogram = new ConcurrentHistogram(MAX_LATENCY_NANOS, 3);
+        final LongAdder errors = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        final Map<String, LongAdder> errorsByKind = new ConcurrentHashMap<>();
+
+        void record(long latencyNanos, String error) {
+            histogram.recordValue(Math.min(latencyNanos, MAX_LATENCY_NANOS));
+            if (error != null) {
+                errors.increment();
+                errorsByKind.computeIfAbsent(error, k -> new LongAdder()).increment();
+            }
+        }
+
+        double errorRate() {
+            long count = histogram.getTotalCount();
+            return count == 0 ? 0 : (double) errors.sum() / count;
+        }
+
+        Map<String, Long> errorCounts() {
+            Map<String, Long> counts = new TreeMap<>();
+            errorsByKind.forEach((kind, count) -> counts.put(kind, count.sum()));
+            return counts;
+        }
+
+        Map<String, Object> toMap(double seconds) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("requests", histogram.getTotalCount());
+            map.put("throughput", seconds > 0 ? histogram.getTotalCount() / seconds : 0);
+            map.put("errors", errors.sum());
+            map.put("errorRate", errorRate());
+            map.put("dropped", dropped.sum());
+            map.put("errorsByKind", errorCounts());
+            Map<String, Object> latency = new LinkedHashMap<>();
+            if (histogram.getTotalCount() > 0) {
+                latency.put("mean", histogram.getMean() / 1e6);
+                for (double percentile : new double[]{50, 90, 95, 99, 99.9}) {
+                    latency.put("p" + (percentile == 99.9 ? "99.9" : String.valueOf((int) percentile)),
+                            millis(histogram.getValueAtPercentile(percentile)));
+                }
+                latency.put("max", millis(histogram.getMaxValue()));
+            }
+            map.put("latencyMs", latency);
+            return map;
+        }
+    }
+}
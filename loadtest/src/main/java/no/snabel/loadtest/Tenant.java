@@ -0,0 +1,9 @@
+package no.snabel.loadtest;
+
+import java.util.List;
+
+/**
+ * A seeded tenant as the workload sees it: who can log in and which invoices exist.
+ */
+public record Tenant(long customerId, List<String> usernames, long[] invoiceIds) {
+}
@@ -0,0 +1,387 @@
+package no.snabel.loadtest;
+
+import io.quarkus.elytron.security.common.BcryptUtil;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Seeds synthetic tenants with COPY: a company, its users, the standard chart of accounts,
+ * invoices with lines and draft journal entries with balanced lines.
+ *
+ * Everything is derived from the seed, so the same options always produce the same data set.
+ * Ids are reserved from the table sequences up front, which lets child rows reference their
+ * parents without a round trip per row. Tenants are recognised by their company name prefix;
+ * seeding first deletes every tenant an earlier run left behind.
+ */
+public class TenantSeeder {
+
+    public static final String COMPANY_PREFIX = "Loadtest ";
+    public static final String PASSWORD = "loadtest-password";
+
+    // Fixed, so invoice and entry dates do not depend on when the seed ran
+    private static final LocalDate BASE_DATE = LocalDate.of(2025, 1, 1);
+    private static final LocalDateTime CREATED_AT = BASE_DATE.atStartOfDay();
+
+    private static final String[] CLIENTS = {
+        "Fjordkraft Handel AS", "Nordlys Bygg AS", "Bergen Kaffebrenneri AS", "Tromsø Fisk og Vilt AS",
+        "Vestland Regnskap AS", "Oslo Designbyrå AS", "Trøndelag Elektro AS", "Sørlandet Marina AS",
+        "Hadeland Glassverk Butikk AS", "Lofoten Reiseliv AS"
+    };
+    private static final String[] ITEMS = {
+        "Konsulenttimer", "Prosjektledelse", "Lisens, årlig", "Serviceavtale", "Installasjon",
+        "Reisekostnader", "Opplæring", "Support, månedlig", "Maskinvare", "Frakt"
+    };
+    private static final String[] UNITS = {"HUR", "EA", "MON", "EA", "EA", "EA", "HUR", "MON", "EA", "EA"};
+    private static final BigDecimal[] VAT_RATES = {
+        new BigDecimal("25.00"), new BigDecimal("25.00"), new BigDecimal("25.00"),
+        new BigDecimal("15.00"), new BigDecimal("0.00")
+    };
+    private static final String[] EXPENSE_ACCOUNTS = {"4000", "6100", "6300", "6340", "6540", "6700", "6900"};
+
+    private final Options options;
+
+    public TenantSeeder(Options options) {
+        this.options = options;
+    }
+
+    public void seed(Connection connection) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            deleteExisting(connection);
+
+            List<String> chart = chartOfAccounts(connection);
+            int tenants = options.tenants;
+            long[] customerIds = reserve(connection, "customers_id_seq", tenants);
+            long[] userIds = reserve(connection, "users_id_seq", tenants * options.usersPerTenant);
+            long[] accountIds = reserve(connection, "accounts_id_seq", tenants * chart.size());
+            long[] invoiceIds = reserve(connection, "invoices_id_seq", tenants * options.invoicesPerTenant);
+            long[] entryIds = reserve(connection, "journal_entries_id_seq", tenants * options.journalEntriesPerTenant);
+
+            Map<String, Integer> accountIndex = new HashMap<>();
+            for (int i = 0; i < chart.size(); i++) {
+                accountIndex.put(chart.get(i), i);
+            }
+            Accounts accounts = (tenant, number) -> {
+                Integer index = accountIndex.get(number);
+                if (index == null) {
+                    throw new IllegalStateException("Standard account " + number + " is missing");
+                }
+                return accountIds[tenant * chart.size() + index];
+            };
+
+            long start = System.nanoTime();
+            copyCustomers(connection, customerIds);
+            copyUsers(connection, customerIds, userIds);
+            copyAccounts(connection, customerIds, accountIds);
+            long lines = copyInvoices(connection, customerIds, userIds, invoiceIds, accounts);
+            long entryLines = copyJournal(connection, customerIds, userIds, entryIds, accounts);
+            connection.commit();
+
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ANALYZE customers, users, accounts, invoices, invoice_lines, "
+                        + "journal_entries, journal_entry_lines");
+            }
+            connection.commit();
+            System.out.printf("Seeded %d tenants: %d users, %d accounts, %d invoices (%d lines), "
+                            + "%d journal entries (%d lines) in %d ms%n",
+                    tenants, userIds.length, accountIds.length, invoiceIds.length, lines,
+                    entryIds.length, entryLines, (System.nanoTime() - start) / 1_000_000);
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        }
+    }
+
+    /**
+     * Tenants in the database, seeded now or by an earlier run.
+     */
+    public static List<Tenant> load(Connection connection) throws SQLException {
+        List<Tenant> tenants = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement("""
+                SELECT c.id,
+                       ARRAY(SELECT u.username FROM users u WHERE u.customer_id = c.id ORDER BY u.id),
+                       ARRAY(SELECT i.id FROM invoices i WHERE i.customer_id = c.id ORDER BY i.id)
+                FROM customers c WHERE c.company_name LIKE ? ORDER BY c.id""")) {
+            statement.setString(1, COMPANY_PREFIX + "%");
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    Array usernames = rs.getArray(2);
+                    Long[] invoiceIds = (Long[]) rs.getArray(3).getArray();
+                    long[] ids = new long[invoiceIds.length];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = invoiceIds[i];
+                    }
+                    tenants.add(new Tenant(rs.getLong(1), List.of((String[]) usernames.getArray()), ids));
+                }
+            }
+        }
+        return tenants;
+    }
+
+    private static void deleteExisting(Connection connection) throws SQLException {
+        String tenants = "(SELECT id FROM customers WHERE company_name LIKE '" + COMPANY_PREFIX + "%')";
+        try (Statement statement = connection.createStatement()) {
+            // Tables that reference customers or users without ON DELETE CASCADE
+            statement.executeUpdate("DELETE FROM audit_log WHERE customer_id IN " + tenants);
+            statement.executeUpdate("DELETE FROM journal_chain_checkpoints WHERE customer_id IN " + tenants);
+            statement.executeUpdate("DELETE FROM journal_chain_heads WHERE customer_id IN " + tenants);
+            int deleted = statement.executeUpdate("DELETE FROM customers WHERE id IN " + tenants);
+            if (deleted > 0) {
+                System.out.printf("Deleted %d tenants from an earlier run%n", deleted);
+            }
+        }
+    }
+
+    private static List<String> chartOfAccounts(Connection connection) throws SQLException {
+        List<String> numbers = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(
+                     "SELECT account_number FROM standard_accounts WHERE active ORDER BY account_number")) {
+            while (rs.next()) {
+                numbers.add(rs.getString(1));
+            }
+        }
+        return numbers;
+    }
+
+    private static long[] reserve(Connection connection, String sequence, int count) throws SQLException {
+        long[] ids = new long[count];
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT nextval(?::regclass) FROM generate_series(1, ?)")) {
+            statement.setString(1, sequence);
+            statement.setInt(2, count);
+            try (ResultSet rs = statement.executeQuery()) {
+                for (int i = 0; rs.next(); i++) {
+                    ids[i] = rs.getLong(1);
+                }
+            }
+        }
+        return ids;
+    }
+
+    private void copyCustomers(Connection connection, long[] customerIds) throws SQLException {
+        try (CopyBuffer copy = new CopyBuffer(connection, "customers",
+                "id, organization_number, company_name, contact_person, email, phone, address, postal_code, "
+                        + "city, bank_account, created_at, updated_at")) {
+            for (int t = 0; t < customerIds.length; t++) {
+                copy.row(customerIds[t], String.format("8%08d", t), COMPANY_PREFIX + (t + 1) + " AS",
+                        "Daglig leder " + (t + 1), "post@loadtest" + (t + 1) + ".no", "+47 2200" + String.format("%04d", t),
+                        "Lastveien " + (t + 1), "0150", "Oslo", String.format("1503%07d", t), CREATED_AT, CREATED_AT);
+            }
+            copy.finish();
+        }
+    }
+
+    private void copyUsers(Connection connection, long[] customerIds, long[] userIds) throws SQLException {
+        // One hash for every user; hashing thousands of passwords would dominate seeding time
+        String hash = BcryptUtil.bcryptHash(PASSWORD);
+        try (CopyBuffer copy = new CopyBuffer(connection, "users",
+                "id, customer_id, username, password_hash, email, full_name, role, created_at, updated_at")) {
+            for (int t = 0; t < customerIds.length; t++) {
+                for (int u = 0; u < options.usersPerTenant; u++) {
+                    String username = username(t, u);
+                    copy.row(userIds[t * options.usersPerTenant + u], customerIds[t], username, hash,
+                            username + "@loadtest.no", "Bruker " + (u + 1), u == 0 ? "ADMIN" : "ACCOUNTANT",
+                            CREATED_AT, CREATED_AT);
+                }
+            }
+            copy.finish();
+        }
+    }
+
+    private void copyAccounts(Connection connection, long[] customerIds, long[] accountIds) throws SQLException {
+        List<Object[]> standard = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT id, account_number, account_name, account_type, vat_code, "
+                     + "description FROM standard_accounts WHERE active ORDER BY account_number")) {
+            while (rs.next()) {
+                standard.add(new Object[]{rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                        rs.getString(5), rs.getString(6)});
+            }
+        }
+        try (CopyBuffer copy = new CopyBuffer(connection, "accounts",
+                "id, customer_id, standard_account_id, account_number, account_name, account_type, vat_code, "
+                        + "description, created_at, updated_at")) {
+            for (int t = 0; t < customerIds.length; t++) {
+                for (int a = 0; a < standard.size(); a++) {
+                    Object[] s = standard.get(a);
+                    copy.row(accountIds[t * standard.size() + a], customerIds[t], s[0], s[1], s[2], s[3], s[4], s[5],
+                            CREATED_AT, CREATED_AT);
+                }
+            }
+            copy.finish();
+        }
+    }
+
+    private long copyInvoices(Connection connection, long[] customerIds, long[] userIds, long[] invoiceIds,
+                              Accounts accounts) throws SQLException {
+        int perTenant = options.invoicesPerTenant;
+        try (CopyBuffer copy = new CopyBuffer(connection, "invoices",
+                "id, customer_id, invoice_number, invoice_date, due_date, client_name, client_organization_number, "
+                        + "client_address, client_postal_code, client_city, subtotal, vat_amount, total_amount, "
+                        + "status, payment_terms, payment_reference, created_by, created_at, updated_at, sent_at, paid_at")) {
+            for (int t = 0; t < customerIds.length; t++) {
+                for (int i = 0; i < perTenant; i++) {
+                    SplittableRandom random = random(1, t, i);
+                    int client = random.nextInt(CLIENTS.length);
+                    LocalDate invoiceDate = BASE_DATE.minusDays(random.nextInt(365));
+                    int roll = random.nextInt(10);
+                    String status = roll < 2 ? "DRAFT" : roll < 6 ? "SENT" : "PAID";
+
+                    BigDecimal subtotal = BigDecimal.ZERO;
+                    BigDecimal vat = BigDecimal.ZERO;
+                    for (InvoiceLine line : lines(t, i)) {
+                        subtotal = subtotal.add(line.total);
+                        vat = vat.add(line.vat);
+                    }
+                    LocalDateTime created = invoiceDate.atTime(9, 0);
+                    copy.row(invoiceIds[t * perTenant + i], customerIds[t],
+                            String.format("LT%d-%d-%06d", options.seed, t + 1, i + 1), invoiceDate, invoiceDate.plusDays(14),
+                            CLIENTS[client], String.format("9%08d", client), "Kundegata " + (client + 1),
+                            String.format("%04d", 1000 + client * 37), "Oslo", subtotal, vat, subtotal.add(vat), status,
+                            "14 dager", String.format("%010d", i + 1), userIds[t * options.usersPerTenant], created, created,
+                            "DRAFT".equals(status) ? null : created.plusHours(1),
+                            "PAID".equals(status) ? created.plusDays(10) : null);
+                }
+            }
+            copy.finish();
+        }
+
+        long count = 0;
+        try (CopyBuffer copy = new CopyBuffer(connection, "invoice_lines",
+                "invoice_id, line_number, description, item_name, item_id, unit_code, quantity, unit_price, vat_rate, "
+                        + "vat_amount, line_total, account_id, created_at")) {
+            for (int t = 0; t < customerIds.length; t++) {
+                for (int i = 0; i < perTenant; i++) {
+                    int number = 1;
+                    for (InvoiceLine line : lines(t, i)) {
+                        copy.row(invoiceIds[t * perTenant + i], number++, line.description, ITEMS[line.item],
+                                "ART-" + (line.item + 100), UNITS[line.item], line.quantity, line.unitPrice, line.vatRate,
+                                line.vat, line.total, accounts.id(t, revenueAccount(line.vatRate)), CREATED_AT);
+                        count++;
+                    }
+                }
+            }
+            copy.finish();
+        }
+        return count;
+    }
+
+    private long copyJournal(Connection connection, long[] customerIds, long[] userIds, long[] entryIds,
+                             Accounts accounts) throws SQLException {
+        int perTenant = options.journalEntriesPerTenant;
+        try (CopyBuffer copy = new CopyBuffer(connection, "journal_entries",
+                "id, customer_id, entry_number, entry_date, description, reference, entry_type, created_by, "
+                        + "created_at, updated_at, posted")) {
+            for (int t = 0; t < customerIds.length; t++) {
+                for (int e = 0; e < perTenant; e++) {
+                    SplittableRandom random = random(2, t, e);
+                    LocalDate date = BASE_DATE.minusDays(random.nextInt(365));
+                    boolean sale = random.nextBoolean();
+                    copy.row(entryIds[t * perTenant + e], customerIds[t], String.format("LT-%06d", e + 1), date,
+                            sale ? "Salg, " + CLIENTS[random.nextInt(CLIENTS.length)] : "Kjøp, " + ITEMS[random.nextInt(ITEMS.length)],
+                            "REF-" + (e + 1), sale ? "INVOICE" : "MANUAL", userIds[t * options.usersPerTenant],
+                            date.atTime(10, 0), date.atTime(10, 0), false);
+                }
+            }
+            copy.finish();
+        }
+
+        long count = 0;
+        try (CopyBuffer copy = new CopyBuffer(connection, "journal_entry_lines",
+                "journal_entry_id, account_id, description, debit_amount, credit_amount, vat_amount, vat_code, "
+                        + "line_number, created_at")) {
+            for (int t = 0; t < customerIds.length; t++) {
+                for (int e = 0; e < perTenant; e++) {
+                    SplittableRandom random = random(3, t, e);
+                    long entryId = entryIds[t * perTenant + e];
+                    BigDecimal net = amount(random, 500, 50_000);
+                    BigDecimal vat = net.multiply(new BigDecimal("0.25")).setScale(2, RoundingMode.HALF_UP);
+                    BigDecimal gross = net.add(vat);
+                    if (random.nextBoolean()) {
+                        // Sale on credit: receivable against revenue and output VAT
+                        copy.row(entryId, accounts.id(t, "1600"), "Kundefordring", gross, 0, 0, null, 1, CREATED_AT);
+                        copy.row(entryId, accounts.id(t, "3000"), "Salgsinntekt", 0, net, 0, "3", 2, CREATED_AT);
+                        copy.row(entryId, accounts.id(t, "2700"), "Utgående MVA", 0, vat, vat, "3", 3, CREATED_AT);
+                        count += 3;
+                    } else {
+                        // Purchase: expense and input VAT against payables or the bank
+                        String expense = EXPENSE_ACCOUNTS[random.nextInt(EXPENSE_ACCOUNTS.length)];
+                        copy.row(entryId, accounts.id(t, expense), "Kostnad", net, 0, 0, "1", 1, CREATED_AT);
+                        copy.row(entryId, accounts.id(t, "2700"), "Inngående MVA", vat, 0, vat, "1", 2, CREATED_AT);
+                        copy.row(entryId, accounts.id(t, random.nextBoolean() ? "2400" : "1900"), "Oppgjør",
+                                0, gross, 0, null, 3, CREATED_AT);
+                        count += 3;
+                    }
+                }
+            }
+            copy.finish();
+        }
+        return count;
+    }
+
+    private List<InvoiceLine> lines(int tenant, int invoice) {
+        SplittableRandom random = random(4, tenant, invoice);
+        int count = 1 + random.nextInt(options.maxLinesPerInvoice);
+        List<InvoiceLine> lines = new ArrayList<>(count);
+        for (int l = 0; l < count; l++) {
+            int item = random.nextInt(ITEMS.length);
+            BigDecimal quantity = BigDecimal.valueOf(1 + random.nextInt(20)).setScale(2);
+            BigDecimal unitPrice = amount(random, 50, 5_000);
+            BigDecimal vatRate = VAT_RATES[random.nextInt(VAT_RATES.length)];
+            BigDecimal total = quantity.multiply(unitPrice).setScale(2, RoundingMode.HALF_UP);
+            BigDecimal vat = total.multiply(vatRate).movePointLeft(2).setScale(2, RoundingMode.HALF_UP);
+            lines.add(new InvoiceLine(item, ITEMS[item] + ", periode " + (1 + random.nextInt(12)),
+                    quantity, unitPrice, vatRate, vat, total));
+        }
+        return lines;
+    }
+
+    private static String revenueAccount(BigDecimal vatRate) {
+        return switch (vatRate.intValue()) {
+            case 25 -> "3000";
+            case 15 -> "3110";
+            default -> "3300";
+        };
+    }
+
+    private static BigDecimal amount(SplittableRandom random, int min, int max) {
+        return BigDecimal.valueOf(random.nextLong(min * 100L, max * 100L), 2);
+    }
+
+    // Independent stream per (kind, tenant, row), so a row can be regenerated without the rows before it
+    private SplittableRandom random(int kind, int tenant, int row) {
+        long mixed = options.seed;
+        mixed = mixed * 0x9E3779B97F4A7C15L + kind;
+        mixed = mixed * 0x9E3779B97F4A7C15L + tenant;
+        mixed = mixed * 0x9E3779B97F4A7C15L + row;
+        return new SplittableRandom(mixed);
+    }
+
+    static String username(int tenant, int user) {
+        return String.format("lt-%d-%d", tenant + 1, user + 1);
+    }
+
+    private record InvoiceLine(int item, String description, BigDecimal quantity, BigDecimal unitPrice,
+                               BigDecimal vatRate, BigDecimal vat, BigDecimal total) {
+    }
+
+    @FunctionalInterface
+    private interface Accounts {
+        long id(int tenant, String accountNumber);
+    }
+}
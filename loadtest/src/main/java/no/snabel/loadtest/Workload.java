@@ -0,0 +1,207 @@
+package no.snabel.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the mixed workload as an open model: requests start on a fixed schedule at the target
+ * rate whether or not earlier ones have finished, which is how independent users behave.
+ *
+ * The sequence of operations, users and invoices comes from the seed, so two runs with the
+ * same options send the same requests.
+ */
+public class Workload {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(60);
+
+    private final Options options;
+    private final List<Tenant> tenants;
+    private final Report report;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpClient client;
+    private final Map<String, String> tokens = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Operation[] weighted;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+    public Workload(Options options, List<Tenant> tenants, Report report) {
+        this.options = options;
+        this.tenants = tenants;
+        this.report = report;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(executor)
+                .build();
+
+        List<Operation> slots = new ArrayList<>();
+        options.mix.forEach((operation, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                slots.add(operation);
+            }
+        });
+        if (slots.isEmpty()) {
+            throw new IllegalArgumentException("--mix has no operations");
+        }
+        this.weighted = slots.toArray(Operation[]::new);
+    }
+
+    /**
+     * Log every seeded user in once, so the measured requests carry a valid token.
+     */
+    public void loginAll() throws InterruptedException {
+        Semaphore parallel = new Semaphore(8);
+        List<CompletableFuture<?>> logins = new ArrayList<>();
+        for (Tenant tenant : tenants) {
+            for (String username : tenant.usernames()) {
+                parallel.acquire();
+                logins.add(client.sendAsync(login(username), HttpResponse.BodyHandlers.ofByteArray())
+                        .thenAccept(response -> {
+                            if (response.statusCode() != 200) {
+                                throw new IllegalStateException("Login failed for " + username + ": HTTP "
+                                        + response.statusCode() + " " + new String(response.body()));
+                            }
+                            tokens.put(username, token(response.body()));
+                        })
+                        .whenComplete((v, e) -> parallel.release()));
+            }
+        }
+        CompletableFuture.allOf(logins.toArray(CompletableFuture[]::new)).join();
+        System.out.printf("Logged in %d users%n", tokens.size());
+    }
+
+    public void run() throws InterruptedException {
+        SplittableRandom random = new SplittableRandom(options.seed);
+        long start = System.nanoTime();
+        long measureFrom = start + options.warmup.toNanos();
+        long end = measureFrom + options.duration.toNanos();
+        System.out.printf("Running %d req/s: %d s warmup, %d s measured%n",
+                options.rps, options.warmup.toSeconds(), options.duration.toSeconds());
+
+        for (long i = 0; ; i++) {
+            long intended = start + i * 1_000_000_000L / options.rps;
+            if (intended >= end) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            Operation operation = weighted[random.nextInt(weighted.length)];
+            Tenant tenant = tenants.get(random.nextInt(tenants.size()));
+            String username = tenant.usernames().get(random.nextInt(tenant.usernames().size()));
+            long invoiceId = tenant.invoiceIds().length == 0 ? 0
+                    : tenant.invoiceIds()[random.nextInt(tenant.invoiceIds().length)];
+            boolean measured = intended >= measureFrom;
+
+            if (inFlight.get() >= options.maxInFlight) {
+                if (measured) {
+                    report.dropped(operation);
+                }
+                continue;
+            }
+            inFlight.incrementAndGet();
+            HttpRequest request = request(operation, username, invoiceId, i);
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        inFlight.decrementAndGet();
+                        if (measured) {
+                            report.record(operation, System.nanoTime() - intended, errorKind(response, error));
+                        }
+                    });
+        }
+
+        long drainUntil = System.nanoTime() + REQUEST_TIMEOUT.toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < drainUntil) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        report.setMeasuredNanos(options.duration.toNanos());
+        executor.shutdownNow();
+    }
+
+    private HttpRequest request(Operation operation, String username, long invoiceId, long sequence) {
+        if (invoiceId == 0 && (operation == Operation.PDF || operation == Operation.EHF)) {
+            operation = Operation.LIST;
+        }
+        return switch (operation) {
+            case LOGIN -> login(username);
+            case LIST -> authorized(username, "/api/invoices?limit=50").GET().build();
+            case CREATE -> authorized(username, "/api/invoices")
+                    .header("Content-Type", "application/json")
+                    .POST(json(Map.of(
+                            "invoiceNumber", "LR" + runId + "-" + sequence,
+                            "invoiceDate", LocalDate.now().toString(),
+                            "dueDate", LocalDate.now().plusDays(14).toString(),
+                            "clientName", "Lastkunde AS",
+                            "subtotal", "1000.00",
+                            "vatAmount", "250.00",
+                            "totalAmount", "1250.00")))
+                    .build();
+            case PDF -> authorized(username, "/api/invoices/" + invoiceId + "/pdf").GET().build();
+            case EHF -> authorized(username, "/api/invoices/" + invoiceId + "/efaktura").GET().build();
+        };
+    }
+
+    private HttpRequest login(String username) {
+        return HttpRequest.newBuilder(URI.create(options.baseUrl + "/api/auth/login"))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(json(Map.of("username", username, "password", TenantSeeder.PASSWORD, "deviceType", "web")))
+                .build();
+    }
+
+    private HttpRequest.Builder authorized(String username, String path) {
+        return HttpRequest.newBuilder(URI.create(options.baseUrl + path))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Authorization", "Bearer " + tokens.get(username));
+    }
+
+    private HttpRequest.BodyPublisher json(Object body) {
+        try {
+            return HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String token(byte[] body) {
+        try {
+            JsonNode node = mapper.readTree(body);
+            return node.get("token").asText();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unexpected login response", e);
+        }
+    }
+
+    private static String errorKind(HttpResponse<?> response, Throwable error) {
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            return cause.getClass().getSimpleName();
+        }
+        int status = response.statusCode();
+        return status >= 200 && status < 300 ? null : "HTTP " + status;
+    }
+}
@@ -0,0 +1,37 @@
+package no.snabel.dto;
+
+import io.quarkus.hibernate.reactive.panache.common.ProjectedFieldName;
+
+import java.math.BigDecimal;
+
+/**
+ * Row of GET /api/accounts. The parent account is referenced by id (read straight from the
+ * foreign key column) rather than serialized.
+ */
+public class AccountSummary {
+    public Long id;
+    public String accountNumber;
+    public String accountName;
+    public String accountType;
+    public String vatCode;
+    public BigDecimal balance;
+    public String currency;
+    public String description;
+    public Long parentAccountId;
+    public Boolean active;
+
+    public AccountSummary(Long id, String accountNumber, String accountName, String accountType, String vatCode,
+                          BigDecimal balance, String currency, String description,
+                          @ProjectedFieldName("parentAccount.id") Long parentAccountId, Boolean active) {
+        this.id = id;
+        this.accountNumber = accountNumber;
+        this.accountName = accountName;
+        this.accountType = accountType;
+        this.vatCode = vatCode;
+        this.balance = balance;
+        this.currency = currency;
+        this.description = description;
+        this.parentAccountId = parentAccountId;
+        this.active = active;
+    }
+}
@@ -0,0 +1,29 @@
+package no.snabel.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Row of GET /api/clients. Never carries the secret hash.
+ */
+public class ApiClientSummary {
+    public Long id;
+    public String clientId;
+    public String name;
+    public String description;
+    public String scopes;
+    public LocalDateTime createdAt;
+    public LocalDateTime expiresAt;
+    public Boolean active;
+
+    public ApiClientSummary(Long id, String clientId, String name, String description, String scopes,
+                            LocalDateTime createdAt, LocalDateTime expiresAt, Boolean active) {
+        this.id = id;
+        this.clientId = clientId;
+        this.name = name;
+        this.description = description;
+        this.scopes = scopes;
+        this.createdAt = createdAt;
+        this.expiresAt = expiresAt;
+        this.active = active;
+    }
+}
@@ -0,0 +1,16 @@
+package no.snabel.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.LocalDateTime;
+
+public class AuditLogEntry {
+    public Long id;
+    public Long userId;
+    public String entityType;
+    public Long entityId;
+    public String action;
+    public JsonNode oldValues;  // For updates, only the changed fields
+    public JsonNode newValues;
+    public LocalDateTime createdAt;
+}
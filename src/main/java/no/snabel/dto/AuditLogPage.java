@@ -0,0 +1,16 @@
+package no.snabel.dto;
+
+import java.util.List;
+
+public class AuditLogPage {
+    public List<AuditLogEntry> entries;
+    public String nextCursor;  // Pass as ?cursor= to get the next page; null on the last page
+
+    public AuditLogPage() {
+    }
+
+    public AuditLogPage(List<AuditLogEntry> entries, String nextCursor) {
+        this.entries = entries;
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,25 @@
+package no.snabel.dto;
+
+import java.time.LocalDate;
+
+public class ClientUsageResponse {
+    public LocalDate date;
+    public String clientId;  // null for requests made with user tokens
+    public long requests;
+    public long errors;
+    public long bytesOut;
+    public double avgLatencyMs;
+
+    public ClientUsageResponse() {
+    }
+
+    public ClientUsageResponse(LocalDate date, String clientId, long requests, long errors, long bytesOut,
+                               long latencyMicros) {
+        this.date = date;
+        this.clientId = clientId;
+        this.requests = requests;
+        this.errors = errors;
+        this.bytesOut = bytesOut;
+        this.avgLatencyMs = requests == 0 ? 0 : latencyMicros / 1000.0 / requests;
+    }
+}
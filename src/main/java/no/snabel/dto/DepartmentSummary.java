@@ -0,0 +1,17 @@
+package no.snabel.dto;
+
+public class DepartmentSummary {
+    public Long id;
+    public String code;
+    public String name;
+    public String description;
+    public Boolean active;
+
+    public DepartmentSummary(Long id, String code, String name, String description, Boolean active) {
+        this.id = id;
+        this.code = code;
+        this.name = name;
+        this.description = description;
+        this.active = active;
+    }
+}
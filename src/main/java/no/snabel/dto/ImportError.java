@@ -0,0 +1,14 @@
+package no.snabel.dto;
+
+public class ImportError {
+    public long line;       // Line in the CSV file, the header being line 1
+    public String message;
+
+    public ImportError() {
+    }
+
+    public ImportError(long line, String message) {
+        this.line = line;
+        this.message = message;
+    }
+}
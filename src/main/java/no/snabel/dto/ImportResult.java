@@ -0,0 +1,29 @@
+package no.snabel.dto;
+
+import java.util.List;
+
+public class ImportResult {
+    public String kind;
+    public long rows;
+    public long inserted;
+    public long updated;
+    public long skipped;        // Already present, e.g. when a file is imported twice
+    public long errorCount;     // Nothing is imported when this is above zero
+    public List<ImportError> errors;  // The first errors, ordered by line
+    public long durationMillis;
+
+    public ImportResult() {
+    }
+
+    public ImportResult(String kind, long rows, long inserted, long updated, long skipped,
+                        long errorCount, List<ImportError> errors, long durationMillis) {
+        this.kind = kind;
+        this.rows = rows;
+        this.inserted = inserted;
+        this.updated = updated;
+        this.skipped = skipped;
+        this.errorCount = errorCount;
+        this.errors = errors;
+        this.durationMillis = durationMillis;
+    }
+}
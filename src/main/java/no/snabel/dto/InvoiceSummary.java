@@ -0,0 +1,46 @@
+package no.snabel.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Row of GET /api/invoices. Selected column by column, so listing never loads lines,
+ * the customer or the creating user.
+ */
+public class InvoiceSummary {
+    public Long id;
+    public String invoiceNumber;
+    public LocalDate invoiceDate;
+    public LocalDate dueDate;
+    public String clientName;
+    public String clientOrganizationNumber;
+    public BigDecimal subtotal;
+    public BigDecimal vatAmount;
+    public BigDecimal totalAmount;
+    public String currency;
+    public String status;
+    public LocalDateTime createdAt;
+    public LocalDateTime sentAt;
+    public LocalDateTime paidAt;
+
+    public InvoiceSummary(Long id, String invoiceNumber, LocalDate invoiceDate, LocalDate dueDate,
+                          String clientName, String clientOrganizationNumber, BigDecimal subtotal,
+                          BigDecimal vatAmount, BigDecimal totalAmount, String currency, String status,
+                          LocalDateTime createdAt, LocalDateTime sentAt, LocalDateTime paidAt) {
+        this.id = id;
+        this.invoiceNumber = invoiceNumber;
+        this.invoiceDate = invoiceDate;
+        this.dueDate = dueDate;
+        this.clientName = clientName;
+        this.clientOrganizationNumber = clientOrganizationNumber;
+        this.subtotal = subtotal;
+        this.vatAmount = vatAmount;
+        this.totalAmount = totalAmount;
+        this.currency = currency;
+        this.status = status;
+        this.createdAt = createdAt;
+        this.sentAt = sentAt;
+        this.paidAt = paidAt;
+    }
+}
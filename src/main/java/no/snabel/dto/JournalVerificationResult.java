@@ -0,0 +1,19 @@
+package no.snabel.dto;
+
+public class JournalVerificationResult {
+    public Long customerId;
+    public boolean valid;
+    public long entriesVerified;
+    public int segments;
+    public Long firstInvalidSeq;  // null when valid
+    public String error;
+    public long durationMs;
+
+    public JournalVerificationResult() {
+    }
+
+    public JournalVerificationResult(Long customerId) {
+        this.customerId = customerId;
+        this.valid = true;
+    }
+}
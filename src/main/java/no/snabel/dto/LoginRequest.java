@@ -4,4 +4,5 @@ public class LoginRequest {
     public String username;
     public String password;
     public String deviceType; // "web" or "app"
+    public String deviceId;   // Identifies the app installation; refresh tokens are kept per device
 }
@@ -7,6 +7,9 @@ public class LoginResponse {
     public Long customerId;
     public String role;
     public Long expiresIn; // seconds
+    public String refreshToken; // Only for app logins
+    public Long refreshExpiresIn; // seconds
+    public String deviceId; // Only for app logins; generated when the login did not send one
 
     public LoginResponse(String token, Long userId, String username, Long customerId, String role, Long expiresIn) {
         this.token = token;
@@ -0,0 +1,26 @@
+package no.snabel.dto;
+
+import java.time.LocalDate;
+
+public class ProjectSummary {
+    public Long id;
+    public String code;
+    public String name;
+    public String description;
+    public LocalDate startDate;
+    public LocalDate endDate;
+    public String status;
+    public Boolean active;
+
+    public ProjectSummary(Long id, String code, String name, String description, LocalDate startDate,
+                          LocalDate endDate, String status, Boolean active) {
+        this.id = id;
+        this.code = code;
+        this.name = name;
+        this.description = description;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.status = status;
+        this.active = active;
+    }
+}
@@ -0,0 +1,6 @@
+package no.snabel.dto;
+
+public class RefreshRequest {
+    public String refreshToken;
+    public String deviceId;
+}
@@ -5,12 +5,14 @@ import io.smallrye.mutiny.Uni;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Entity
 @Table(name = "accounts", uniqueConstraints = {
     @UniqueConstraint(columnNames = {"customer_id", "account_number"})
 })
-public class Account extends PanacheEntityBase {
+public class Account extends PanacheEntityBase implements Auditable {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -60,4 +62,18 @@ public class Account extends PanacheEntityBase {
     public static Uni<Account> findByCustomerAndNumber(Long customerId, String accountNumber) {
         return find("customer.id = ?1 and accountNumber = ?2", customerId, accountNumber).firstResult();
     }
+
+    @Override
+    public Map<String, Object> auditState() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("id", id);
+        state.put("accountNumber", accountNumber);
+        state.put("accountName", accountName);
+        state.put("accountType", accountType);
+        state.put("vatCode", vatCode);
+        state.put("currency", currency);
+        state.put("description", description);
+        state.put("active", active);
+        return state;
+    }
 }
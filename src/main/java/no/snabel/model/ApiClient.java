@@ -5,11 +5,13 @@ import io.smallrye.mutiny.Uni;
 import jakarta.persistence.*;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.UUID;
 
 @Entity
 @Table(name = "api_clients")
-public class ApiClient extends PanacheEntityBase {
+public class ApiClient extends PanacheEntityBase implements Auditable {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -60,4 +62,17 @@ public class ApiClient extends PanacheEntityBase {
             clientId = "client_" + UUID.randomUUID().toString().replace("-", "").substring(0, 24);
         }
     }
+
+    @Override
+    public Map<String, Object> auditState() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("id", id);
+        state.put("clientId", clientId);
+        state.put("name", name);
+        state.put("description", description);
+        state.put("scopes", scopes);
+        state.put("expiresAt", expiresAt);
+        state.put("active", active);
+        return state;
+    }
 }
@@ -0,0 +1,14 @@
+package no.snabel.model;
+
+import java.util.Map;
+
+/**
+ * Entities whose changes are written to audit_log.
+ *
+ * The state is a flat map of column values including "id". Associations are reduced to their ids
+ * and secrets (password and client secret hashes) are left out.
+ */
+public interface Auditable {
+
+    Map<String, Object> auditState();
+}
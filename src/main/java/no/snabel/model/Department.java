@@ -4,12 +4,14 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Entity
 @Table(name = "departments", uniqueConstraints = {
     @UniqueConstraint(columnNames = {"customer_id", "code"})
 })
-public class Department extends PanacheEntityBase {
+public class Department extends PanacheEntityBase implements Auditable {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -36,4 +38,15 @@ public class Department extends PanacheEntityBase {
     public LocalDateTime updatedAt = LocalDateTime.now();
 
     public Boolean active = true;
+
+    @Override
+    public Map<String, Object> auditState() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("id", id);
+        state.put("code", code);
+        state.put("name", name);
+        state.put("description", description);
+        state.put("active", active);
+        return state;
+    }
 }
@@ -6,11 +6,13 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Entity
 @Table(name = "invoices")
-public class Invoice extends PanacheEntityBase {
+public class Invoice extends PanacheEntityBase implements Auditable {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -108,4 +110,35 @@ public class Invoice extends PanacheEntityBase {
 
     @Column(name = "paid_at")
     public LocalDateTime paidAt;
+
+    @Override
+    public Map<String, Object> auditState() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("id", id);
+        state.put("invoiceNumber", invoiceNumber);
+        state.put("invoiceDate", invoiceDate);
+        state.put("dueDate", dueDate);
+        state.put("clientName", clientName);
+        state.put("clientOrganizationNumber", clientOrganizationNumber);
+        state.put("clientAddress", clientAddress);
+        state.put("clientPostalCode", clientPostalCode);
+        state.put("clientCity", clientCity);
+        state.put("subtotal", subtotal);
+        state.put("vatAmount", vatAmount);
+        state.put("totalAmount", totalAmount);
+        state.put("currency", currency);
+        state.put("status", status);
+        state.put("paymentTerms", paymentTerms);
+        state.put("paymentReference", paymentReference);
+        state.put("bankAccount", bankAccount);
+        state.put("buyerReference", buyerReference);
+        state.put("contractReference", contractReference);
+        state.put("orderReference", orderReference);
+        state.put("clientEndpointId", clientEndpointId);
+        state.put("clientEndpointScheme", clientEndpointScheme);
+        state.put("notes", notes);
+        state.put("sentAt", sentAt);
+        state.put("paidAt", paidAt);
+        return state;
+    }
 }
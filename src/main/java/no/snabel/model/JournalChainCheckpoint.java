@@ -0,0 +1,43 @@
+package no.snabel.model;
+
+import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+@Entity
+@Table(name = "journal_chain_checkpoints")
+@IdClass(JournalChainCheckpoint.Key.class)
+public class JournalChainCheckpoint extends PanacheEntityBase {
+
+    @Id
+    @Column(name = "customer_id")
+    public Long customerId;
+
+    @Id
+    @Column(name = "chain_seq")
+    public Long chainSeq;
+
+    @Column(name = "entry_hash", nullable = false, length = 64)
+    public String entryHash;
+
+    @Column(name = "created_at", nullable = false)
+    public LocalDateTime createdAt = LocalDateTime.now();
+
+    public static class Key implements Serializable {
+        public Long customerId;
+        public Long chainSeq;
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && Objects.equals(customerId, key.customerId)
+                    && Objects.equals(chainSeq, key.chainSeq);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(customerId, chainSeq);
+        }
+    }
+}
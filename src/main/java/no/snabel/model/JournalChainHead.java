@@ -0,0 +1,35 @@
+package no.snabel.model;
+
+import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import io.smallrye.mutiny.Uni;
+import jakarta.persistence.*;
+import no.snabel.util.JournalHasher;
+
+@Entity
+@Table(name = "journal_chain_heads")
+public class JournalChainHead extends PanacheEntityBase {
+
+    @Id
+    @Column(name = "customer_id")
+    public Long customerId;
+
+    @Column(name = "last_seq", nullable = false)
+    public Long lastSeq = 0L;
+
+    @Column(name = "last_hash", nullable = false, length = 64)
+    public String lastHash = JournalHasher.GENESIS;
+
+    /**
+     * Load the customer's chain head for update, creating it on first use.
+     * The row lock is held until the surrounding transaction ends.
+     */
+    public static Uni<JournalChainHead> lockForCustomer(Long customerId) {
+        return getSession()
+                .chain(session -> session.createNativeQuery(
+                                "INSERT INTO journal_chain_heads (customer_id, last_seq, last_hash) VALUES (?1, 0, ?2) ON CONFLICT DO NOTHING")
+                        .setParameter(1, customerId)
+                        .setParameter(2, JournalHasher.GENESIS)
+                        .executeUpdate())
+                .chain(() -> JournalChainHead.<JournalChainHead>findById(customerId, LockModeType.PESSIMISTIC_WRITE));
+    }
+}
@@ -1,9 +1,12 @@
 package no.snabel.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
 import jakarta.persistence.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 @Entity
 @Table(name = "journal_entries", uniqueConstraints = {
@@ -15,6 +18,7 @@ public class JournalEntry extends PanacheEntityBase {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     public Long id;
 
+    @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "customer_id", nullable = false)
     public Customer customer;
@@ -34,6 +38,7 @@ public class JournalEntry extends PanacheEntityBase {
     @Column(name = "entry_type", length = 50)
     public String entryType = "MANUAL"; // MANUAL, INVOICE, PAYMENT, AUTOMATED
 
+    @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "created_by")
     public User createdBy;
@@ -51,7 +56,22 @@ public class JournalEntry extends PanacheEntityBase {
 
     public Boolean reversed = false;
 
+    @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "reversed_by")
     public JournalEntry reversedBy;
+
+    @OneToMany(mappedBy = "journalEntry", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @OrderBy("lineNumber, id")
+    public List<JournalEntryLine> lines = new ArrayList<>();
+
+    // Set when the entry is posted; see JournalChainService
+    @Column(name = "chain_seq")
+    public Long chainSeq;
+
+    @Column(name = "prev_hash", length = 64)
+    public String prevHash;
+
+    @Column(name = "entry_hash", length = 64)
+    public String entryHash;
 }
@@ -5,12 +5,14 @@ import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
 import jakarta.persistence.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Entity
 @Table(name = "projects", uniqueConstraints = {
     @UniqueConstraint(columnNames = {"customer_id", "code"})
 })
-public class Project extends PanacheEntityBase {
+public class Project extends PanacheEntityBase implements Auditable {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -46,4 +48,18 @@ public class Project extends PanacheEntityBase {
     public LocalDateTime updatedAt = LocalDateTime.now();
 
     public Boolean active = true;
+
+    @Override
+    public Map<String, Object> auditState() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("id", id);
+        state.put("code", code);
+        state.put("name", name);
+        state.put("description", description);
+        state.put("startDate", startDate);
+        state.put("endDate", endDate);
+        state.put("status", status);
+        state.put("active", active);
+        return state;
+    }
 }
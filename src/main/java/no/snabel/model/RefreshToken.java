@@ -0,0 +1,59 @@
+package no.snabel.model;
+
+import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
+import io.smallrye.mutiny.Uni;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "refresh_tokens")
+public class RefreshToken extends PanacheEntityBase {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    public Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    public User user;
+
+    @Column(name = "device_id", nullable = false, length = 100)
+    public String deviceId;
+
+    @Column(name = "device_type", nullable = false, length = 20)
+    public String deviceType = "app";
+
+    @Column(name = "token_hash", unique = true, nullable = false, length = 64)
+    public String tokenHash;
+
+    @Column(name = "created_at", nullable = false)
+    public LocalDateTime createdAt = LocalDateTime.now();
+
+    @Column(name = "expires_at", nullable = false)
+    public LocalDateTime expiresAt;
+
+    @Column(name = "revoked_at")
+    public LocalDateTime revokedAt;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "replaced_by")
+    public RefreshToken replacedBy;
+
+    public static Uni<RefreshToken> findByHash(String tokenHash) {
+        return find("tokenHash", tokenHash).firstResult();
+    }
+
+    /**
+     * Marks the token as used and replaced, unless that already happened. Returns the number of
+     * rows updated, so 0 means the token was used before (or concurrently).
+     */
+    public static Uni<Integer> rotate(Long id, RefreshToken replacement) {
+        return update("revokedAt = ?1, replacedBy = ?2 where id = ?3 and revokedAt is null",
+                LocalDateTime.now(), replacement, id);
+    }
+
+    public static Uni<Integer> revokeDevice(Long userId, String deviceId) {
+        return update("revokedAt = ?1 where user.id = ?2 and deviceId = ?3 and revokedAt is null",
+                LocalDateTime.now(), userId, deviceId);
+    }
+}
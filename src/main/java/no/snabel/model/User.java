@@ -4,10 +4,12 @@ import io.quarkus.hibernate.reactive.panache.PanacheEntityBase;
 import io.smallrye.mutiny.Uni;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Entity
 @Table(name = "users")
-public class User extends PanacheEntityBase {
+public class User extends PanacheEntityBase implements Auditable {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -46,4 +48,16 @@ public class User extends PanacheEntityBase {
     public static Uni<User> findByUsername(String username) {
         return find("username", username).firstResult();
     }
+
+    @Override
+    public Map<String, Object> auditState() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("id", id);
+        state.put("username", username);
+        state.put("email", email);
+        state.put("fullName", fullName);
+        state.put("role", role);
+        state.put("active", active);
+        return state;
+    }
 }
@@ -2,12 +2,18 @@ package no.snabel.resource;
 
 import io.smallrye.mutiny.Uni;
 import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import no.snabel.dto.AccountSummary;
 import no.snabel.model.Account;
+import no.snabel.service.AccountCache;
+import no.snabel.service.AuditLogWriter;
+import no.snabel.service.Idempotent;
+import no.snabel.service.ReferenceCache;
 
-import java.util.List;
+import java.util.Map;
 
 @Path("/api/accounts")
 @Produces(MediaType.APPLICATION_JSON)
@@ -15,11 +21,20 @@ import java.util.List;
 @RolesAllowed({"USER", "ADMIN", "ACCOUNTANT"})
 public class AccountResource extends SecureResource {
 
+    @Inject
+    AccountCache accountCache;
+
+    @Inject
+    ReferenceCache referenceCache;
+
     @GET
-    public Uni<List<Account>> listAccounts() {
+    public Uni<Response> listAccounts() {
         Long customerId = getCustomerId();
-        return Account.<Account>find("customer.id = ?1 and active = true", customerId)
-                .list();
+        return accountCache.getOrLoad(customerId,
+                        () -> Account.find("customer.id = ?1 and active = true", customerId)
+                                .project(AccountSummary.class)
+                                .list())
+                .map(json -> Response.ok(json, MediaType.APPLICATION_JSON).build());
     }
 
     @GET
@@ -35,18 +50,36 @@ public class AccountResource extends SecureResource {
 
     @POST
     @RolesAllowed({"ADMIN", "ACCOUNTANT"})
+    @Idempotent
     public Uni<Response> createAccount(Account account) {
         Long customerId = getCustomerId();
         account.customer = new no.snabel.model.Customer();
         account.customer.id = customerId;
 
+        if (account.standardAccount == null || account.standardAccount.id == null) {
+            return persistNewAccount(account, customerId);
+        }
+        // The standard chart is reference data: resolve it from the cache, not the database
+        return referenceCache.standardAccount(account.standardAccount.id)
+                .chain(standard -> {
+                    if (standard != null) {
+                        account.standardAccount = standard;
+                    }
+                    return persistNewAccount(account, customerId);
+                });
+    }
+
+    private Uni<Response> persistNewAccount(Account account, Long customerId) {
         return account.persistAndFlush()
+                .invoke(a -> audit(AuditLogWriter.CREATE, account, null))
+                .call(a -> accountCache.invalidate(customerId))
                 .map(a -> Response.status(Response.Status.CREATED).entity(a).build());
     }
 
     @PUT
     @Path("/{id}")
     @RolesAllowed({"ADMIN", "ACCOUNTANT"})
+    @Idempotent
     public Uni<Response> updateAccount(@PathParam("id") Long id, Account updatedAccount) {
         Long customerId = getCustomerId();
         return Account.<Account>find("id = ?1 and customer.id = ?2", id, customerId)
@@ -55,10 +88,13 @@ public class AccountResource extends SecureResource {
                     if (account == null) {
                         return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND).build());
                     }
+                    Map<String, Object> before = account.auditState();
                     account.accountName = updatedAccount.accountName;
                     account.description = updatedAccount.description;
                     account.vatCode = updatedAccount.vatCode;
                     return account.persistAndFlush()
+                            .invoke(a -> audit(AuditLogWriter.UPDATE, account, before))
+                            .call(a -> accountCache.invalidate(customerId))
                             .map(a -> Response.ok(a).build());
                 });
     }
@@ -74,8 +110,11 @@ public class AccountResource extends SecureResource {
                     if (account == null) {
                         return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND).build());
                     }
+                    Map<String, Object> before = account.auditState();
                     account.active = false;
                     return account.persistAndFlush()
+                            .invoke(a -> audit(AuditLogWriter.DELETE, account, before))
+                            .call(a -> accountCache.invalidate(customerId))
                             .map(a -> Response.noContent().build());
                 });
     }
@@ -0,0 +1,145 @@
+package no.snabel.resource;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import no.snabel.dto.AuditLogEntry;
+import no.snabel.dto.AuditLogPage;
+import no.snabel.service.ReadReplicaRouter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Read access to audit_log, newest first.
+ *
+ * Paging is by keyset on (created_at, id) rather than OFFSET, so every page is an index range
+ * scan no matter how deep the caller pages, and a {@code from} bound prunes whole partitions.
+ */
+@Path("/api/audit")
+@Produces(MediaType.APPLICATION_JSON)
+@RolesAllowed({"ADMIN", "ACCOUNTANT"})
+public class AuditResource extends SecureResource {
+
+    private static final int MAX_LIMIT = 500;
+
+    @Inject
+    ReadReplicaRouter replicaRouter;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @GET
+    public Uni<Response> listAuditLog(
+            @QueryParam("entityType") String entityType,
+            @QueryParam("entityId") Long entityId,
+            @QueryParam("from") LocalDateTime from,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("limit") @DefaultValue("50") int limit) {
+        Long customerId = getCustomerId();
+        if (limit < 1 || limit > MAX_LIMIT) {
+            return badRequest("limit must be between 1 and " + MAX_LIMIT);
+        }
+        if (entityId != null && entityType == null) {
+            return badRequest("entityId requires entityType");
+        }
+
+        StringBuilder sql = new StringBuilder("""
+                SELECT id, user_id, entity_type, entity_id, action, old_values::text AS old_values,
+                       new_values::text AS new_values, created_at
+                FROM audit_log
+                WHERE customer_id = $1""");
+        Tuple params = Tuple.of(customerId);
+        if (entityType != null) {
+            params.addValue(entityType);
+            sql.append(" AND entity_type = $").append(params.size());
+        }
+        if (entityId != null) {
+            params.addValue(entityId);
+            sql.append(" AND entity_id = $").append(params.size());
+        }
+        if (from != null) {
+            params.addValue(from);
+            sql.append(" AND created_at >= $").append(params.size());
+        }
+        if (cursor != null) {
+            String[] position;
+            try {
+                position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(",", 2);
+                params.addValue(LocalDateTime.parse(position[0]));
+                params.addValue(Long.parseLong(position[1]));
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException | DateTimeParseException e) {
+                return badRequest("Invalid cursor");
+            }
+            sql.append(" AND (created_at, id) < ($").append(params.size() - 1)
+                    .append(", $").append(params.size()).append(")");
+        }
+        // One extra row tells whether there is a next page
+        params.addValue(limit + 1);
+        sql.append(" ORDER BY created_at DESC, id DESC LIMIT $").append(params.size());
+
+        return replicaRouter.forRead().preparedQuery(sql.toString())
+                .execute(params)
+                .map(rows -> {
+                    List<AuditLogEntry> entries = new ArrayList<>(limit);
+                    for (Row row : rows) {
+                        if (entries.size() == limit) {
+                            AuditLogEntry last = entries.get(limit - 1);
+                            return Response.ok(new AuditLogPage(entries, encodeCursor(last))).build();
+                        }
+                        entries.add(toEntry(row));
+                    }
+                    return Response.ok(new AuditLogPage(entries, null)).build();
+                });
+    }
+
+    private AuditLogEntry toEntry(Row row) {
+        AuditLogEntry entry = new AuditLogEntry();
+        entry.id = row.getLong("id");
+        entry.userId = row.getLong("user_id");
+        entry.entityType = row.getString("entity_type");
+        entry.entityId = row.getLong("entity_id");
+        entry.action = row.getString("action");
+        entry.oldValues = parseJson(row.getString("old_values"));
+        entry.newValues = parseJson(row.getString("new_values"));
+        entry.createdAt = row.getLocalDateTime("created_at");
+        return entry;
+    }
+
+    private JsonNode parseJson(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(json);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Malformed audit values", e);
+        }
+    }
+
+    private static String encodeCursor(AuditLogEntry last) {
+        String position = last.createdAt + "," + last.id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Uni<Response> badRequest(String message) {
+        return Uni.createFrom().item(
+                Response.status(Response.Status.BAD_REQUEST)
+                        .entity("{\"error\": \"" + message + "\"}")
+                        .type(MediaType.APPLICATION_JSON)
+                        .build()
+        );
+    }
+}
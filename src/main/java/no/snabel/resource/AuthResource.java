@@ -1,15 +1,23 @@
 package no.snabel.resource;
 
+import io.quarkus.security.Authenticated;
 import io.smallrye.mutiny.Uni;
+import io.vertx.core.http.HttpServerRequest;
 import jakarta.annotation.security.PermitAll;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import no.snabel.dto.LoginRequest;
 import no.snabel.dto.LoginResponse;
+import no.snabel.dto.RefreshRequest;
 import no.snabel.dto.TokenRequest;
+import no.snabel.security.HashingOverloadedException;
+import no.snabel.security.LoginRateLimiter;
+import no.snabel.security.TokenRevocationStore;
 import no.snabel.service.AuthService;
+import org.eclipse.microprofile.jwt.JsonWebToken;
 
 @Path("/api/auth")
 @Produces(MediaType.APPLICATION_JSON)
@@ -19,29 +27,73 @@ public class AuthResource {
     @Inject
     AuthService authService;
 
+    @Inject
+    LoginRateLimiter rateLimiter;
+
+    @Inject
+    TokenRevocationStore revocationStore;
+
+    @Inject
+    JsonWebToken jwt;
+
     @POST
     @Path("/login")
     @PermitAll
-    public Uni<Response> login(LoginRequest request) {
+    public Uni<Response> login(LoginRequest request, @Context HttpServerRequest httpRequest) {
+        if (!rateLimiter.tryAcquireLogin(request.username, sourceIp(httpRequest))) {
+            return Uni.createFrom().item(tooManyRequests("Too many login attempts, try again later",
+                    rateLimiter.getRetryAfterSeconds()));
+        }
+
         return authService.login(request)
                 .map(loginResponse -> Response.ok(loginResponse).build())
                 .onFailure(SecurityException.class)
                 .recoverWithItem(e -> Response.status(Response.Status.UNAUTHORIZED)
                         .entity(new ErrorResponse(e.getMessage()))
                         .build())
+                .onFailure(HashingOverloadedException.class)
+                .recoverWithItem(e -> tooManyRequests("Too many login attempts, try again later", 1))
                 .onFailure()
                 .recoverWithItem(e -> Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                         .entity(new ErrorResponse("An error occurred during login"))
                         .build());
     }
 
+    @POST
+    @Path("/refresh")
+    @PermitAll
+    public Uni<Response> refresh(RefreshRequest request) {
+        return authService.refresh(request)
+                .map(loginResponse -> Response.ok(loginResponse).build())
+                .onFailure(SecurityException.class)
+                .recoverWithItem(e -> Response.status(Response.Status.UNAUTHORIZED)
+                        .entity(new ErrorResponse(e.getMessage()))
+                        .build())
+                .onFailure()
+                .recoverWithItem(e -> Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                        .entity(new ErrorResponse("An error occurred during token refresh"))
+                        .build());
+    }
+
+    @POST
+    @Path("/logout")
+    @Authenticated
+    public Uni<Response> logout() {
+        if (jwt.getTokenID() == null) {
+            return Uni.createFrom().item(Response.noContent().build());
+        }
+        return revocationStore.revoke(jwt.getTokenID(), jwt.getExpirationTime())
+                .map(v -> Response.noContent().build());
+    }
+
     @POST
     @Path("/token")
     @PermitAll
     @Consumes(MediaType.APPLICATION_FORM_URLENCODED)
     public Uni<Response> token(@FormParam("grant_type") String grantType,
                                 @FormParam("client_id") String clientId,
-                                @FormParam("client_secret") String clientSecret) {
+                                @FormParam("client_secret") String clientSecret,
+                                @Context HttpServerRequest httpRequest) {
 
         if (!"client_credentials".equals(grantType)) {
             return Uni.createFrom().item(
@@ -51,6 +103,10 @@ public class AuthResource {
             );
         }
 
+        if (!rateLimiter.tryAcquireToken(clientId, sourceIp(httpRequest))) {
+            return Uni.createFrom().item(tooManyRequests("slow_down", rateLimiter.getRetryAfterSeconds()));
+        }
+
         TokenRequest request = new TokenRequest(grantType, clientId, clientSecret);
         return authService.clientCredentialsLogin(request)
                 .map(loginResponse -> Response.ok(loginResponse).build())
@@ -58,12 +114,26 @@ public class AuthResource {
                 .recoverWithItem(e -> Response.status(Response.Status.UNAUTHORIZED)
                         .entity(new ErrorResponse("invalid_client"))
                         .build())
+                .onFailure(HashingOverloadedException.class)
+                .recoverWithItem(e -> tooManyRequests("temporarily_unavailable", 1))
                 .onFailure()
                 .recoverWithItem(e -> Response.status(Response.Status.INTERNAL_SERVER_ERROR)
                         .entity(new ErrorResponse("server_error"))
                         .build());
     }
 
+    // The forwarded client address when the request came through a trusted proxy (quarkus.http.proxy.*)
+    private String sourceIp(HttpServerRequest httpRequest) {
+        return httpRequest.remoteAddress() != null ? httpRequest.remoteAddress().hostAddress() : null;
+    }
+
+    private Response tooManyRequests(String error, long retryAfterSeconds) {
+        return Response.status(Response.Status.TOO_MANY_REQUESTS)
+                .header("Retry-After", String.valueOf(retryAfterSeconds))
+                .entity(new ErrorResponse(error))
+                .build();
+    }
+
     public static class ErrorResponse {
         public String error;
 
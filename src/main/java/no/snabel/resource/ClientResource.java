@@ -1,22 +1,31 @@
 package no.snabel.resource;
 
-import io.quarkus.elytron.security.common.BcryptUtil;
-import io.quarkus.hibernate.reactive.panache.common.WithTransaction;
+import io.quarkus.hibernate.reactive.panache.Panache;
+import io.quarkus.hibernate.reactive.panache.common.WithSession;
 import io.smallrye.mutiny.Uni;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import no.snabel.dto.ApiClientSummary;
 import no.snabel.dto.CreateClientRequest;
 import no.snabel.dto.CreateClientResponse;
 import no.snabel.model.ApiClient;
 import no.snabel.model.Customer;
 import no.snabel.model.User;
+import no.snabel.security.ClientCredentialCache;
+import no.snabel.security.HashingOverloadedException;
+import no.snabel.security.PasswordHasher;
+import no.snabel.service.AuditLogWriter;
+import no.snabel.service.UsageMeter;
 import org.hibernate.reactive.mutiny.Mutiny;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Path("/api/clients")
 @Produces(MediaType.APPLICATION_JSON)
@@ -26,17 +35,47 @@ public class ClientResource extends SecureResource {
     @Inject
     Mutiny.SessionFactory sessionFactory;
 
+    @Inject
+    ClientCredentialCache clientCredentialCache;
+
+    @Inject
+    PasswordHasher passwordHasher;
+
+    @Inject
+    UsageMeter usageMeter;
+
+    @GET
+    @RolesAllowed({"ADMIN"})
+    @WithSession
+    public Uni<List<ApiClientSummary>> listClients() {
+        Long customerId = getCustomerId();
+        return ApiClient.find("customer.id = ?1 ORDER BY createdAt DESC", customerId)
+                .project(ApiClientSummary.class)
+                .list();
+    }
+
     @GET
+    @Path("/usage")
     @RolesAllowed({"ADMIN"})
-    @WithTransaction
-    public Uni<List<ApiClient>> listClients() {
+    public Uni<Response> getUsage(@QueryParam("from") LocalDate from,
+                                  @QueryParam("to") LocalDate to,
+                                  @QueryParam("clientId") String clientId) {
         Long customerId = getCustomerId();
-        return ApiClient.find("customer.id = ?1 ORDER BY createdAt DESC", customerId).list();
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(30);
+        if (start.isAfter(end)) {
+            return Uni.createFrom().item(
+                    Response.status(Response.Status.BAD_REQUEST)
+                            .entity("'from' must not be after 'to'")
+                            .build()
+            );
+        }
+        return usageMeter.query(customerId, start, end, clientId)
+                .map(usage -> Response.ok(usage).build());
     }
 
     @POST
     @RolesAllowed({"ADMIN"})
-    @WithTransaction
     public Uni<Response> createClient(CreateClientRequest request) {
         Long customerId = getCustomerId();
         Long userId = getUserId();
@@ -64,10 +103,15 @@ public class ClientResource extends SecureResource {
         client.name = request.name;
         client.description = request.description;
         client.scopes = request.scopes;
-        client.clientSecretHash = BcryptUtil.bcryptHash(clientSecret);
         client.createdBy = user;
 
-        return client.persist()
+        return passwordHasher.hash(clientSecret)
+                .chain(hash -> {
+                    client.clientSecretHash = hash;
+                    return Panache.withTransaction(() -> client.persistAndFlush());
+                })
+                // Only once committed: a rolled-back insert must not leave an audit entry behind
+                .invoke(v -> audit(AuditLogWriter.CREATE, client, null))
                 .map(v -> {
                     CreateClientResponse response = new CreateClientResponse(
                             client.id,
@@ -77,25 +121,41 @@ public class ClientResource extends SecureResource {
                             client.scopes
                     );
                     return Response.status(Response.Status.CREATED).entity(response).build();
-                });
+                })
+                .onFailure(HashingOverloadedException.class)
+                .recoverWithItem(e -> Response.status(Response.Status.TOO_MANY_REQUESTS)
+                        .header("Retry-After", "1")
+                        .build());
     }
 
     @DELETE
     @Path("/{id}")
     @RolesAllowed({"ADMIN"})
-    @WithTransaction
     public Uni<Response> deleteClient(@PathParam("id") Long id) {
         Long customerId = getCustomerId();
-        return ApiClient.<ApiClient>find("id = ?1 and customer.id = ?2", id, customerId)
-                .firstResult()
-                .chain(client -> {
+        AtomicReference<Map<String, Object>> before = new AtomicReference<>();
+        return Panache.withTransaction(() -> ApiClient.<ApiClient>find("id = ?1 and customer.id = ?2", id, customerId)
+                        .firstResult()
+                        .call(client -> {
+                            if (client == null) {
+                                return Uni.createFrom().voidItem();
+                            }
+                            // Soft delete
+                            before.set(client.auditState());
+                            client.active = false;
+                            return client.persistAndFlush();
+                        }))
+                // Only once committed: a node invalidated earlier could re-read the client as still
+                // active, and a rolled-back delete must not be audited
+                .call(client -> {
                     if (client == null) {
-                        return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND).build());
+                        return Uni.createFrom().voidItem();
                     }
-                    // Soft delete
-                    client.active = false;
-                    return client.persistAndFlush()
-                            .map(c -> Response.noContent().build());
-                });
+                    audit(AuditLogWriter.DELETE, client, before.get());
+                    return clientCredentialCache.invalidate(client.clientId);
+                })
+                .map(client -> client == null
+                        ? Response.status(Response.Status.NOT_FOUND).build()
+                        : Response.noContent().build());
     }
 }
@@ -2,13 +2,19 @@ package no.snabel.resource;
 
 import io.smallrye.mutiny.Uni;
 import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import no.snabel.dto.DepartmentSummary;
 import no.snabel.model.Department;
 import no.snabel.model.Customer;
+import no.snabel.service.AuditLogWriter;
+import no.snabel.service.Idempotent;
+import no.snabel.service.ReferenceCache;
 
 import java.util.List;
+import java.util.Map;
 
 @Path("/api/departments")
 @Produces(MediaType.APPLICATION_JSON)
@@ -16,15 +22,20 @@ import java.util.List;
 // @RolesAllowed({"USER", "ADMIN", "ACCOUNTANT"}) // Temporarily disabled for development
 public class DepartmentResource extends SecureResource {
 
+    @Inject
+    ReferenceCache referenceCache;
+
     @GET
-    public Uni<List<Department>> listDepartments() {
+    public Uni<List<DepartmentSummary>> listDepartments() {
         // For development, return all departments if no customer ID
         Long customerId = getCustomerId();
         if (customerId == null) {
-            return Department.<Department>find("active = true ORDER BY code")
+            return Department.find("active = true ORDER BY code")
+                    .project(DepartmentSummary.class)
                     .list();
         }
-        return Department.<Department>find("customer.id = ?1 and active = true ORDER BY code", customerId)
+        return Department.find("customer.id = ?1 and active = true ORDER BY code", customerId)
+                .project(DepartmentSummary.class)
                 .list();
     }
 
@@ -32,8 +43,7 @@ public class DepartmentResource extends SecureResource {
     @Path("/{id}")
     public Uni<Response> getDepartment(@PathParam("id") Long id) {
         Long customerId = getCustomerId();
-        return Department.<Department>find("id = ?1 and customer.id = ?2", id, customerId)
-                .firstResult()
+        return referenceCache.department(customerId, id)
                 .map(department -> department == null
                     ? Response.status(Response.Status.NOT_FOUND).build()
                     : Response.ok(department).build());
@@ -41,6 +51,7 @@ public class DepartmentResource extends SecureResource {
 
     @POST
     // @RolesAllowed({"ADMIN", "ACCOUNTANT"}) // Temporarily disabled for development
+    @Idempotent
     public Uni<Response> createDepartment(Department department) {
         Long customerId = getCustomerId();
         if (customerId != null) {
@@ -49,12 +60,14 @@ public class DepartmentResource extends SecureResource {
         }
 
         return department.persistAndFlush()
+                .invoke(d -> audit(AuditLogWriter.CREATE, department, null))
                 .map(d -> Response.status(Response.Status.CREATED).entity(d).build());
     }
 
     @PUT
     @Path("/{id}")
     // @RolesAllowed({"ADMIN", "ACCOUNTANT"}) // Temporarily disabled for development
+    @Idempotent
     public Uni<Response> updateDepartment(@PathParam("id") Long id, Department updatedDepartment) {
         Long customerId = getCustomerId();
         Uni<Department> departmentQuery;
@@ -68,11 +81,14 @@ public class DepartmentResource extends SecureResource {
             if (department == null) {
                 return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND).build());
             }
+            Map<String, Object> before = department.auditState();
             department.code = updatedDepartment.code;
             department.name = updatedDepartment.name;
             department.description = updatedDepartment.description;
             department.active = updatedDepartment.active;
             return department.persistAndFlush()
+                    .invoke(d -> audit(AuditLogWriter.UPDATE, department, before))
+                    .call(d -> referenceCache.invalidateDepartment(id))
                     .map(d -> Response.ok(d).build());
         });
     }
@@ -93,8 +109,11 @@ public class DepartmentResource extends SecureResource {
             if (department == null) {
                 return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND).build());
             }
+            Map<String, Object> before = department.auditState();
             department.active = false;
             return department.persistAndFlush()
+                    .invoke(d -> audit(AuditLogWriter.DELETE, department, before))
+                    .call(d -> referenceCache.invalidateDepartment(id))
                     .map(d -> Response.noContent().build());
         });
     }
@@ -0,0 +1,63 @@
+package no.snabel.resource;
+
+import io.smallrye.common.annotation.Blocking;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import no.snabel.dto.ImportResult;
+import no.snabel.service.BulkImportService;
+import no.snabel.service.BulkImporter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+
+@Path("/api/import")
+@Produces(MediaType.APPLICATION_JSON)
+@RolesAllowed({"ADMIN"})
+public class ImportResource extends SecureResource {
+
+    @Inject
+    BulkImportService bulkImportService;
+
+    @POST
+    @Path("/{kind}")
+    @Consumes({"text/csv", MediaType.TEXT_PLAIN})
+    @Blocking
+    public Response importCsv(@PathParam("kind") String kindName, InputStream csv) throws IOException, SQLException {
+        BulkImporter.Kind kind = BulkImporter.Kind.of(kindName);
+        if (kind == null) {
+            return Response.status(Response.Status.NOT_FOUND).build();
+        }
+
+        ImportResult result;
+        try {
+            result = bulkImportService.importCsv(getCustomerId(), getUserId(), kind, csv);
+        } catch (IllegalArgumentException e) {
+            return error(e.getMessage());
+        } catch (SQLException e) {
+            if (BulkImporter.isDataError(e)) {
+                return error(e.getMessage());
+            }
+            throw e;
+        }
+        if (result == null) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", "30")
+                    .entity("{\"error\": \"Too many imports are running, try again later\"}")
+                    .build();
+        }
+        Response.Status status = result.errorCount > 0 ? Response.Status.BAD_REQUEST : Response.Status.OK;
+        return Response.status(status).entity(result).build();
+    }
+
+    private static Response error(String message) {
+        // Messages can quote values from the file
+        String escaped = message.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", " ");
+        return Response.status(Response.Status.BAD_REQUEST)
+                .entity("{\"error\": \"" + escaped + "\"}")
+                .build();
+    }
+}
@@ -1,19 +1,29 @@
 package no.snabel.resource;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import io.smallrye.mutiny.Uni;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import no.snabel.dto.InvoiceSummary;
 import no.snabel.model.Customer;
 import no.snabel.model.Invoice;
+import no.snabel.security.RequiresScope;
+import no.snabel.service.AuditLogWriter;
 import no.snabel.service.EHFInvoiceService;
+import no.snabel.service.Idempotent;
 import no.snabel.service.InvoicePdfService;
-import org.hibernate.Hibernate;
+import no.snabel.service.InvoiceReader;
+import no.snabel.service.ReferenceCache;
+import no.snabel.service.TenantQuotaExceededException;
+import no.snabel.service.TenantQuotaService;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 @Path("/api/invoices")
 @Produces(MediaType.APPLICATION_JSON)
@@ -27,27 +37,29 @@ public class InvoiceResource extends SecureResource {
     @Inject
     InvoicePdfService invoicePdfService;
 
+    @Inject
+    TenantQuotaService quotaService;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    ReferenceCache referenceCache;
+
+    @Inject
+    InvoiceReader invoiceReader;
+
     @GET
-    public Uni<List<Invoice>> listInvoices(
+    @RequiresScope("read:invoices")
+    public Uni<List<InvoiceSummary>> listInvoices(
             @QueryParam("status") String status,
             @QueryParam("limit") @DefaultValue("50") int limit) {
-        Long customerId = getCustomerId();
-
-        String query = "customer.id = ?1";
-        if (status != null && !status.isEmpty()) {
-            query += " and status = ?2";
-            return Invoice.<Invoice>find(query, customerId, status)
-                    .page(0, limit)
-                    .list();
-        }
-
-        return Invoice.<Invoice>find(query, customerId)
-                .page(0, limit)
-                .list();
+        return invoiceReader.list(getCustomerId(), status, limit);
     }
 
     @GET
     @Path("/{id}")
+    @RequiresScope("read:invoices")
     public Uni<Response> getInvoice(@PathParam("id") Long id) {
         Long customerId = getCustomerId();
         return Invoice.<Invoice>find("id = ?1 and customer.id = ?2", id, customerId)
@@ -58,7 +70,9 @@ public class InvoiceResource extends SecureResource {
     }
 
     @POST
-    @RolesAllowed({"ADMIN", "ACCOUNTANT"})
+    @RolesAllowed({"ADMIN", "ACCOUNTANT", "CLIENT"})
+    @RequiresScope("write:invoices")
+    @Idempotent
     public Uni<Response> createInvoice(Invoice invoice) {
         Long customerId = getCustomerId();
         Long userId = getUserId();
@@ -66,20 +80,27 @@ public class InvoiceResource extends SecureResource {
         invoice.customer = new no.snabel.model.Customer();
         invoice.customer.id = customerId;
 
-        invoice.createdBy = new no.snabel.model.User();
-        invoice.createdBy.id = userId;
+        // API clients act for the company, not a user
+        if (userId != null) {
+            invoice.createdBy = new no.snabel.model.User();
+            invoice.createdBy.id = userId;
+        }
 
         invoice.status = "DRAFT";
         invoice.createdAt = LocalDateTime.now();
         invoice.updatedAt = LocalDateTime.now();
 
         return invoice.persistAndFlush()
+                .invoke(inv -> audit(AuditLogWriter.CREATE, invoice, null))
+                .invoke(inv -> countInvoice("created", customerId))
                 .map(inv -> Response.status(Response.Status.CREATED).entity(inv).build());
     }
 
     @PUT
     @Path("/{id}")
-    @RolesAllowed({"ADMIN", "ACCOUNTANT"})
+    @RolesAllowed({"ADMIN", "ACCOUNTANT", "CLIENT"})
+    @RequiresScope("write:invoices")
+    @Idempotent
     public Uni<Response> updateInvoice(@PathParam("id") Long id, Invoice updatedInvoice) {
         Long customerId = getCustomerId();
         return Invoice.<Invoice>find("id = ?1 and customer.id = ?2", id, customerId)
@@ -88,6 +109,7 @@ public class InvoiceResource extends SecureResource {
                     if (invoice == null) {
                         return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND).build());
                     }
+                    Map<String, Object> before = invoice.auditState();
                     invoice.clientName = updatedInvoice.clientName;
                     invoice.clientOrganizationNumber = updatedInvoice.clientOrganizationNumber;
                     invoice.clientAddress = updatedInvoice.clientAddress;
@@ -99,13 +121,16 @@ public class InvoiceResource extends SecureResource {
                     invoice.updatedAt = LocalDateTime.now();
 
                     return invoice.persistAndFlush()
+                            .invoke(inv -> audit(AuditLogWriter.UPDATE, invoice, before))
                             .map(inv -> Response.ok(inv).build());
                 });
     }
 
     @PUT
     @Path("/{id}/send")
-    @RolesAllowed({"ADMIN", "ACCOUNTANT"})
+    @RolesAllowed({"ADMIN", "ACCOUNTANT", "CLIENT"})
+    @RequiresScope("write:invoices")
+    @Idempotent
     public Uni<Response> sendInvoice(@PathParam("id") Long id) {
         Long customerId = getCustomerId();
         return Invoice.<Invoice>find("id = ?1 and customer.id = ?2", id, customerId)
@@ -114,18 +139,23 @@ public class InvoiceResource extends SecureResource {
                     if (invoice == null) {
                         return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND).build());
                     }
+                    Map<String, Object> before = invoice.auditState();
                     invoice.status = "SENT";
                     invoice.sentAt = LocalDateTime.now();
                     invoice.updatedAt = LocalDateTime.now();
 
                     return invoice.persistAndFlush()
+                            .invoke(inv -> audit(AuditLogWriter.UPDATE, invoice, before))
+                            .invoke(inv -> countInvoice("sent", customerId))
                             .map(inv -> Response.ok(inv).build());
                 });
     }
 
     @PUT
     @Path("/{id}/pay")
-    @RolesAllowed({"ADMIN", "ACCOUNTANT"})
+    @RolesAllowed({"ADMIN", "ACCOUNTANT", "CLIENT"})
+    @RequiresScope("write:invoices")
+    @Idempotent
     public Uni<Response> markInvoicePaid(@PathParam("id") Long id) {
         Long customerId = getCustomerId();
         return Invoice.<Invoice>find("id = ?1 and customer.id = ?2", id, customerId)
@@ -134,11 +164,14 @@ public class InvoiceResource extends SecureResource {
                     if (invoice == null) {
                         return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND).build());
                     }
+                    Map<String, Object> before = invoice.auditState();
                     invoice.status = "PAID";
                     invoice.paidAt = LocalDateTime.now();
                     invoice.updatedAt = LocalDateTime.now();
 
                     return invoice.persistAndFlush()
+                            .invoke(inv -> audit(AuditLogWriter.UPDATE, invoice, before))
+                            .invoke(inv -> countInvoice("paid", customerId))
                             .map(inv -> Response.ok(inv).build());
                 });
     }
@@ -146,74 +179,70 @@ public class InvoiceResource extends SecureResource {
     @GET
     @Path("/{id}/pdf")
     @Produces("application/pdf")
+    @RequiresScope("read:invoices")
     public Uni<Response> downloadInvoicePdf(@PathParam("id") Long id) {
         Long customerId = getCustomerId();
-        return Invoice.<Invoice>find("id = ?1 and customer.id = ?2", id, customerId)
-                .firstResult()
+        return invoiceReader.withLines(id, customerId)
                 .chain(invoice -> {
                     if (invoice == null) {
                         return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND).build());
                     }
 
-                    // Fetch related entities
-                    return fetchInvoiceWithRelations(invoice)
-                            .map(inv -> {
-                                try {
-                                    byte[] pdfBytes = invoicePdfService.generatePdf(inv);
-                                    return Response.ok(pdfBytes)
-                                            .header("Content-Disposition",
-                                                    "attachment; filename=\"faktura-" + inv.invoiceNumber + ".pdf\"")
-                                            .build();
-                                } catch (Exception e) {
-                                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                                            .entity("{\"error\": \"Failed to generate PDF: " + e.getMessage() + "\"}")
-                                            .type(MediaType.APPLICATION_JSON)
-                                            .build();
-                                }
-                            });
+                    // Render on the tenant's share of the worker pool
+                    return referenceCache.customer(customerId)
+                            .chain(supplier -> quotaService.submit(customerId,
+                                    () -> invoicePdfService.generatePdf(invoice, supplier)))
+                            .map(pdfBytes -> Response.ok(pdfBytes)
+                                    .header("Content-Disposition",
+                                            "attachment; filename=\"faktura-" + invoice.invoiceNumber + ".pdf\"")
+                                    .build())
+                            .onFailure(TenantQuotaExceededException.class).recoverWithItem(this::quotaExceeded)
+                            .onFailure().recoverWithItem(e -> Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                                    .entity("{\"error\": \"Failed to generate PDF: " + e.getMessage() + "\"}")
+                                    .type(MediaType.APPLICATION_JSON)
+                                    .build());
                 });
     }
 
     @GET
     @Path("/{id}/efaktura")
     @Produces(MediaType.APPLICATION_XML)
+    @RequiresScope("read:invoices")
     public Uni<Response> downloadInvoiceEfaktura(@PathParam("id") Long id) {
         Long customerId = getCustomerId();
-        return Invoice.<Invoice>find("id = ?1 and customer.id = ?2", id, customerId)
-                .firstResult()
+        return invoiceReader.withLines(id, customerId)
                 .chain(invoice -> {
                     if (invoice == null) {
                         return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND).build());
                     }
 
-                    // Fetch related entities
-                    return fetchInvoiceWithRelations(invoice)
-                            .map(inv -> {
-                                try {
-                                    String ehfXml = eFakturaService.generateEHF(inv);
-                                    return Response.ok(ehfXml)
-                                            .header("Content-Disposition",
-                                                    "attachment; filename=\"efaktura-" + inv.invoiceNumber + ".xml\"")
-                                            .build();
-                                } catch (Exception e) {
-                                    return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
-                                            .entity("{\"error\": \"Failed to generate eFaktura: " + e.getMessage() + "\"}")
-                                            .type(MediaType.APPLICATION_JSON)
-                                            .build();
-                                }
-                            });
+                    // Render on the tenant's share of the worker pool
+                    return referenceCache.customer(customerId)
+                            .chain(supplier -> quotaService.submit(customerId,
+                                    () -> eFakturaService.generateEHF(invoice, supplier)))
+                            .map(ehfXml -> Response.ok(ehfXml)
+                                    .header("Content-Disposition",
+                                            "attachment; filename=\"efaktura-" + invoice.invoiceNumber + ".xml\"")
+                                    .build())
+                            .onFailure(TenantQuotaExceededException.class).recoverWithItem(this::quotaExceeded)
+                            .onFailure().recoverWithItem(e -> Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                                    .entity("{\"error\": \"Failed to generate eFaktura: " + e.getMessage() + "\"}")
+                                    .type(MediaType.APPLICATION_JSON)
+                                    .build());
                 });
     }
 
-    /**
-     * Fetch invoice with all related entities needed for document generation
-     */
-    private Uni<Invoice> fetchInvoiceWithRelations(Invoice invoice) {
-        return Uni.createFrom().item(() -> {
-            // Initialize lazy-loaded associations
-            Hibernate.initialize(invoice.lines);
-            Hibernate.initialize(invoice.customer);
-            return invoice;
-        });
+    private Response quotaExceeded(Throwable e) {
+        return Response.status(Response.Status.TOO_MANY_REQUESTS)
+                .header("Retry-After", "5")
+                .entity("{\"error\": \"" + e.getMessage() + "\"}")
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+
+    private void countInvoice(String event, Long customerId) {
+        registry.counter("snabel.invoices",
+                "event", event,
+                "tier", quotaService.tierOf(customerId).name().toLowerCase(Locale.ROOT)).increment();
     }
 }
@@ -0,0 +1,146 @@
+package no.snabel.resource;
+
+import io.quarkus.hibernate.reactive.panache.common.WithTransaction;
+import io.smallrye.mutiny.Uni;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import no.snabel.model.Account;
+import no.snabel.model.Customer;
+import no.snabel.model.JournalEntry;
+import no.snabel.model.JournalEntryLine;
+import no.snabel.model.User;
+import no.snabel.service.Idempotent;
+import no.snabel.service.JournalChainService;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+
+@Path("/api/journal")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+@RolesAllowed({"ADMIN", "ACCOUNTANT"})
+public class JournalResource extends SecureResource {
+
+    @Inject
+    JournalChainService journalChainService;
+
+    @GET
+    @Path("/{id}")
+    public Uni<Response> getEntry(@PathParam("id") Long id) {
+        Long customerId = getCustomerId();
+        return findWithLines(id, customerId)
+                .map(entry -> entry == null
+                    ? Response.status(Response.Status.NOT_FOUND).build()
+                    : Response.ok(entry).build());
+    }
+
+    @POST
+    @WithTransaction
+    @Idempotent
+    public Uni<Response> createEntry(JournalEntry entry) {
+        Long customerId = getCustomerId();
+        Long userId = getUserId();
+
+        entry.customer = new Customer();
+        entry.customer.id = customerId;
+        if (userId != null) {
+            entry.createdBy = new User();
+            entry.createdBy.id = userId;
+        }
+
+        // Drafts only; sealing happens in /post
+        entry.posted = false;
+        entry.postedAt = null;
+        entry.chainSeq = null;
+        entry.prevHash = null;
+        entry.entryHash = null;
+        entry.createdAt = LocalDateTime.now();
+        entry.updatedAt = LocalDateTime.now();
+        if (entry.lines == null || entry.lines.isEmpty()) {
+            return Uni.createFrom().item(badRequest("Journal entry needs at least one line"));
+        }
+        Set<Long> accountIds = new HashSet<>();
+        int lineNumber = 1;
+        for (JournalEntryLine line : entry.lines) {
+            if (line.accountId == null) {
+                return Uni.createFrom().item(badRequest("Every line needs an accountId"));
+            }
+            accountIds.add(line.accountId);
+            line.journalEntry = entry;
+            if (line.lineNumber == null) {
+                line.lineNumber = lineNumber;
+            }
+            lineNumber++;
+        }
+
+        // The foreign key accepts any company's account; a line sealed into the chain cannot be undone
+        return Account.count("id in ?1 and customer.id = ?2", accountIds, customerId)
+                .chain(owned -> owned != accountIds.size()
+                        ? Uni.createFrom().item(badRequest("Unknown account in journal lines"))
+                        : entry.persistAndFlush()
+                                .map(e -> Response.status(Response.Status.CREATED).entity(e).build()));
+    }
+
+    @POST
+    @Path("/{id}/post")
+    @WithTransaction
+    @Idempotent
+    public Uni<Response> postEntry(@PathParam("id") Long id) {
+        Long customerId = getCustomerId();
+        return findWithLines(id, customerId)
+                .chain(entry -> {
+                    if (entry == null) {
+                        return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND).build());
+                    }
+                    if (Boolean.TRUE.equals(entry.posted)) {
+                        return Uni.createFrom().item(badRequest("Journal entry is already posted"));
+                    }
+                    if (entry.lines.size() < 2) {
+                        return Uni.createFrom().item(badRequest("Journal entry needs at least two lines"));
+                    }
+                    BigDecimal debit = BigDecimal.ZERO;
+                    BigDecimal credit = BigDecimal.ZERO;
+                    for (JournalEntryLine line : entry.lines) {
+                        debit = debit.add(line.debitAmount != null ? line.debitAmount : BigDecimal.ZERO);
+                        credit = credit.add(line.creditAmount != null ? line.creditAmount : BigDecimal.ZERO);
+                    }
+                    if (debit.compareTo(credit) != 0) {
+                        return Uni.createFrom().item(badRequest("Debit and credit do not balance"));
+                    }
+
+                    entry.updatedAt = LocalDateTime.now();
+                    return journalChainService.seal(entry)
+                            .map(e -> Response.ok(e).build());
+                });
+    }
+
+    /**
+     * Recompute the caller's whole journal chain.
+     */
+    @GET
+    @Path("/verify")
+    @RolesAllowed("ADMIN")
+    public Uni<Response> verifyChain() {
+        Long customerId = getCustomerId();
+        return journalChainService.verify(customerId)
+                .map(result -> Response.ok(result).build());
+    }
+
+    private static Uni<JournalEntry> findWithLines(Long id, Long customerId) {
+        return JournalEntry.<JournalEntry>find(
+                        "from JournalEntry e left join fetch e.lines where e.id = ?1 and e.customer.id = ?2", id, customerId)
+                .firstResult();
+    }
+
+    private static Response badRequest(String message) {
+        return Response.status(Response.Status.BAD_REQUEST)
+                .entity("{\"error\": \"" + message + "\"}")
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+}
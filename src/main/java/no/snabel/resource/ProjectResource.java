@@ -2,13 +2,19 @@ package no.snabel.resource;
 
 import io.smallrye.mutiny.Uni;
 import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import no.snabel.dto.ProjectSummary;
 import no.snabel.model.Project;
 import no.snabel.model.Customer;
+import no.snabel.service.AuditLogWriter;
+import no.snabel.service.Idempotent;
+import no.snabel.service.ReferenceCache;
 
 import java.util.List;
+import java.util.Map;
 
 @Path("/api/projects")
 @Produces(MediaType.APPLICATION_JSON)
@@ -16,24 +22,31 @@ import java.util.List;
 // @RolesAllowed({"USER", "ADMIN", "ACCOUNTANT"}) // Temporarily disabled for development
 public class ProjectResource extends SecureResource {
 
+    @Inject
+    ReferenceCache referenceCache;
+
     @GET
-    public Uni<List<Project>> listProjects(
+    public Uni<List<ProjectSummary>> listProjects(
             @QueryParam("status") @DefaultValue("ACTIVE") String status) {
         Long customerId = getCustomerId();
         // For development, return all projects if no customer ID
         if (customerId == null) {
             if ("ALL".equals(status)) {
-                return Project.<Project>find("active = true ORDER BY code")
+                return Project.find("active = true ORDER BY code")
+                        .project(ProjectSummary.class)
                         .list();
             }
-            return Project.<Project>find("active = true and status = ?1 ORDER BY code", status)
+            return Project.find("active = true and status = ?1 ORDER BY code", status)
+                    .project(ProjectSummary.class)
                     .list();
         }
         if ("ALL".equals(status)) {
-            return Project.<Project>find("customer.id = ?1 ORDER BY code", customerId)
+            return Project.find("customer.id = ?1 ORDER BY code", customerId)
+                    .project(ProjectSummary.class)
                     .list();
         }
-        return Project.<Project>find("customer.id = ?1 and status = ?2 ORDER BY code", customerId, status)
+        return Project.find("customer.id = ?1 and status = ?2 ORDER BY code", customerId, status)
+                .project(ProjectSummary.class)
                 .list();
     }
 
@@ -41,8 +54,7 @@ public class ProjectResource extends SecureResource {
     @Path("/{id}")
     public Uni<Response> getProject(@PathParam("id") Long id) {
         Long customerId = getCustomerId();
-        return Project.<Project>find("id = ?1 and customer.id = ?2", id, customerId)
-                .firstResult()
+        return referenceCache.project(customerId, id)
                 .map(project -> project == null
                     ? Response.status(Response.Status.NOT_FOUND).build()
                     : Response.ok(project).build());
@@ -50,6 +62,7 @@ public class ProjectResource extends SecureResource {
 
     @POST
     // @RolesAllowed({"ADMIN", "ACCOUNTANT"}) // Temporarily disabled for development
+    @Idempotent
     public Uni<Response> createProject(Project project) {
         Long customerId = getCustomerId();
         if (customerId != null) {
@@ -58,12 +71,14 @@ public class ProjectResource extends SecureResource {
         }
 
         return project.persistAndFlush()
+                .invoke(p -> audit(AuditLogWriter.CREATE, project, null))
                 .map(p -> Response.status(Response.Status.CREATED).entity(p).build());
     }
 
     @PUT
     @Path("/{id}")
     // @RolesAllowed({"ADMIN", "ACCOUNTANT"}) // Temporarily disabled for development
+    @Idempotent
     public Uni<Response> updateProject(@PathParam("id") Long id, Project updatedProject) {
         Long customerId = getCustomerId();
         Uni<Project> projectQuery;
@@ -77,6 +92,7 @@ public class ProjectResource extends SecureResource {
             if (project == null) {
                 return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND).build());
             }
+            Map<String, Object> before = project.auditState();
             project.code = updatedProject.code;
             project.name = updatedProject.name;
             project.description = updatedProject.description;
@@ -85,6 +101,8 @@ public class ProjectResource extends SecureResource {
             project.status = updatedProject.status;
             project.active = updatedProject.active;
             return project.persistAndFlush()
+                    .invoke(p -> audit(AuditLogWriter.UPDATE, project, before))
+                    .call(p -> referenceCache.invalidateProject(id))
                     .map(p -> Response.ok(p).build());
         });
     }
@@ -105,8 +123,11 @@ public class ProjectResource extends SecureResource {
             if (project == null) {
                 return Uni.createFrom().item(Response.status(Response.Status.NOT_FOUND).build());
             }
+            Map<String, Object> before = project.auditState();
             project.active = false;
             return project.persistAndFlush()
+                    .invoke(p -> audit(AuditLogWriter.DELETE, project, before))
+                    .call(p -> referenceCache.invalidateProject(id))
                     .map(p -> Response.noContent().build());
         });
     }
@@ -1,40 +1,40 @@
 package no.snabel.resource;
 
 import jakarta.inject.Inject;
-import org.eclipse.microprofile.jwt.JsonWebToken;
+import no.snabel.model.Auditable;
+import no.snabel.security.TenantContext;
+import no.snabel.service.AuditLogWriter;
+
+import java.util.Map;
 
 public abstract class SecureResource {
 
     @Inject
-    JsonWebToken jwt;
+    TenantContext tenant;
+
+    @Inject
+    AuditLogWriter auditLog;
 
     protected Long getCustomerId() {
-        Object claim = jwt.getClaim("customerId");
-        if (claim instanceof Number) {
-            return ((Number) claim).longValue();
-        }
-        if (claim != null) {
-            return Long.valueOf(claim.toString());
-        }
-        return null;
+        return tenant.getCustomerId();
     }
 
     protected Long getUserId() {
-        Object claim = jwt.getClaim("userId");
-        if (claim instanceof Number) {
-            return ((Number) claim).longValue();
-        }
-        if (claim != null) {
-            return Long.valueOf(claim.toString());
-        }
-        return null;
+        return tenant.getUserId();
     }
 
     protected String getRole() {
-        return jwt.getClaim("role");
+        return tenant.getRole();
     }
 
     protected String getUsername() {
-        return jwt.getName();
+        return tenant.getUsername();
+    }
+
+    /**
+     * Queue an audit_log entry for a change made by the current caller.
+     */
+    protected void audit(String action, Auditable entity, Map<String, Object> before) {
+        auditLog.record(getCustomerId(), getUserId(), action, entity, before);
     }
 }
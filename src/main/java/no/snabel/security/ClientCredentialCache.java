@@ -0,0 +1,129 @@
+package no.snabel.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import no.snabel.service.ClusterNotifier;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Short-lived cache of client credentials that already passed BCrypt verification.
+ *
+ * Entries are keyed by clientId and an HMAC of the presented secret under a key that is
+ * generated at startup and never leaves the process, so the cache holds no secret material.
+ * An entry lives for at most the configured TTL and never beyond the client's expiresAt.
+ */
+@ApplicationScoped
+public class ClientCredentialCache {
+
+    static final String TOPIC = "api_clients";
+
+    @Inject
+    ClusterNotifier clusterNotifier;
+
+    @ConfigProperty(name = "snabel.auth.client-cache.max-size", defaultValue = "10000")
+    long maxSize;
+
+    @ConfigProperty(name = "snabel.auth.client-cache.ttl", defaultValue = "300")
+    long ttlSeconds;
+
+    private final byte[] hmacKey = new byte[32];
+
+    private Cache<CacheKey, VerifiedClient> cache;
+
+    public record VerifiedClient(String clientId, Long customerId, String scopes, LocalDateTime expiresAt) {
+    }
+
+    record CacheKey(String clientId, String secretMac) {
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        new SecureRandom().nextBytes(hmacKey);
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<CacheKey, VerifiedClient>() {
+                    @Override
+                    public long expireAfterCreate(CacheKey key, VerifiedClient value, long currentTime) {
+                        long ttl = Duration.ofSeconds(ttlSeconds).toNanos();
+                        if (value.expiresAt() == null) {
+                            return ttl;
+                        }
+                        long untilExpiry = Duration.between(LocalDateTime.now(), value.expiresAt()).toNanos();
+                        return Math.max(0, Math.min(ttl, untilExpiry));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(CacheKey key, VerifiedClient value, long currentTime,
+                                                  long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(CacheKey key, VerifiedClient value, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        clusterNotifier.subscribe(TOPIC, this::onInvalidation);
+    }
+
+    /**
+     * Return the verified client if this exact clientId/secret pair was verified recently, else null.
+     */
+    public VerifiedClient lookup(String clientId, String clientSecret) {
+        if (clientId == null || clientSecret == null) {
+            return null;
+        }
+        CacheKey key = new CacheKey(clientId, mac(clientSecret));
+        VerifiedClient verified = cache.getIfPresent(key);
+        if (verified != null && verified.expiresAt() != null && verified.expiresAt().isBefore(LocalDateTime.now())) {
+            cache.invalidate(key);
+            return null;
+        }
+        return verified;
+    }
+
+    public void put(String clientSecret, VerifiedClient verified) {
+        cache.put(new CacheKey(verified.clientId(), mac(clientSecret)), verified);
+    }
+
+    /**
+     * Forget every cached secret for the client on all nodes, e.g. when it is deactivated.
+     */
+    public Uni<Void> invalidate(String clientId) {
+        return clusterNotifier.publish(TOPIC, clientId);
+    }
+
+    private void onInvalidation(String clientId) {
+        if (ClusterNotifier.ALL.equals(clientId)) {
+            cache.invalidateAll();
+        } else {
+            cache.asMap().keySet().removeIf(key -> key.clientId().equals(clientId));
+        }
+    }
+
+    private String mac(String secret) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(hmacKey, "HmacSHA256"));
+            return Base64.getEncoder().encodeToString(mac.doFinal(secret.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+}
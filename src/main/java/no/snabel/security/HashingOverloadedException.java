@@ -0,0 +1,11 @@
+package no.snabel.security;
+
+/**
+ * Thrown when the password hashing pool is saturated and the request should be shed.
+ */
+public class HashingOverloadedException extends RuntimeException {
+
+    public HashingOverloadedException() {
+        super("Password hashing capacity exceeded");
+    }
+}
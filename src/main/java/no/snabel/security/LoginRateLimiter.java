@@ -0,0 +1,153 @@
+package no.snabel.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Vertx;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Throttles login and token requests per username, clientId and source IP.
+ *
+ * Checks are made in memory before any database lookup or hash check. When cluster sync is
+ * enabled, local hits are periodically pushed to the auth_rate_limits table and the
+ * cluster-wide totals are pulled back, so an attack spread over several nodes is still seen.
+ */
+@ApplicationScoped
+public class LoginRateLimiter {
+
+    private static final Logger LOG = Logger.getLogger(LoginRateLimiter.class);
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    Pool pool;
+
+    @ConfigProperty(name = "snabel.auth.rate-limit.window", defaultValue = "60")
+    long windowSeconds;
+
+    @ConfigProperty(name = "snabel.auth.rate-limit.user.max", defaultValue = "10")
+    long maxPerUser;
+
+    @ConfigProperty(name = "snabel.auth.rate-limit.client.max", defaultValue = "60")
+    long maxPerClient;
+
+    @ConfigProperty(name = "snabel.auth.rate-limit.ip.max", defaultValue = "100")
+    long maxPerIp;
+
+    @ConfigProperty(name = "snabel.auth.rate-limit.max-keys", defaultValue = "100000")
+    long maxKeys;
+
+    @ConfigProperty(name = "snabel.auth.rate-limit.cluster.enabled", defaultValue = "false")
+    boolean clusterEnabled;
+
+    @ConfigProperty(name = "snabel.auth.rate-limit.cluster.sync-interval", defaultValue = "2000")
+    long syncIntervalMillis;
+
+    private long windowMillis;
+
+    private Cache<String, SlidingWindowCounter> counters;
+
+    private long syncTimer = -1;
+
+    void onStart(@Observes StartupEvent event) {
+        windowMillis = Duration.ofSeconds(windowSeconds).toMillis();
+        counters = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofMillis(2 * windowMillis))
+                .build();
+        if (clusterEnabled) {
+            syncTimer = vertx.setPeriodic(syncIntervalMillis, id -> syncWithCluster());
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (syncTimer >= 0) {
+            vertx.cancelTimer(syncTimer);
+        }
+    }
+
+    /**
+     * Record a password login attempt. Returns false if the caller must be rejected.
+     */
+    public boolean tryAcquireLogin(String username, String sourceIp) {
+        // Non-short-circuit: the attempt counts against every key even if one is already over
+        return tryAcquire("u:" + username, maxPerUser, username != null)
+                & tryAcquire("ip:" + sourceIp, maxPerIp, sourceIp != null);
+    }
+
+    /**
+     * Record a client_credentials token request. Returns false if the caller must be rejected.
+     */
+    public boolean tryAcquireToken(String clientId, String sourceIp) {
+        return tryAcquire("c:" + clientId, maxPerClient, clientId != null)
+                & tryAcquire("ip:" + sourceIp, maxPerIp, sourceIp != null);
+    }
+
+    public long getRetryAfterSeconds() {
+        long now = System.currentTimeMillis();
+        return Math.max(1, (windowMillis - now % windowMillis) / 1000);
+    }
+
+    private boolean tryAcquire(String key, long limit, boolean applicable) {
+        if (!applicable) {
+            return true;
+        }
+        SlidingWindowCounter counter = counters.get(key, k -> new SlidingWindowCounter(windowMillis));
+        return counter.incrementAndEstimate(System.currentTimeMillis()) <= limit;
+    }
+
+    private void syncWithCluster() {
+        List<String> keys = new ArrayList<>();
+        List<Long> windows = new ArrayList<>();
+        List<Long> deltas = new ArrayList<>();
+        counters.asMap().forEach((key, counter) -> counter.drainUnpushed((window, delta) -> {
+            keys.add(key);
+            windows.add(window);
+            deltas.add(delta);
+        }));
+
+        long currentWindow = System.currentTimeMillis() / windowMillis;
+        long interesting = Math.max(1, Math.min(maxPerUser, Math.min(maxPerClient, maxPerIp)) / 2);
+
+        Uni<Void> push = keys.isEmpty()
+                ? Uni.createFrom().voidItem()
+                : pool.preparedQuery("""
+                        INSERT INTO auth_rate_limits (limit_key, window_start, hits)
+                        SELECT * FROM unnest($1::varchar[], $2::bigint[], $3::bigint[])
+                        ON CONFLICT (limit_key, window_start)
+                        DO UPDATE SET hits = auth_rate_limits.hits + EXCLUDED.hits""")
+                        .execute(Tuple.of(keys.toArray(new String[0]), windows.toArray(new Long[0]),
+                                deltas.toArray(new Long[0])))
+                        .replaceWithVoid();
+
+        push.chain(() -> pool.preparedQuery(
+                        "SELECT limit_key, window_start, hits FROM auth_rate_limits WHERE window_start >= $1 AND hits >= $2")
+                        .execute(Tuple.of(currentWindow - 1, interesting)))
+                .invoke(rows -> {
+                    for (Row row : rows) {
+                        counters.get(row.getString("limit_key"), k -> new SlidingWindowCounter(windowMillis))
+                                .updateGlobal(row.getLong("window_start"), row.getLong("hits"));
+                    }
+                })
+                .chain(() -> pool.preparedQuery("DELETE FROM auth_rate_limits WHERE window_start < $1")
+                        .execute(Tuple.of(currentWindow - 1)))
+                .subscribe().with(
+                        rows -> { },
+                        e -> LOG.warnf("Rate limit cluster sync failed: %s", e.getMessage()));
+    }
+}
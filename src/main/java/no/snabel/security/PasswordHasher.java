@@ -0,0 +1,128 @@
+package no.snabel.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.quarkus.elytron.security.common.BcryptUtil;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.WorkerExecutor;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs BCrypt hashing and verification on a dedicated worker pool.
+ *
+ * BCrypt is deliberately slow, so it must never run on the event loop. The pool has its own
+ * bounded backlog; once it is full new work fails fast with {@link HashingOverloadedException}
+ * instead of queueing behind a login storm. Results are delivered back on the caller's
+ * Vert.x context, so Hibernate Reactive sessions can be used in the continuation.
+ * Time spent in BCrypt itself is recorded in the {@code snabel.auth.bcrypt} timer and in a
+ * span under the caller's trace.
+ */
+@ApplicationScoped
+public class PasswordHasher {
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    Tracer tracer;
+
+    @ConfigProperty(name = "snabel.auth.hash-pool.size", defaultValue = "4")
+    int poolSize;
+
+    @ConfigProperty(name = "snabel.auth.hash-pool.queue-limit", defaultValue = "64")
+    int queueLimit;
+
+    private WorkerExecutor executor;
+    private Timer hashTimer;
+    private Timer verifyTimer;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    void onStart(@Observes StartupEvent event) {
+        executor = vertx.createSharedWorkerExecutor("snabel-bcrypt", poolSize);
+        hashTimer = Timer.builder("snabel.auth.bcrypt").tag("op", "hash").register(registry);
+        verifyTimer = Timer.builder("snabel.auth.bcrypt").tag("op", "verify").register(registry);
+        Gauge.builder("snabel.auth.bcrypt.in.flight", inFlight, AtomicInteger::get).register(registry);
+        FunctionCounter.builder("snabel.auth.bcrypt.rejected", rejected, LongAdder::sum).register(registry);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (executor != null) {
+            executor.closeAndForget();
+        }
+    }
+
+    public Uni<Boolean> matches(String plainText, String hash) {
+        return submit("verify", verifyTimer, () -> BcryptUtil.matches(plainText, hash));
+    }
+
+    public Uni<String> hash(String plainText) {
+        return submit("hash", hashTimer, () -> BcryptUtil.bcryptHash(plainText));
+    }
+
+    private <T> Uni<T> submit(String op, Timer timer, Callable<T> task) {
+        return Uni.createFrom().deferred(() -> {
+            Context parent = Context.current();
+            if (inFlight.incrementAndGet() > poolSize + queueLimit) {
+                inFlight.decrementAndGet();
+                rejected.increment();
+                return Uni.createFrom().failure(new HashingOverloadedException());
+            }
+            return executor.executeBlocking(() -> traced(parent, op, () -> timer.recordCallable(task)), false)
+                    .onTermination().invoke(() -> {
+                        inFlight.decrementAndGet();
+                        completed.increment();
+                    });
+        });
+    }
+
+    private <T> T traced(Context parent, String op, Callable<T> task) throws Exception {
+        Span span = tracer.spanBuilder("bcrypt " + op).setParent(parent).startSpan();
+        try (Scope ignored = span.makeCurrent()) {
+            return task.call();
+        } catch (Exception e) {
+            span.recordException(e);
+            span.setStatus(StatusCode.ERROR);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Hash operations currently running or waiting for a worker.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+}
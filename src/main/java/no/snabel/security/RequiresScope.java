@@ -0,0 +1,22 @@
+package no.snabel.security;
+
+import jakarta.enterprise.util.Nonbinding;
+import jakarta.interceptor.InterceptorBinding;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Scopes a CLIENT token must carry to call the endpoint. User tokens are governed by
+ * roles only and are not affected.
+ */
+@InterceptorBinding
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RequiresScope {
+
+    @Nonbinding
+    String[] value() default {};
+}
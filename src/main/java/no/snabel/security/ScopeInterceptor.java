@@ -0,0 +1,31 @@
+package no.snabel.security;
+
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.interceptor.AroundInvoke;
+import jakarta.interceptor.Interceptor;
+import jakarta.interceptor.InvocationContext;
+import jakarta.ws.rs.ForbiddenException;
+
+@RequiresScope
+@Interceptor
+@Priority(Interceptor.Priority.PLATFORM_BEFORE + 100)
+public class ScopeInterceptor {
+
+    @Inject
+    TenantContext tenant;
+
+    @Inject
+    ScopeRequirements requirements;
+
+    @AroundInvoke
+    Object checkScopes(InvocationContext context) throws Exception {
+        if (tenant.isClientToken()) {
+            long required = requirements.of(context.getMethod());
+            if (!ScopeRegistry.grants(tenant.getScopes(), required)) {
+                throw new ForbiddenException("Client is missing a required scope");
+            }
+        }
+        return context.proceed();
+    }
+}
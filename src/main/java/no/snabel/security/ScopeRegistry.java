@@ -0,0 +1,70 @@
+package no.snabel.security;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fixed registry of the OAuth2 scopes an API client can be granted.
+ *
+ * Each scope owns one bit, so a token's scopes become a single long and checking an endpoint's
+ * requirement is one AND. Unknown scopes in a token are ignored; unknown scopes in a
+ * {@link RequiresScope} annotation are a programming error and fail fast.
+ */
+public final class ScopeRegistry {
+
+    public static final List<String> SCOPES = List.of(
+            "read:accounts",
+            "write:accounts",
+            "read:invoices",
+            "write:invoices",
+            "read:projects",
+            "write:projects",
+            "read:departments",
+            "write:departments"
+    );
+
+    private static final Map<String, Long> BITS = new HashMap<>();
+
+    static {
+        for (int i = 0; i < SCOPES.size(); i++) {
+            BITS.put(SCOPES.get(i), 1L << i);
+        }
+    }
+
+    private ScopeRegistry() {
+    }
+
+    /**
+     * Parse a comma-separated scopes claim, e.g. "read:accounts,write:invoices".
+     */
+    public static long parse(String scopes) {
+        if (scopes == null || scopes.isEmpty()) {
+            return 0L;
+        }
+        long bits = 0L;
+        for (String scope : scopes.split(",")) {
+            Long bit = BITS.get(scope.trim());
+            if (bit != null) {
+                bits |= bit;
+            }
+        }
+        return bits;
+    }
+
+    public static long mask(String... scopes) {
+        long bits = 0L;
+        for (String scope : scopes) {
+            Long bit = BITS.get(scope);
+            if (bit == null) {
+                throw new IllegalArgumentException("Unknown scope: " + scope);
+            }
+            bits |= bit;
+        }
+        return bits;
+    }
+
+    public static boolean grants(long granted, long required) {
+        return (granted & required) == required;
+    }
+}
@@ -0,0 +1,72 @@
+package no.snabel.security;
+
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Any;
+import jakarta.enterprise.inject.spi.Bean;
+import jakarta.enterprise.inject.spi.BeanManager;
+import jakarta.inject.Inject;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Required scope mask of every {@link RequiresScope} endpoint, resolved from all beans at
+ * startup. An unknown scope in an annotation fails the boot instead of the first request.
+ */
+@ApplicationScoped
+public class ScopeRequirements {
+
+    @Inject
+    BeanManager beanManager;
+
+    private volatile Map<Method, Long> masks = Map.of();
+
+    void onStart(@Observes StartupEvent event) {
+        Map<Method, Long> resolved = new HashMap<>();
+        for (Bean<?> bean : beanManager.getBeans(Object.class, Any.Literal.INSTANCE)) {
+            resolved.putAll(resolve(bean.getBeanClass()));
+        }
+        masks = Map.copyOf(resolved);
+    }
+
+    /**
+     * The mask the interceptor checks for an intercepted method.
+     */
+    long of(Method method) {
+        Long mask = masks.get(method);
+        // A bean the scan did not see is resolved on the spot
+        return mask != null ? mask : requiredMask(method);
+    }
+
+    /**
+     * Masks for the methods of the class and its superclasses that carry the annotation, directly
+     * or through their declaring class.
+     */
+    static Map<Method, Long> resolve(Class<?> beanClass) {
+        Map<Method, Long> resolved = new HashMap<>();
+        for (Class<?> c = beanClass; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Method method : c.getDeclaredMethods()) {
+                if (method.isAnnotationPresent(RequiresScope.class) || c.isAnnotationPresent(RequiresScope.class)) {
+                    try {
+                        resolved.put(method, requiredMask(method));
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalStateException("@RequiresScope on " + c.getName() + "." + method.getName()
+                                + ": " + e.getMessage(), e);
+                    }
+                }
+            }
+        }
+        return resolved;
+    }
+
+    private static long requiredMask(Method method) {
+        RequiresScope annotation = method.getAnnotation(RequiresScope.class);
+        if (annotation == null) {
+            annotation = method.getDeclaringClass().getAnnotation(RequiresScope.class);
+        }
+        return annotation == null ? 0L : ScopeRegistry.mask(annotation.value());
+    }
+}
@@ -0,0 +1,99 @@
+package no.snabel.security;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Approximate sliding-window counter built from two fixed windows.
+ *
+ * The estimate is the current window's hits plus the previous window's hits weighted by how
+ * much of it still overlaps the sliding window. Increments go to a striped {@link LongAdder};
+ * rolling over to a new window is a single CAS. A hit racing with the rollover may be lost,
+ * which is acceptable for throttling.
+ *
+ * Hits reported by other nodes are kept separately per window so that local hits can be
+ * pushed to the shared table as deltas without counting them twice.
+ */
+final class SlidingWindowCounter {
+
+    private final long windowMillis;
+    private final Bucket[] buckets = {new Bucket(), new Bucket()};
+
+    private static final class Bucket {
+        final AtomicLong window = new AtomicLong(-1);
+        final LongAdder hits = new LongAdder();
+        volatile long remoteHits;
+        volatile long pushedHits;
+    }
+
+    interface DeltaConsumer {
+        void accept(long window, long delta);
+    }
+
+    SlidingWindowCounter(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Record a hit and return the estimated number of hits in the sliding window, including it.
+     */
+    long incrementAndEstimate(long nowMillis) {
+        long window = nowMillis / windowMillis;
+        bucket(window).hits.increment();
+        return estimate(nowMillis);
+    }
+
+    long estimate(long nowMillis) {
+        long window = nowMillis / windowMillis;
+        Bucket current = bucket(window);
+        Bucket previous = buckets[(int) ((window - 1) & 1)];
+
+        long currentHits = current.hits.sum() + current.remoteHits;
+        long previousHits = previous.window.get() == window - 1
+                ? previous.hits.sum() + previous.remoteHits
+                : 0;
+        long elapsed = nowMillis - window * windowMillis;
+        return currentHits + previousHits * (windowMillis - elapsed) / windowMillis;
+    }
+
+    /**
+     * Hand local hits not yet pushed to the shared table to the consumer, and mark them pushed.
+     */
+    void drainUnpushed(DeltaConsumer consumer) {
+        for (Bucket bucket : buckets) {
+            long window = bucket.window.get();
+            if (window < 0) {
+                continue;
+            }
+            long total = bucket.hits.sum();
+            long delta = total - bucket.pushedHits;
+            if (delta > 0) {
+                bucket.pushedHits = total;
+                consumer.accept(window, delta);
+            }
+        }
+    }
+
+    /**
+     * Record the cluster-wide count for a window; the part not pushed by this node counts as remote.
+     */
+    void updateGlobal(long window, long globalHits) {
+        Bucket bucket = buckets[(int) (window & 1)];
+        if (bucket.window.get() == window) {
+            bucket.remoteHits = Math.max(0, globalHits - bucket.pushedHits);
+        } else if (bucket.window.get() < window) {
+            bucket(window).remoteHits = globalHits;
+        }
+    }
+
+    private Bucket bucket(long window) {
+        Bucket bucket = buckets[(int) (window & 1)];
+        long seen = bucket.window.get();
+        if (seen < window && bucket.window.compareAndSet(seen, window)) {
+            bucket.hits.reset();
+            bucket.remoteHits = 0;
+            bucket.pushedHits = 0;
+        }
+        return bucket;
+    }
+}
@@ -0,0 +1,82 @@
+package no.snabel.security;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+
+/**
+ * Who the current request acts for, read from the JWT once per request.
+ *
+ * Resources, interceptors, logging and metrics use this instead of reading claims
+ * themselves. All values are null (and scopes 0) for unauthenticated requests.
+ */
+@RequestScoped
+public class TenantContext {
+
+    /** Key of the customerId in the request's Vert.x context locals, for code outside CDI request scope. */
+    public static final String CUSTOMER_ID_LOCAL = "snabel.customerId";
+
+    @Inject
+    JsonWebToken jwt;
+
+    private Long customerId;
+    private Long userId;
+    private String role;
+    private String username;
+    private String clientId;
+    private boolean clientToken;
+    private long scopes;
+
+    @PostConstruct
+    void init() {
+        customerId = toLong(jwt.getClaim("customerId"));
+        userId = toLong(jwt.getClaim("userId"));
+        role = jwt.getClaim("role");
+        username = jwt.getName();
+        clientId = jwt.getClaim("clientId");
+        clientToken = "client".equals(jwt.getClaim("tokenType"));
+        scopes = ScopeRegistry.parse(jwt.getClaim("scopes"));
+    }
+
+    public Long getCustomerId() {
+        return customerId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public boolean isClientToken() {
+        return clientToken;
+    }
+
+    /**
+     * Granted scopes as a {@link ScopeRegistry} bitset.
+     */
+    public long getScopes() {
+        return scopes;
+    }
+
+    private static Long toLong(Object claim) {
+        if (claim instanceof Number) {
+            return ((Number) claim).longValue();
+        }
+        if (claim != null) {
+            return Long.valueOf(claim.toString());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,43 @@
+package no.snabel.security;
+
+import io.smallrye.common.vertx.ContextLocals;
+import io.vertx.ext.web.RoutingContext;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Priorities;
+import no.snabel.service.UsageMeter;
+import org.jboss.logging.MDC;
+import org.jboss.resteasy.reactive.server.ServerRequestFilter;
+import org.jboss.resteasy.reactive.server.ServerResponseFilter;
+
+/**
+ * Resolves the {@link TenantContext} right after authentication and exposes it to logging,
+ * the {@link UsageMeter} and the HTTP metrics.
+ */
+public class TenantContextFilter {
+
+    @Inject
+    TenantContext tenant;
+
+    @ServerRequestFilter(priority = Priorities.AUTHENTICATION + 2)
+    public void resolveTenant(RoutingContext routingContext) {
+        if (tenant.getCustomerId() != null) {
+            MDC.put("customerId", tenant.getCustomerId());
+            routingContext.put(UsageMeter.CUSTOMER_ID, tenant.getCustomerId());
+            ContextLocals.put(TenantContext.CUSTOMER_ID_LOCAL, tenant.getCustomerId());
+        }
+        if (tenant.getUserId() != null) {
+            MDC.put("userId", tenant.getUserId());
+        }
+        if (tenant.getClientId() != null) {
+            MDC.put("clientId", tenant.getClientId());
+            routingContext.put(UsageMeter.CLIENT_ID, tenant.getClientId());
+        }
+    }
+
+    @ServerResponseFilter
+    public void clearTenant() {
+        MDC.remove("customerId");
+        MDC.remove("userId");
+        MDC.remove("clientId");
+    }
+}
@@ -0,0 +1,33 @@
+package no.snabel.security;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.jwt.JsonWebToken;
+import org.jboss.resteasy.reactive.server.ServerRequestFilter;
+
+import java.util.Optional;
+
+/**
+ * Rejects requests carrying a revoked JWT. The check is in memory only.
+ */
+public class TokenRevocationFilter {
+
+    @Inject
+    JsonWebToken jwt;
+
+    @Inject
+    TokenRevocationStore revocationStore;
+
+    @ServerRequestFilter(priority = Priorities.AUTHENTICATION + 1)
+    public Optional<Response> rejectRevokedTokens() {
+        if (jwt.getRawToken() == null || !revocationStore.isRevoked(jwt.getTokenID())) {
+            return Optional.empty();
+        }
+        return Optional.of(Response.status(Response.Status.UNAUTHORIZED)
+                .entity("{\"error\": \"Token has been revoked\"}")
+                .type(MediaType.APPLICATION_JSON)
+                .build());
+    }
+}
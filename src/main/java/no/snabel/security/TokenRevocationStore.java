@@ -0,0 +1,171 @@
+package no.snabel.security;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Vertx;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.RowSet;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import no.snabel.service.ClusterNotifier;
+import no.snabel.util.BloomFilter;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory denylist of revoked JWT ids.
+ *
+ * Lookups hit a Bloom filter first, so the common case (token not revoked) is a few bit tests.
+ * Only on a Bloom hit is the exact set consulted. The database table is the source of truth:
+ * new revocations are pushed to other nodes over the cluster channel, and every node also
+ * polls for rows revoked since its last sync, so a missed notification is picked up within one
+ * sync interval.
+ *
+ * The poll goes by revoked_at (the inserting transaction's start time) rather than by id: ids
+ * are handed out before commit, so a row can become visible after a higher id already was. Each
+ * poll therefore reaches back sync-overlap seconds before the previous one, and the whole table
+ * is reloaded after the notification listener reconnects and every full-sync-interval.
+ */
+@ApplicationScoped
+public class TokenRevocationStore {
+
+    private static final Logger LOG = Logger.getLogger(TokenRevocationStore.class);
+
+    static final String TOPIC = "revoked_tokens";
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    Pool pool;
+
+    @Inject
+    ClusterNotifier clusterNotifier;
+
+    @ConfigProperty(name = "snabel.auth.revocation.expected-entries", defaultValue = "100000")
+    long expectedEntries;
+
+    @ConfigProperty(name = "snabel.auth.revocation.sync-interval", defaultValue = "30000")
+    long syncIntervalMillis;
+
+    @ConfigProperty(name = "snabel.auth.revocation.sync-overlap", defaultValue = "60")
+    long syncOverlapSeconds;
+
+    @ConfigProperty(name = "snabel.auth.revocation.full-sync-interval", defaultValue = "600000")
+    long fullSyncIntervalMillis;
+
+    // jti -> expiry (epoch seconds)
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    private volatile BloomFilter filter;
+
+    // Database time at the start of the last successful sync; null until the first full load
+    private volatile LocalDateTime syncedAt;
+
+    private volatile long lastFullSyncMillis;
+
+    private long syncTimer = -1;
+
+    void onStart(@Observes StartupEvent event) {
+        filter = new BloomFilter(expectedEntries, 0.001);
+        clusterNotifier.subscribe(TOPIC, this::onNotification);
+        sync(true).subscribe().with(
+                v -> { },
+                e -> LOG.warnf("Initial load of revoked tokens failed: %s", e.getMessage()));
+        syncTimer = vertx.setPeriodic(syncIntervalMillis, id -> sync(
+                        System.currentTimeMillis() - lastFullSyncMillis >= fullSyncIntervalMillis)
+                .subscribe().with(
+                        v -> { },
+                        e -> LOG.warnf("Revoked token sync failed: %s", e.getMessage())));
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (syncTimer >= 0) {
+            vertx.cancelTimer(syncTimer);
+        }
+    }
+
+    /**
+     * Per-request check; never touches the database.
+     */
+    public boolean isRevoked(String jti) {
+        return jti != null && filter.mightContain(jti) && revoked.containsKey(jti);
+    }
+
+    public Uni<Void> revoke(String jti, long expiresAtEpochSecond) {
+        LocalDateTime expiresAt = LocalDateTime.ofInstant(Instant.ofEpochSecond(expiresAtEpochSecond),
+                ZoneId.systemDefault());
+        return pool.preparedQuery("INSERT INTO revoked_tokens (jti, expires_at) VALUES ($1, $2) ON CONFLICT (jti) DO NOTHING")
+                .execute(Tuple.of(jti, expiresAt))
+                .chain(() -> clusterNotifier.publish(TOPIC, jti + "@" + expiresAtEpochSecond));
+    }
+
+    private void onNotification(String key) {
+        if (ClusterNotifier.ALL.equals(key)) {
+            // Reconnected; anything could have been missed meanwhile
+            sync(true).subscribe().with(
+                    v -> { },
+                    e -> LOG.warnf("Reload of revoked tokens after reconnect failed: %s", e.getMessage()));
+            return;
+        }
+        int separator = key.lastIndexOf('@');
+        if (separator > 0) {
+            add(key.substring(0, separator), Long.parseLong(key.substring(separator + 1)));
+        }
+    }
+
+    private void add(String jti, long expiresAtEpochSecond) {
+        revoked.put(jti, expiresAtEpochSecond);
+        filter.add(jti);
+    }
+
+    private Uni<Void> sync(boolean full) {
+        LocalDateTime previous = syncedAt;
+        boolean reload = full || previous == null;
+        return pool.query("SELECT LOCALTIMESTAMP AS now").execute()
+                .chain(clock -> {
+                    LocalDateTime now = clock.iterator().next().getLocalDateTime("now");
+                    Uni<RowSet<Row>> rows = reload
+                            ? pool.preparedQuery("SELECT jti, expires_at FROM revoked_tokens WHERE expires_at > $1")
+                                    .execute(Tuple.of(now))
+                            : pool.preparedQuery("SELECT jti, expires_at FROM revoked_tokens WHERE revoked_at >= $1 AND expires_at > $2")
+                                    .execute(Tuple.of(previous.minusSeconds(syncOverlapSeconds), now));
+                    return rows.invoke(result -> {
+                        for (Row row : result) {
+                            add(row.getString("jti"),
+                                    row.getLocalDateTime("expires_at").atZone(ZoneId.systemDefault()).toEpochSecond());
+                        }
+                        syncedAt = now;
+                        if (reload) {
+                            lastFullSyncMillis = System.currentTimeMillis();
+                        }
+                        purgeExpired();
+                    });
+                })
+                .chain(() -> pool.preparedQuery("DELETE FROM revoked_tokens WHERE expires_at < $1")
+                        .execute(Tuple.of(LocalDateTime.now().minusDays(1))))
+                .replaceWithVoid();
+    }
+
+    private void purgeExpired() {
+        long now = Instant.now().getEpochSecond();
+        if (revoked.values().removeIf(expiresAt -> expiresAt < now)) {
+            // A Bloom filter cannot forget entries, so rebuild it from what is left
+            BloomFilter rebuilt = new BloomFilter(Math.max(expectedEntries, revoked.size() * 2L), 0.001);
+            revoked.keySet().forEach(rebuilt::add);
+            filter = rebuilt;
+            // Entries added to the old filter while we were rebuilding
+            revoked.keySet().forEach(rebuilt::add);
+        }
+    }
+}
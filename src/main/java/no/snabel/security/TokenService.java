@@ -3,9 +3,17 @@ package no.snabel.security;
 import io.smallrye.jwt.build.Jwt;
 import jakarta.enterprise.context.ApplicationScoped;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.jwt.Claims;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.time.Duration;
+import java.util.Base64;
+import java.util.HexFormat;
 import java.util.Set;
+import java.util.UUID;
 
 @ApplicationScoped
 public class TokenService {
@@ -13,19 +21,25 @@ public class TokenService {
     @ConfigProperty(name = "snabel.jwt.duration.web", defaultValue = "86400")
     Long webTokenDuration;
 
-    @ConfigProperty(name = "snabel.jwt.duration.app", defaultValue = "2592000")
-    Long appTokenDuration;
+    @ConfigProperty(name = "snabel.jwt.duration.app", defaultValue = "900")
+    Long appTokenDuration;  // 15 minutes; apps renew it with their refresh token
 
     @ConfigProperty(name = "snabel.jwt.duration.client", defaultValue = "3600")
     Long clientTokenDuration;  // 1 hour for client credentials
 
+    @ConfigProperty(name = "snabel.jwt.duration.refresh", defaultValue = "7776000")
+    Long refreshTokenDuration;  // 90 days, rotated on every use
+
     @ConfigProperty(name = "mp.jwt.verify.issuer", defaultValue = "https://snabel.no")
     String issuer;
 
+    private final SecureRandom secureRandom = new SecureRandom();
+
     public String generateToken(Long userId, String username, Long customerId, String role, String deviceType) {
         long duration = "app".equalsIgnoreCase(deviceType) ? appTokenDuration : webTokenDuration;
 
         return Jwt.issuer(issuer)
+                .claim(Claims.jti, UUID.randomUUID().toString())
                 .upn(username)
                 .claim("userId", userId)
                 .claim("customerId", customerId)
@@ -39,6 +53,7 @@ public class TokenService {
 
     public String generateClientToken(String clientId, Long customerId, String scopes) {
         return Jwt.issuer(issuer)
+                .claim(Claims.jti, UUID.randomUUID().toString())
                 .upn(clientId)  // Use clientId as principal
                 .claim("clientId", clientId)
                 .claim("customerId", customerId)
@@ -56,4 +71,29 @@ public class TokenService {
     public Long getClientTokenDuration() {
         return clientTokenDuration;
     }
+
+    /**
+     * Opaque refresh token; only its hash is stored, see {@link #hashRefreshToken(String)}.
+     */
+    public String generateRefreshToken() {
+        byte[] bytes = new byte[32];
+        secureRandom.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    /**
+     * Refresh tokens carry 256 bits of randomness, so a fast hash is enough (no BCrypt needed).
+     */
+    public String hashRefreshToken(String refreshToken) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(refreshToken.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public Long getRefreshTokenDuration() {
+        return refreshTokenDuration;
+    }
 }
@@ -0,0 +1,93 @@
+package no.snabel.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Per-tenant cache of the serialized account list.
+ *
+ * Entries are dropped when an account is written on any node (see {@link ClusterNotifier}),
+ * evicted by size, and expire after the TTL, which bounds staleness should a NOTIFY be lost.
+ */
+@ApplicationScoped
+public class AccountCache {
+
+    static final String TOPIC = "accounts";
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    ClusterNotifier clusterNotifier;
+
+    @ConfigProperty(name = "snabel.cache.accounts.max-tenants", defaultValue = "1000")
+    long maxTenants;
+
+    @ConfigProperty(name = "snabel.cache.accounts.ttl", defaultValue = "300")
+    long ttlSeconds;
+
+    private Cache<Long, byte[]> cache;
+
+    // Bumped on every invalidation so a load that raced with a write is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    void onStart(@Observes StartupEvent event) {
+        cache = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .maximumSize(maxTenants)
+                .build();
+        clusterNotifier.subscribe(TOPIC, this::onInvalidation);
+    }
+
+    public Uni<byte[]> getOrLoad(Long customerId, Supplier<Uni<? extends List<?>>> loader) {
+        byte[] cached = cache.getIfPresent(customerId);
+        if (cached != null) {
+            return Uni.createFrom().item(cached);
+        }
+        long loadGeneration = generation.get();
+        return loader.get().map(accounts -> {
+            byte[] json = serialize(accounts);
+            if (generation.get() == loadGeneration) {
+                cache.put(customerId, json);
+            }
+            return json;
+        });
+    }
+
+    /**
+     * Drop the tenant's entry here and on all other nodes. Call after the write is flushed.
+     */
+    public Uni<Void> invalidate(Long customerId) {
+        return clusterNotifier.publish(TOPIC, String.valueOf(customerId));
+    }
+
+    private void onInvalidation(String key) {
+        generation.incrementAndGet();
+        if (ClusterNotifier.ALL.equals(key)) {
+            cache.invalidateAll();
+        } else {
+            cache.invalidate(Long.valueOf(key));
+        }
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize account list", e);
+        }
+    }
+}
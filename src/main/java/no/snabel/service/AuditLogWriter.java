@@ -0,0 +1,222 @@
+package no.snabel.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Vertx;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import no.snabel.model.Auditable;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Hibernate;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes entity changes to audit_log in the background.
+ *
+ * Request threads only snapshot the entity and enqueue; diffing, JSON serialization and the
+ * INSERT happen on the flush timer, one multi-row statement per batch. The queue is bounded:
+ * when it is full the change is dropped and counted rather than stalling the request. On
+ * graceful shutdown the queue is drained before the pool closes.
+ */
+@ApplicationScoped
+public class AuditLogWriter {
+
+    private static final Logger LOG = Logger.getLogger(AuditLogWriter.class);
+
+    public static final String CREATE = "CREATE";
+    public static final String UPDATE = "UPDATE";
+    public static final String DELETE = "DELETE";
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    Pool pool;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @ConfigProperty(name = "snabel.audit.queue-capacity", defaultValue = "10000")
+    int queueCapacity;
+
+    @ConfigProperty(name = "snabel.audit.batch-size", defaultValue = "500")
+    int batchSize;
+
+    @ConfigProperty(name = "snabel.audit.flush-interval", defaultValue = "1000")
+    long flushIntervalMillis;
+
+    private BlockingQueue<Entry> queue;
+
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private long flushTimer = -1;
+
+    record Entry(Long customerId, Long userId, String entityType, Long entityId, String action,
+                 Map<String, Object> before, Map<String, Object> after, LocalDateTime createdAt) {
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        flushTimer = vertx.setPeriodic(flushIntervalMillis, id -> flush()
+                .subscribe().with(
+                        v -> { },
+                        e -> LOG.warnf("Failed to write audit log: %s", e.getMessage())));
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (flushTimer >= 0) {
+            vertx.cancelTimer(flushTimer);
+        }
+        try {
+            // Wait for a timer-triggered flush that may still be running, then drain the rest
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!queue.isEmpty() && System.currentTimeMillis() < deadline) {
+                flush().await().atMost(Duration.ofSeconds(5));
+                if (flushing.get()) {
+                    Thread.sleep(50);
+                }
+            }
+        } catch (RuntimeException | InterruptedException e) {
+            LOG.errorf("Audit log entries lost on shutdown: %s", e.getMessage());
+        }
+        if (!queue.isEmpty()) {
+            LOG.errorf("%d audit log entries were not written before shutdown", queue.size());
+        }
+    }
+
+    /**
+     * Record a change. {@code before} is the entity's {@link Auditable#auditState()} taken before it
+     * was modified, or null for CREATE. Call it after the change has been flushed so that a new
+     * entity already has its id.
+     */
+    public void record(Long customerId, Long userId, String action, Auditable entity, Map<String, Object> before) {
+        Map<String, Object> after = entity.auditState();
+        Entry entry = new Entry(customerId, userId, Hibernate.getClass(entity).getSimpleName(),
+                (Long) after.get("id"), action, before, after, LocalDateTime.now());
+        if (!queue.offer(entry)) {
+            dropped.increment();
+            LOG.errorf("Audit queue full, dropped %s %s %d", action, entry.entityType(), entry.entityId());
+        } else if (queue.size() >= batchSize) {
+            vertx.runOnContext(v -> flush().subscribe().with(
+                    ok -> { },
+                    e -> LOG.warnf("Failed to write audit log: %s", e.getMessage())));
+        }
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public int getQueued() {
+        return queue.size();
+    }
+
+    Uni<Void> flush() {
+        if (queue.isEmpty() || !flushing.compareAndSet(false, true)) {
+            return Uni.createFrom().voidItem();
+        }
+        List<Entry> batch = new ArrayList<>(Math.min(batchSize, queue.size()));
+        queue.drainTo(batch, batchSize);
+        return Uni.createFrom().deferred(() -> insert(batch))
+                .onFailure().invoke(e -> {
+                    // Keep what fits for the next attempt
+                    int requeued = 0;
+                    for (Entry entry : batch) {
+                        if (queue.offer(entry)) {
+                            requeued++;
+                        }
+                    }
+                    if (requeued < batch.size()) {
+                        dropped.add(batch.size() - requeued);
+                    }
+                })
+                .onTermination().invoke(() -> flushing.set(false))
+                .chain(() -> queue.size() >= batchSize ? flush() : Uni.createFrom().voidItem());
+    }
+
+    private Uni<Void> insert(List<Entry> batch) {
+        int n = batch.size();
+        Long[] customerIds = new Long[n];
+        Long[] userIds = new Long[n];
+        String[] entityTypes = new String[n];
+        Long[] entityIds = new Long[n];
+        String[] actions = new String[n];
+        String[] oldValues = new String[n];
+        String[] newValues = new String[n];
+        LocalDateTime[] createdAt = new LocalDateTime[n];
+
+        for (int i = 0; i < n; i++) {
+            Entry entry = batch.get(i);
+            customerIds[i] = entry.customerId();
+            userIds[i] = entry.userId();
+            entityTypes[i] = entry.entityType();
+            entityIds[i] = entry.entityId();
+            actions[i] = entry.action();
+            createdAt[i] = entry.createdAt();
+            if (entry.before() != null) {
+                // Only the columns that changed; deletes are soft, so this is usually just "active"
+                Map<String, Object> oldChanged = new LinkedHashMap<>();
+                Map<String, Object> newChanged = new LinkedHashMap<>();
+                entry.after().forEach((key, value) -> {
+                    Object previous = entry.before().get(key);
+                    if (!Objects.equals(previous, value)) {
+                        oldChanged.put(key, previous);
+                        newChanged.put(key, value);
+                    }
+                });
+                oldValues[i] = toJson(oldChanged);
+                newValues[i] = toJson(newChanged);
+            } else {
+                oldValues[i] = toJson(entry.before());
+                newValues[i] = toJson(entry.after());
+            }
+        }
+
+        return pool.preparedQuery("""
+                        INSERT INTO audit_log (customer_id, user_id, entity_type, entity_id, action, old_values, new_values, created_at)
+                        SELECT customer_id, user_id, entity_type, entity_id, action, old_values::jsonb, new_values::jsonb, created_at
+                        FROM unnest($1::bigint[], $2::bigint[], $3::varchar[], $4::bigint[], $5::varchar[], $6::text[], $7::text[], $8::timestamp[])
+                            AS v(customer_id, user_id, entity_type, entity_id, action, old_values, new_values, created_at)""")
+                .execute(Tuple.tuple()
+                        .addValue(customerIds)
+                        .addValue(userIds)
+                        .addValue(entityTypes)
+                        .addValue(entityIds)
+                        .addValue(actions)
+                        .addValue(oldValues)
+                        .addValue(newValues)
+                        .addValue(createdAt))
+                .replaceWithVoid();
+    }
+
+    private String toJson(Map<String, Object> values) {
+        if (values == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(values);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize audit values", e);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package no.snabel.service;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Vertx;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Keeps the monthly audit_log partitions ahead of the clock and drops the ones past retention.
+ *
+ * Runs at startup and then periodically; both steps are idempotent and serialized in the
+ * database, so every node can run them. Rows written while no monthly partition covered them
+ * land in audit_log_default and are moved out, with a warning, once their month is created.
+ */
+@ApplicationScoped
+public class AuditPartitionMaintainer {
+
+    private static final Logger LOG = Logger.getLogger(AuditPartitionMaintainer.class);
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    Pool pool;
+
+    @ConfigProperty(name = "snabel.audit.partitions-ahead", defaultValue = "3")
+    int monthsAhead;
+
+    // 0 keeps everything
+    @ConfigProperty(name = "snabel.audit.retention-months", defaultValue = "0")
+    int retentionMonths;
+
+    @ConfigProperty(name = "snabel.audit.maintenance-interval", defaultValue = "3600000")
+    long maintenanceIntervalMillis;
+
+    private long maintenanceTimer = -1;
+
+    void onStart(@Observes StartupEvent event) {
+        maintain().subscribe().with(
+                v -> { },
+                e -> LOG.errorf("Audit log partition maintenance failed: %s", e.getMessage()));
+        maintenanceTimer = vertx.setPeriodic(maintenanceIntervalMillis, id -> maintain()
+                .subscribe().with(
+                        v -> { },
+                        e -> LOG.errorf("Audit log partition maintenance failed: %s", e.getMessage())));
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (maintenanceTimer >= 0) {
+            vertx.cancelTimer(maintenanceTimer);
+        }
+    }
+
+    Uni<Void> maintain() {
+        Uni<Void> ensure = pool.preparedQuery("SELECT ensure_audit_log_partitions($1) AS moved")
+                .execute(Tuple.of(monthsAhead))
+                .invoke(rows -> {
+                    int moved = rows.iterator().next().getInteger("moved");
+                    if (moved > 0) {
+                        // Only happens when maintenance lapsed long enough for writes to outrun the partitions
+                        LOG.warnf("Moved %d audit_log rows from the default partition into monthly partitions", moved);
+                    }
+                })
+                .replaceWithVoid();
+        if (retentionMonths <= 0) {
+            return ensure;
+        }
+        return ensure.chain(() -> pool.preparedQuery("SELECT drop_audit_log_partitions($1) AS dropped")
+                        .execute(Tuple.of(retentionMonths)))
+                .invoke(rows -> {
+                    int dropped = rows.iterator().next().getInteger("dropped");
+                    if (dropped > 0) {
+                        LOG.infof("Dropped %d audit_log partitions older than %d months", dropped, retentionMonths);
+                    }
+                })
+                .replaceWithVoid();
+    }
+}
@@ -1,19 +1,24 @@
 package no.snabel.service;
 
-import io.quarkus.elytron.security.common.BcryptUtil;
+import io.quarkus.hibernate.reactive.panache.Panache;
 import io.quarkus.hibernate.reactive.panache.common.WithSession;
-import io.quarkus.hibernate.reactive.panache.common.WithTransaction;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import no.snabel.dto.LoginRequest;
 import no.snabel.dto.LoginResponse;
+import no.snabel.dto.RefreshRequest;
 import no.snabel.dto.TokenRequest;
 import no.snabel.model.ApiClient;
+import no.snabel.model.RefreshToken;
 import no.snabel.model.User;
+import no.snabel.security.ClientCredentialCache;
+import no.snabel.security.ClientCredentialCache.VerifiedClient;
+import no.snabel.security.PasswordHasher;
 import no.snabel.security.TokenService;
 
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 @ApplicationScoped
 public class AuthService {
@@ -21,7 +26,19 @@ public class AuthService {
     @Inject
     TokenService tokenService;
 
-    @WithTransaction
+    @Inject
+    ClientCredentialCache clientCredentialCache;
+
+    @Inject
+    PasswordHasher passwordHasher;
+
+    @Inject
+    LastLoginRecorder lastLoginRecorder;
+
+    @Inject
+    AuditLogWriter auditLog;
+
+    @WithSession
     public Uni<LoginResponse> login(LoginRequest request) {
         return User.findByUsername(request.username)
                 .onItem().ifNull().failWith(() -> new SecurityException("Invalid username or password"))
@@ -30,76 +47,208 @@ public class AuthService {
                         return Uni.createFrom().failure(new SecurityException("User account is not active"));
                     }
 
-                    if (!BcryptUtil.matches(request.password, user.passwordHash)) {
-                        return Uni.createFrom().failure(new SecurityException("Invalid username or password"));
-                    }
+                    return passwordHasher.matches(request.password, user.passwordHash)
+                            .chain(matches -> {
+                                if (!matches) {
+                                    return Uni.createFrom().failure(new SecurityException("Invalid username or password"));
+                                }
+
+                                String deviceType = request.deviceType != null ? request.deviceType : "web";
+                                String token = tokenService.generateToken(
+                                        user.id,
+                                        user.username,
+                                        user.customer.id,
+                                        user.role,
+                                        deviceType
+                                );
+
+                                Long expiresIn = tokenService.getTokenDuration(deviceType);
+
+                                // Written later in a batch, see LastLoginRecorder
+                                lastLoginRecorder.record(user.id);
+                                LoginResponse response = new LoginResponse(
+                                        token,
+                                        user.id,
+                                        user.username,
+                                        user.customer.id,
+                                        user.role,
+                                        expiresIn
+                                );
+                                if (!"app".equalsIgnoreCase(deviceType)) {
+                                    return Uni.createFrom().item(response);
+                                }
+
+                                // App logins get a refresh token; a new login replaces the device's old one.
+                                // Without a deviceId the login becomes a device of its own rather than sharing a slot
+                                String deviceId = request.deviceId != null && !request.deviceId.isBlank()
+                                        ? request.deviceId
+                                        : UUID.randomUUID().toString();
+                                String refreshToken = tokenService.generateRefreshToken();
+                                return Panache.withTransaction(() -> RefreshToken.revokeDevice(user.id, deviceId)
+                                                .chain(() -> storeRefreshToken(user, deviceId, deviceType, refreshToken)))
+                                        .map(stored -> {
+                                            response.refreshToken = refreshToken;
+                                            response.refreshExpiresIn = tokenService.getRefreshTokenDuration();
+                                            response.deviceId = deviceId;
+                                            return response;
+                                        });
+                            });
+                });
+    }
+
+    /**
+     * Exchange a refresh token for a new access token and a new refresh token.
+     * No password hash is involved. Presenting a token that was already rotated
+     * means it has leaked, so every refresh token for that device is revoked.
+     */
+    public Uni<LoginResponse> refresh(RefreshRequest request) {
+        if (request.refreshToken == null || request.refreshToken.isEmpty()) {
+            return Uni.createFrom().failure(new SecurityException("Invalid refresh token"));
+        }
+        String tokenHash = tokenService.hashRefreshToken(request.refreshToken);
 
-                    String deviceType = request.deviceType != null ? request.deviceType : "web";
-                    String token = tokenService.generateToken(
-                            user.id,
-                            user.username,
-                            user.customer.id,
-                            user.role,
-                            deviceType
-                    );
-
-                    Long expiresIn = tokenService.getTokenDuration(deviceType);
-
-                    // Update last login
-                    user.lastLogin = LocalDateTime.now();
-                    return user.persistAndFlush()
-                            .map(u -> new LoginResponse(
-                                    token,
-                                    user.id,
-                                    user.username,
-                                    user.customer.id,
-                                    user.role,
-                                    expiresIn
-                            ));
+        return Panache.withTransaction(() -> RefreshToken.findByHash(tokenHash)
+                        .onItem().ifNull().failWith(() -> new SecurityException("Invalid refresh token"))
+                        .onItem().transformToUni(stored -> {
+                            if (stored.revokedAt != null) {
+                                return Uni.createFrom().failure(
+                                        new RefreshTokenReusedException(stored.user.id, stored.deviceId));
+                            }
+                            if (request.deviceId != null && !request.deviceId.equals(stored.deviceId)) {
+                                return Uni.createFrom().failure(new SecurityException("Invalid refresh token"));
+                            }
+                            if (stored.expiresAt.isBefore(LocalDateTime.now())) {
+                                return Uni.createFrom().failure(new SecurityException("Refresh token expired"));
+                            }
+
+                            return User.<User>findById(stored.user.id).chain(user -> {
+                                if (user == null || !user.active) {
+                                    return Uni.createFrom().failure(new SecurityException("User account is not active"));
+                                }
+
+                                String refreshToken = tokenService.generateRefreshToken();
+                                return storeRefreshToken(user, stored.deviceId, stored.deviceType, refreshToken)
+                                        // Conditional, so of two concurrent refreshes with this token only one wins;
+                                        // the other is treated as reuse and its transaction rolls back
+                                        .call(next -> RefreshToken.rotate(stored.id, next).chain(updated -> updated == 0
+                                                ? Uni.createFrom().failure(new RefreshTokenReusedException(user.id, stored.deviceId))
+                                                : Uni.createFrom().voidItem()))
+                                        .map(next -> {
+                                            LoginResponse response = new LoginResponse(
+                                                    tokenService.generateToken(
+                                                            user.id,
+                                                            user.username,
+                                                            user.customer.id,
+                                                            user.role,
+                                                            stored.deviceType
+                                                    ),
+                                                    user.id,
+                                                    user.username,
+                                                    user.customer.id,
+                                                    user.role,
+                                                    tokenService.getTokenDuration(stored.deviceType)
+                                            );
+                                            response.refreshToken = refreshToken;
+                                            response.refreshExpiresIn = tokenService.getRefreshTokenDuration();
+                                            response.deviceId = stored.deviceId;
+                                            return response;
+                                        });
+                            });
+                        }))
+                .onFailure(RefreshTokenReusedException.class)
+                .call(e -> {
+                    RefreshTokenReusedException reuse = (RefreshTokenReusedException) e;
+                    return Panache.withTransaction(() -> RefreshToken.revokeDevice(reuse.userId, reuse.deviceId));
                 });
     }
 
-    @WithTransaction
+    private Uni<RefreshToken> storeRefreshToken(User user, String deviceId, String deviceType, String refreshToken) {
+        RefreshToken stored = new RefreshToken();
+        stored.user = user;
+        stored.deviceId = deviceId;
+        stored.deviceType = deviceType;
+        stored.tokenHash = tokenService.hashRefreshToken(refreshToken);
+        stored.expiresAt = LocalDateTime.now().plusSeconds(tokenService.getRefreshTokenDuration());
+        return stored.persistAndFlush();
+    }
+
     public Uni<User> registerUser(User user, String plainPassword) {
-        user.passwordHash = BcryptUtil.bcryptHash(plainPassword);
-        user.createdAt = LocalDateTime.now();
-        user.updatedAt = LocalDateTime.now();
-        return user.persistAndFlush();
+        return passwordHasher.hash(plainPassword)
+                .chain(hash -> {
+                    user.passwordHash = hash;
+                    user.createdAt = LocalDateTime.now();
+                    user.updatedAt = LocalDateTime.now();
+                    return Panache.withTransaction(() -> user.<User>persistAndFlush());
+                })
+                // Only once committed: a rolled-back insert must not leave an audit entry behind
+                .invoke(u -> auditLog.record(user.customer != null ? user.customer.id : null, null,
+                        AuditLogWriter.CREATE, user, null));
     }
 
-    @WithTransaction
     public Uni<LoginResponse> clientCredentialsLogin(TokenRequest request) {
-        return ApiClient.<ApiClient>find("clientId = ?1 and active = true", request.clientId)
+        // Recently verified secrets skip the database and BCrypt entirely
+        VerifiedClient cached = clientCredentialCache.lookup(request.clientId, request.clientSecret);
+        if (cached != null) {
+            return Uni.createFrom().item(issueClientToken(cached));
+        }
+
+        return Panache.withSession(() -> ApiClient.<ApiClient>find("clientId = ?1 and active = true", request.clientId)
                 .firstResult()
                 .onItem().ifNull().failWith(() -> new SecurityException("Invalid client credentials"))
                 .onItem().transformToUni(client -> {
                     // Verify client secret
-                    if (!BcryptUtil.matches(request.clientSecret, client.clientSecretHash)) {
-                        return Uni.createFrom().failure(new SecurityException("Invalid client credentials"));
-                    }
+                    return passwordHasher.matches(request.clientSecret, client.clientSecretHash)
+                            .chain(matches -> {
+                                if (!matches) {
+                                    return Uni.createFrom().failure(new SecurityException("Invalid client credentials"));
+                                }
 
-                    // Check expiration
-                    if (client.expiresAt != null && client.expiresAt.isBefore(LocalDateTime.now())) {
-                        return Uni.createFrom().failure(new SecurityException("Client credentials expired"));
-                    }
+                                // Check expiration
+                                if (client.expiresAt != null && client.expiresAt.isBefore(LocalDateTime.now())) {
+                                    return Uni.createFrom().failure(new SecurityException("Client credentials expired"));
+                                }
 
-                    // Generate client token
-                    String token = tokenService.generateClientToken(
-                            client.clientId,
-                            client.customer.id,
-                            client.scopes != null ? client.scopes : ""
-                    );
-
-                    Long expiresIn = tokenService.getClientTokenDuration();
-
-                    return Uni.createFrom().item(new LoginResponse(
-                            token,
-                            null,  // No userId for client tokens
-                            client.clientId,
-                            client.customer.id,
-                            "CLIENT",
-                            expiresIn
-                    ));
-                });
+                                VerifiedClient verified = new VerifiedClient(
+                                        client.clientId,
+                                        client.customer.id,
+                                        client.scopes != null ? client.scopes : "",
+                                        client.expiresAt
+                                );
+                                clientCredentialCache.put(request.clientSecret, verified);
+
+                                return Uni.createFrom().item(issueClientToken(verified));
+                            });
+                }));
+    }
+
+    private static class RefreshTokenReusedException extends SecurityException {
+        final Long userId;
+        final String deviceId;
+
+        RefreshTokenReusedException(Long userId, String deviceId) {
+            super("Invalid refresh token");
+            this.userId = userId;
+            this.deviceId = deviceId;
+        }
+    }
+
+    private LoginResponse issueClientToken(VerifiedClient client) {
+        // Generate client token
+        String token = tokenService.generateClientToken(
+                client.clientId(),
+                client.customerId(),
+                client.scopes()
+        );
+
+        Long expiresIn = tokenService.getClientTokenDuration();
+
+        return new LoginResponse(
+                token,
+                null,  // No userId for client tokens
+                client.clientId(),
+                client.customerId(),
+                "CLIENT",
+                expiresIn
+        );
     }
 }
@@ -0,0 +1,142 @@
+package no.snabel.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.runtime.configuration.MemorySize;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import no.snabel.dto.ImportResult;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import org.jboss.resteasy.reactive.server.vertx.VertxInputStream;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs {@link BulkImporter} for the import endpoint on a JDBC connection from the default
+ * datasource (the reactive client has no COPY support). Imports hold a connection and a core
+ * for their whole duration, so only max-concurrent of them run at a time per node.
+ *
+ * The upload is streamed into COPY, so the import route gets its own max-body-size; every other
+ * route keeps quarkus.http.limits.max-body-size.
+ */
+@ApplicationScoped
+public class BulkImportService {
+
+    private static final Logger LOG = Logger.getLogger(BulkImportService.class);
+
+    private static final String IMPORT_ROUTE = "/api/import/*";
+
+    @Inject
+    DataSource dataSource;
+
+    @Inject
+    AccountCache accountCache;
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "snabel.import.work-mem", defaultValue = "256MB")
+    String workMem;
+
+    @ConfigProperty(name = "snabel.import.max-errors", defaultValue = "100")
+    int maxErrors;
+
+    @ConfigProperty(name = "snabel.import.max-concurrent", defaultValue = "2")
+    int maxConcurrent;
+
+    @ConfigProperty(name = "snabel.import.max-body-size", defaultValue = "256M")
+    MemorySize maxBodySize;
+
+    private BulkImporter importer;
+    private Semaphore permits;
+
+    void onStart(@Observes StartupEvent event) {
+        importer = new BulkImporter(workMem, maxErrors);
+        permits = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * Applies max-body-size to the import route. The global limit is checked against
+     * Content-Length ahead of every route (order -2), so uploads are checked against the import
+     * limit before it and their length hidden from it; the bytes actually read are then capped by
+     * the REST layer at the import limit.
+     *
+     * This relies on how Quarkus enforces the global limit, which BulkImportServiceTest pins:
+     * HttpServerCommonHandlers.enforceMaxBodySize adds an order -2 route that rejects a too large
+     * Content-Length and, for requests without one, stores the limit under MAX_REQUEST_SIZE_KEY.
+     * VertxInputStream stops reading at the limit it finds there.
+     */
+    void installHandlers(@Observes Router router) {
+        long limit = maxBodySize.asLongValue();
+        router.route(IMPORT_ROUTE).order(-3).handler(rc -> {
+            String header = rc.request().getHeader(HttpHeaders.CONTENT_LENGTH);
+            if (header != null) {
+                long length;
+                try {
+                    length = Long.parseLong(header);
+                } catch (NumberFormatException e) {
+                    length = -1;
+                }
+                if (length < 0) {
+                    reject(rc, 400, "Invalid Content-Length");
+                    return;
+                }
+                if (length > limit) {
+                    reject(rc, 413, "Imports are limited to " + limit + " bytes");
+                    return;
+                }
+                rc.request().headers().remove(HttpHeaders.CONTENT_LENGTH);
+            }
+            rc.next();
+        });
+        router.route(IMPORT_ROUTE).order(-1).handler(rc -> {
+            rc.put(VertxInputStream.MAX_REQUEST_SIZE_KEY, limit);
+            rc.next();
+        });
+    }
+
+    private static void reject(RoutingContext rc, int status, String message) {
+        // The body is not read, so close the connection instead of waiting for it
+        rc.response().setStatusCode(status)
+                .putHeader(HttpHeaders.CONNECTION, "close")
+                .putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                .endHandler(v -> rc.request().connection().close())
+                .end("{\"error\": \"" + message + "\"}");
+    }
+
+    /**
+     * Imports the CSV for the tenant, or returns null without reading it when max-concurrent
+     * imports are already running. Must be called on a worker thread.
+     */
+    public ImportResult importCsv(long customerId, Long userId, BulkImporter.Kind kind, InputStream csv)
+            throws SQLException, IOException {
+        if (!permits.tryAcquire()) {
+            registry.counter("snabel.import.rejected").increment();
+            return null;
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            ImportResult result = importer.run(connection, customerId, userId, kind, csv);
+            String outcome = result.errorCount > 0 ? "invalid" : "imported";
+            registry.counter("snabel.import.rows", "kind", kind.path, "outcome", outcome).increment(result.rows);
+            LOG.infof("Import of %s for customer %d: %d rows, %d inserted, %d updated, %d skipped, %d errors in %d ms",
+                    kind.path, customerId, result.rows, result.inserted, result.updated, result.skipped,
+                    result.errorCount, result.durationMillis);
+            if (kind == BulkImporter.Kind.ACCOUNTS && result.inserted + result.updated > 0) {
+                accountCache.invalidate(customerId).await().indefinitely();
+            }
+            return result;
+        } finally {
+            permits.release();
+        }
+    }
+}
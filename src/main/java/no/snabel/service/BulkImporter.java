@@ -0,0 +1,499 @@
+package no.snabel.service;
+
+import no.snabel.dto.ImportError;
+import no.snabel.dto.ImportResult;
+import org.postgresql.PGConnection;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Imports a tenant's historical data from CSV in one transaction.
+ *
+ * The file is streamed with COPY into a temporary staging table of text columns, so COPY
+ * itself never rejects a value. Every row is then checked with a handful of set-based
+ * statements that collect errors by line; if there are any, nothing is imported and the first
+ * errors are returned. Otherwise one INSERT ... SELECT per kind merges the rows into the real
+ * tables, scoped to the tenant. Rows already present (same natural key) are skipped, except
+ * accounts, which are updated, so a file can safely be imported again.
+ *
+ * Used by the import endpoint and by {@code no.snabel.util.BulkImportCli}; it has no CDI
+ * dependencies and works on any PostgreSQL JDBC connection.
+ */
+public final class BulkImporter {
+
+    private static final int COPY_BUFFER_BYTES = 1 << 16;
+    private static final int MAX_HEADER_BYTES = 8192;
+
+    private static final String NUMBER = "'^-{0,1}[0-9]+([.][0-9]+){0,1}$'";
+    private static final String INTEGER = "'^[0-9]+$'";
+    private static final String DATE = "'^[0-9]{4}-[0-9]{2}-[0-9]{2}$'";
+
+    // {column} in the SQL below is the trimmed staging value, NULL when empty
+    private static final Pattern COLUMN = Pattern.compile("\\{(\\w+)}");
+    private static final Pattern PARAMETER = Pattern.compile("(?<!:):(customer|user)\\b");
+    private static final Pattern WORK_MEM = Pattern.compile("[0-9]+(kB|MB|GB)");
+
+    public enum Kind {
+        ACCOUNTS("accounts",
+                List.of("account_number", "account_name", "account_type", "vat_code", "currency", "description",
+                        "standard_account_number"),
+                Set.of("account_number", "account_name", "account_type")),
+        INVOICES("invoices",
+                List.of("invoice_number", "invoice_date", "due_date", "client_name", "client_organization_number",
+                        "client_address", "client_postal_code", "client_city", "subtotal", "vat_amount",
+                        "total_amount", "currency", "status", "payment_terms", "payment_reference",
+                        "buyer_reference", "notes"),
+                Set.of("invoice_number", "invoice_date", "due_date", "client_name")),
+        INVOICE_LINES("invoice-lines",
+                List.of("invoice_number", "line_number", "description", "quantity", "unit_price", "vat_rate",
+                        "vat_amount", "line_total", "account_number", "unit_code", "item_name", "item_id"),
+                Set.of("invoice_number", "line_number", "description", "unit_price", "line_total")),
+        JOURNAL_LINES("journal-lines",
+                List.of("entry_number", "entry_date", "entry_description", "reference", "line_number",
+                        "account_number", "description", "debit_amount", "credit_amount", "vat_amount",
+                        "vat_code", "currency"),
+                Set.of("entry_number", "entry_date", "entry_description", "account_number"));
+
+        public final String path;
+        final List<String> columns;
+        final Set<String> required;
+
+        Kind(String path, List<String> columns, Set<String> required) {
+            this.path = path;
+            this.columns = columns;
+            this.required = required;
+        }
+
+        /**
+         * The kind named by its path segment (e.g. "invoice-lines"), or null.
+         */
+        public static Kind of(String path) {
+            for (Kind kind : values()) {
+                if (kind.path.equals(path)) {
+                    return kind;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A row is invalid when {@code condition} holds; {@code message} is an SQL text expression.
+     * Rules that cast values run only once every row has passed the format rules.
+     */
+    private record Rule(String condition, String message, boolean casts) {
+    }
+
+    private final String workMem;
+    private final int maxErrors;
+
+    public BulkImporter(String workMem, int maxErrors) {
+        if (!WORK_MEM.matcher(workMem).matches()) {
+            throw new IllegalArgumentException("work_mem must look like 256MB: " + workMem);
+        }
+        this.workMem = workMem;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Imports the CSV (header line first, comma separated, UTF-8) for the tenant. Commits if
+     * every row is valid and rolls back otherwise. Throws IllegalArgumentException for a bad
+     * header, and SQLException for malformed CSV (see {@link #isDataError}) or database failures.
+     */
+    public ImportResult run(Connection connection, long customerId, Long userId, Kind kind, InputStream csv)
+            throws SQLException, IOException {
+        long started = System.nanoTime();
+        BufferedInputStream in = new BufferedInputStream(csv, COPY_BUFFER_BYTES);
+        List<String> header = readHeader(in, kind);
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET LOCAL work_mem = '" + workMem + "'");
+                statement.execute(stagingTable(kind));
+                statement.execute("CREATE TEMP TABLE import_errors (row_no BIGINT NOT NULL, message TEXT NOT NULL) ON COMMIT DROP");
+            }
+            long rows = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(
+                    "COPY import_stage (" + String.join(", ", header) + ") FROM STDIN WITH (FORMAT csv)",
+                    in, COPY_BUFFER_BYTES);
+            try (Statement statement = connection.createStatement()) {
+                // Temporary tables are never auto-analyzed; without statistics the joins below plan as if empty
+                statement.execute("ANALYZE import_stage");
+            }
+
+            long errorCount = validate(connection, kind, customerId, userId);
+            if (errorCount > 0) {
+                List<ImportError> errors = firstErrors(connection);
+                connection.rollback();
+                return new ImportResult(kind.path, rows, 0, 0, 0, errorCount, errors, millisSince(started));
+            }
+
+            long inserted;
+            long updated;
+            try (PreparedStatement merge = prepare(connection, merge(kind), customerId, userId);
+                 ResultSet result = merge.executeQuery()) {
+                result.next();
+                inserted = result.getLong(1);
+                updated = result.getLong(2);
+            }
+            connection.commit();
+            return new ImportResult(kind.path, rows, inserted, updated, rows - inserted - updated,
+                    0, List.of(), millisSince(started));
+        } catch (SQLException | IOException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * True for errors caused by the file's content (malformed CSV, a value PostgreSQL cannot
+     * convert) rather than by the database.
+     */
+    public static boolean isDataError(SQLException e) {
+        String state = e.getSQLState();
+        return state != null && (state.startsWith("22") || state.startsWith("23"));
+    }
+
+    /**
+     * Reads the header line, leaving the stream at the first data row, and returns the column
+     * names in file order.
+     */
+    static List<String> readHeader(InputStream in, Kind kind) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            if (line.size() >= MAX_HEADER_BYTES) {
+                throw new IllegalArgumentException("Header line is longer than " + MAX_HEADER_BYTES + " bytes");
+            }
+            line.write(b);
+        }
+        String text = line.toString(StandardCharsets.UTF_8);
+        if (text.startsWith("\uFEFF")) {
+            text = text.substring(1);
+        }
+        if (text.isBlank()) {
+            throw new IllegalArgumentException("The file is empty; expected a header line");
+        }
+
+        Set<String> columns = new LinkedHashSet<>();
+        for (String name : text.split(",", -1)) {
+            String column = name.strip().replace("\"", "").toLowerCase(Locale.ROOT);
+            if (!kind.columns.contains(column)) {
+                throw new IllegalArgumentException("Unknown column '" + column + "' for " + kind.path
+                        + "; expected " + String.join(", ", kind.columns));
+            }
+            if (!columns.add(column)) {
+                throw new IllegalArgumentException("Column '" + column + "' appears twice");
+            }
+        }
+        for (String column : kind.required) {
+            if (!columns.contains(column)) {
+                throw new IllegalArgumentException("Missing required column '" + column + "'");
+            }
+        }
+        return new ArrayList<>(columns);
+    }
+
+    private static String stagingTable(Kind kind) {
+        StringBuilder ddl = new StringBuilder("CREATE TEMP TABLE import_stage (row_no BIGINT GENERATED ALWAYS AS IDENTITY");
+        for (String column : kind.columns) {
+            ddl.append(", ").append(column).append(" TEXT");
+        }
+        return ddl.append(") ON COMMIT DROP").toString();
+    }
+
+    private long validate(Connection connection, Kind kind, long customerId, Long userId) throws SQLException {
+        List<Rule> rules = rules(kind);
+        long errors = 0;
+        for (boolean casts : new boolean[]{false, true}) {
+            if (casts && errors > 0) {
+                // Casting a value that failed its format check would abort the transaction
+                break;
+            }
+            for (Rule rule : rules) {
+                if (rule.casts() != casts) {
+                    continue;
+                }
+                String sql = "INSERT INTO import_errors (row_no, message) SELECT s.row_no, " + rule.message()
+                        + " FROM import_stage s WHERE " + rule.condition();
+                try (PreparedStatement statement = prepare(connection, sql, customerId, userId)) {
+                    errors += statement.executeUpdate();
+                }
+            }
+        }
+        return errors;
+    }
+
+    private List<ImportError> firstErrors(Connection connection) throws SQLException {
+        List<ImportError> errors = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT row_no, message FROM import_errors ORDER BY row_no, message LIMIT ?")) {
+            statement.setInt(1, maxErrors);
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    // row_no counts data rows from 1; the header is line 1 of the file
+                    errors.add(new ImportError(rows.getLong(1) + 1, rows.getString(2)));
+                }
+            }
+        }
+        return errors;
+    }
+
+    private static List<Rule> rules(Kind kind) {
+        List<Rule> rules = new ArrayList<>();
+        for (String column : kind.columns) {
+            if (kind.required.contains(column)) {
+                rules.add(new Rule("{" + column + "} IS NULL", "'" + column + " is required'", false));
+            }
+        }
+        switch (kind) {
+            case ACCOUNTS -> {
+                maxLength(rules, "account_number", 10);
+                maxLength(rules, "account_name", 255);
+                maxLength(rules, "vat_code", 10);
+                maxLength(rules, "currency", 3);
+                rules.add(new Rule("upper({account_type}) NOT IN ('ASSET', 'LIABILITY', 'EQUITY', 'REVENUE', 'EXPENSE')",
+                        "'Unknown account_type ' || {account_type}", false));
+                unique(rules, "account_number");
+                rules.add(new Rule("""
+                        {standard_account_number} IS NOT NULL AND NOT EXISTS (
+                            SELECT 1 FROM standard_accounts sa WHERE sa.account_number = {standard_account_number})""",
+                        "'Unknown standard_account_number ' || {standard_account_number}", false));
+            }
+            case INVOICES -> {
+                maxLength(rules, "invoice_number", 50);
+                maxLength(rules, "client_name", 255);
+                maxLength(rules, "client_organization_number", 9);
+                maxLength(rules, "client_address", 500);
+                maxLength(rules, "client_postal_code", 10);
+                maxLength(rules, "client_city", 100);
+                maxLength(rules, "currency", 3);
+                maxLength(rules, "payment_terms", 255);
+                maxLength(rules, "payment_reference", 50);
+                maxLength(rules, "buyer_reference", 100);
+                matches(rules, DATE, "a date (YYYY-MM-DD)", "invoice_date", "due_date");
+                matches(rules, NUMBER, "a number", "subtotal", "vat_amount", "total_amount");
+                rules.add(new Rule("upper({status}) NOT IN ('DRAFT', 'SENT', 'PAID', 'OVERDUE', 'CANCELLED')",
+                        "'Unknown status ' || {status}", false));
+                unique(rules, "invoice_number");
+                rules.add(new Rule("""
+                        EXISTS (SELECT 1 FROM invoices i
+                                WHERE i.invoice_number = {invoice_number} AND i.customer_id <> :customer)""",
+                        "'invoice_number ' || {invoice_number} || ' is already used by another company'", false));
+                rules.add(new Rule("{due_date}::date < {invoice_date}::date",
+                        "'due_date is before invoice_date'", true));
+            }
+            case INVOICE_LINES -> {
+                maxLength(rules, "unit_code", 10);
+                maxLength(rules, "item_name", 255);
+                maxLength(rules, "item_id", 50);
+                matches(rules, INTEGER, "a whole number", "line_number");
+                matches(rules, NUMBER, "a number", "quantity", "unit_price", "vat_rate", "vat_amount", "line_total");
+                unique(rules, "invoice_number", "line_number");
+                rules.add(new Rule("""
+                        {invoice_number} IS NOT NULL AND NOT EXISTS (
+                            SELECT 1 FROM invoices i WHERE i.customer_id = :customer AND i.invoice_number = {invoice_number})""",
+                        "'Unknown invoice_number ' || {invoice_number}", false));
+                accountExists(rules);
+            }
+            case JOURNAL_LINES -> {
+                maxLength(rules, "entry_number", 50);
+                maxLength(rules, "reference", 100);
+                maxLength(rules, "vat_code", 10);
+                maxLength(rules, "currency", 3);
+                matches(rules, DATE, "a date (YYYY-MM-DD)", "entry_date");
+                matches(rules, INTEGER, "a whole number", "line_number");
+                matches(rules, NUMBER, "a number", "debit_amount", "credit_amount", "vat_amount");
+                accountExists(rules);
+                rules.add(new Rule("""
+                        {line_number} IS NOT NULL AND s.row_no IN (
+                            SELECT row_no FROM (
+                                SELECT s.row_no, row_number() OVER (PARTITION BY {entry_number}, {line_number} ORDER BY s.row_no) AS n
+                                FROM import_stage s) d
+                            WHERE d.n > 1)""",
+                        "'Duplicate line_number ' || {line_number} || ' in journal entry ' || {entry_number}", false));
+                rules.add(new Rule("""
+                        {entry_number} IN (
+                            SELECT {entry_number} FROM import_stage s GROUP BY 1
+                            HAVING count(DISTINCT {entry_date}) > 1 OR count(DISTINCT {entry_description}) > 1)""",
+                        "'Lines of journal entry ' || {entry_number} || ' disagree on entry_date or entry_description'",
+                        false));
+                rules.add(new Rule("""
+                        NOT ((COALESCE({debit_amount}::numeric, 0) > 0 AND COALESCE({credit_amount}::numeric, 0) = 0)
+                          OR (COALESCE({credit_amount}::numeric, 0) > 0 AND COALESCE({debit_amount}::numeric, 0) = 0))""",
+                        "'Exactly one of debit_amount and credit_amount must be above zero'", true));
+                rules.add(new Rule("""
+                        {entry_number} IN (
+                            SELECT {entry_number} FROM import_stage s GROUP BY 1
+                            HAVING sum(COALESCE({debit_amount}::numeric, 0)) <> sum(COALESCE({credit_amount}::numeric, 0)))""",
+                        "'Journal entry ' || {entry_number} || ' does not balance'", true));
+            }
+        }
+        return rules;
+    }
+
+    private static void maxLength(List<Rule> rules, String column, int length) {
+        rules.add(new Rule("length({" + column + "}) > " + length,
+                "'" + column + " is longer than " + length + " characters'", false));
+    }
+
+    private static void matches(List<Rule> rules, String pattern, String description, String... columns) {
+        for (String column : columns) {
+            rules.add(new Rule("{" + column + "} !~ " + pattern,
+                    "'" + column + " is not " + description + ": ' || {" + column + "}", false));
+        }
+    }
+
+    private static void unique(List<Rule> rules, String... key) {
+        String partition = String.join(", ", List.of(key).stream().map(c -> "{" + c + "}").toList());
+        String value = String.join(" || '/' || ", List.of(key).stream().map(c -> "{" + c + "}").toList());
+        rules.add(new Rule("""
+                s.row_no IN (
+                    SELECT row_no FROM (
+                        SELECT s.row_no, row_number() OVER (PARTITION BY %s ORDER BY s.row_no) AS n
+                        FROM import_stage s) d
+                    WHERE d.n > 1)""".formatted(partition),
+                "'Duplicate " + String.join("/", key) + " ' || " + value, false));
+    }
+
+    private static void accountExists(List<Rule> rules) {
+        rules.add(new Rule("""
+                {account_number} IS NOT NULL AND NOT EXISTS (
+                    SELECT 1 FROM accounts a WHERE a.customer_id = :customer AND a.account_number = {account_number})""",
+                "'Unknown account_number ' || {account_number}", false));
+    }
+
+    /**
+     * One statement per kind that merges the staged rows and returns (inserted, updated).
+     */
+    private static String merge(Kind kind) {
+        return switch (kind) {
+            case ACCOUNTS -> """
+                    WITH merged AS (
+                        INSERT INTO accounts (customer_id, standard_account_id, account_number, account_name,
+                                              account_type, vat_code, currency, description)
+                        SELECT :customer, sa.id, {account_number}, {account_name}, upper({account_type}), {vat_code},
+                               COALESCE(upper({currency}), 'NOK'), {description}
+                        FROM import_stage s
+                        LEFT JOIN standard_accounts sa ON sa.account_number = {standard_account_number}
+                        ON CONFLICT (customer_id, account_number) DO UPDATE SET
+                            account_name = EXCLUDED.account_name,
+                            account_type = EXCLUDED.account_type,
+                            vat_code = EXCLUDED.vat_code,
+                            currency = EXCLUDED.currency,
+                            description = EXCLUDED.description,
+                            standard_account_id = COALESCE(EXCLUDED.standard_account_id, accounts.standard_account_id),
+                            updated_at = CURRENT_TIMESTAMP
+                        RETURNING (xmax = 0) AS inserted
+                    )
+                    SELECT count(*) FILTER (WHERE inserted), count(*) FILTER (WHERE NOT inserted) FROM merged""";
+            case INVOICES -> """
+                    WITH merged AS (
+                        INSERT INTO invoices (customer_id, invoice_number, invoice_date, due_date, client_name,
+                                              client_organization_number, client_address, client_postal_code, client_city,
+                                              subtotal, vat_amount, total_amount, currency, status, payment_terms,
+                                              payment_reference, buyer_reference, notes, created_by)
+                        SELECT :customer, {invoice_number}, {invoice_date}::date, {due_date}::date, {client_name},
+                               {client_organization_number}, {client_address}, {client_postal_code}, {client_city},
+                               COALESCE({subtotal}::numeric, 0), COALESCE({vat_amount}::numeric, 0),
+                               COALESCE({total_amount}::numeric, 0), COALESCE(upper({currency}), 'NOK'),
+                               COALESCE(upper({status}), 'DRAFT'), {payment_terms}, {payment_reference},
+                               {buyer_reference}, {notes}, :user
+                        FROM import_stage s
+                        ON CONFLICT (invoice_number) DO NOTHING
+                        RETURNING 1
+                    )
+                    SELECT count(*), 0 FROM merged""";
+            case INVOICE_LINES -> """
+                    WITH merged AS (
+                        INSERT INTO invoice_lines (invoice_id, line_number, description, quantity, unit_price, vat_rate,
+                                                   vat_amount, line_total, account_id, unit_code, item_name, item_id)
+                        SELECT i.id, {line_number}::int, {description}, COALESCE({quantity}::numeric, 1),
+                               {unit_price}::numeric, COALESCE({vat_rate}::numeric, 0),
+                               COALESCE({vat_amount}::numeric, 0), {line_total}::numeric, a.id,
+                               COALESCE({unit_code}, 'EA'), {item_name}, {item_id}
+                        FROM import_stage s
+                        JOIN invoices i ON i.customer_id = :customer AND i.invoice_number = {invoice_number}
+                        LEFT JOIN accounts a ON a.customer_id = :customer AND a.account_number = {account_number}
+                        WHERE NOT EXISTS (SELECT 1 FROM invoice_lines l
+                                          WHERE l.invoice_id = i.id AND l.line_number = {line_number}::int)
+                        RETURNING 1
+                    )
+                    SELECT count(*), 0 FROM merged""";
+            // Entries are created as drafts; posting seals them into the journal hash chain as usual
+            case JOURNAL_LINES -> """
+                    WITH entries AS (
+                        INSERT INTO journal_entries (customer_id, entry_number, entry_date, description, reference,
+                                                     entry_type, created_by)
+                        SELECT DISTINCT ON ({entry_number}) :customer, {entry_number}, {entry_date}::date,
+                               {entry_description}, {reference}, 'IMPORT', :user
+                        FROM import_stage s
+                        ORDER BY {entry_number}, s.row_no
+                        ON CONFLICT (customer_id, entry_number) DO NOTHING
+                        RETURNING id, entry_number
+                    ), lines AS (
+                        INSERT INTO journal_entry_lines (journal_entry_id, account_id, description, debit_amount,
+                                                         credit_amount, vat_amount, vat_code, currency, line_number)
+                        SELECT e.id, a.id, {description}, COALESCE({debit_amount}::numeric, 0),
+                               COALESCE({credit_amount}::numeric, 0), COALESCE({vat_amount}::numeric, 0), {vat_code},
+                               COALESCE(upper({currency}), 'NOK'),
+                               COALESCE({line_number}::int, (row_number() OVER (PARTITION BY e.id ORDER BY s.row_no))::int)
+                        FROM import_stage s
+                        JOIN entries e ON e.entry_number = {entry_number}
+                        JOIN accounts a ON a.customer_id = :customer AND a.account_number = {account_number}
+                        RETURNING 1
+                    )
+                    SELECT count(*), 0 FROM lines""";
+        };
+    }
+
+    /**
+     * Expands {column} and binds :customer / :user, which may each appear several times.
+     */
+    private static PreparedStatement prepare(Connection connection, String sql, long customerId, Long userId)
+            throws SQLException {
+        String expanded = COLUMN.matcher(sql).replaceAll("NULLIF(btrim(s.$1), '')");
+        List<String> parameters = new ArrayList<>();
+        Matcher matcher = PARAMETER.matcher(expanded);
+        StringBuilder jdbc = new StringBuilder();
+        while (matcher.find()) {
+            parameters.add(matcher.group(1));
+            matcher.appendReplacement(jdbc, "?");
+        }
+        matcher.appendTail(jdbc);
+
+        PreparedStatement statement = connection.prepareStatement(jdbc.toString());
+        for (int i = 0; i < parameters.size(); i++) {
+            if (parameters.get(i).equals("customer")) {
+                statement.setLong(i + 1, customerId);
+            } else {
+                statement.setObject(i + 1, userId, Types.BIGINT);
+            }
+        }
+        return statement;
+    }
+
+    private static long millisSince(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+}
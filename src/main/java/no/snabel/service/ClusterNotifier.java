@@ -0,0 +1,131 @@
+package no.snabel.service;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Vertx;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import io.vertx.pgclient.PgConnectOptions;
+import io.vertx.pgclient.pubsub.PgSubscriber;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Cluster-wide invalidation messages over PostgreSQL LISTEN/NOTIFY.
+ *
+ * Messages are published as "topic:key" on a single channel. Every node, including the
+ * publisher, receives them and dispatches the key to the listeners registered for the topic.
+ * After a reconnect the subscriber may have missed messages, so listeners then receive
+ * {@link #ALL} and must drop everything they hold for that topic. A NOTIFY that still fails
+ * after retrying is only logged (the caller's write has already committed), so caches built on
+ * this must also expire their entries.
+ */
+@ApplicationScoped
+public class ClusterNotifier {
+
+    private static final Logger LOG = Logger.getLogger(ClusterNotifier.class);
+
+    public static final String ALL = "*";
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    Pool pool;
+
+    @ConfigProperty(name = "quarkus.datasource.reactive.url")
+    String reactiveUrl;
+
+    @ConfigProperty(name = "quarkus.datasource.username")
+    String username;
+
+    @ConfigProperty(name = "quarkus.datasource.password")
+    String password;
+
+    @ConfigProperty(name = "snabel.cluster.channel", defaultValue = "snabel_invalidation")
+    String channel;
+
+    @ConfigProperty(name = "snabel.cluster.publish-retries", defaultValue = "3")
+    long publishRetries;
+
+    private final Map<String, List<Consumer<String>>> listeners = new ConcurrentHashMap<>();
+
+    private PgSubscriber subscriber;
+
+    void onStart(@Observes StartupEvent event) {
+        PgConnectOptions options = PgConnectOptions.fromUri(reactiveUrl)
+                .setUser(username)
+                .setPassword(password);
+
+        subscriber = PgSubscriber.subscriber(vertx, options)
+                .reconnectPolicy(retries -> retries < 10 ? 1000L * (retries + 1) : 10_000L);
+
+        subscriber.channel(channel)
+                .subscribeHandler(v -> {
+                    // Anything published while we were disconnected is lost
+                    listeners.forEach((topic, consumers) -> consumers.forEach(c -> c.accept(ALL)));
+                })
+                .handler(this::dispatch);
+
+        subscriber.connect()
+                .onFailure(e -> LOG.warnf("Could not LISTEN on %s, cluster invalidation disabled: %s",
+                        channel, e.getMessage()));
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (subscriber != null) {
+            subscriber.close();
+        }
+    }
+
+    public void subscribe(String topic, Consumer<String> listener) {
+        listeners.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    /**
+     * Notify all nodes. Listeners on this node are called right away so that the
+     * caller sees its own write without waiting for the NOTIFY round trip.
+     */
+    public Uni<Void> publish(String topic, String key) {
+        deliver(topic, key);
+        return pool.preparedQuery("SELECT pg_notify($1, $2)")
+                .execute(Tuple.of(channel, topic + ":" + key))
+                .onFailure().retry().withBackOff(Duration.ofMillis(100), Duration.ofSeconds(1)).atMost(publishRetries)
+                .onFailure().invoke(e -> LOG.warnf("Failed to publish %s:%s: %s", topic, key, e.getMessage()))
+                .onFailure().recoverWithNull()
+                .replaceWithVoid();
+    }
+
+    private void dispatch(String payload) {
+        int separator = payload.indexOf(':');
+        if (separator < 0) {
+            return;
+        }
+        deliver(payload.substring(0, separator), payload.substring(separator + 1));
+    }
+
+    private void deliver(String topic, String key) {
+        List<Consumer<String>> consumers = listeners.get(topic);
+        if (consumers == null) {
+            return;
+        }
+        for (Consumer<String> consumer : consumers) {
+            try {
+                consumer.accept(key);
+            } catch (RuntimeException e) {
+                LOG.warnf(e, "Invalidation listener for %s failed", topic);
+            }
+        }
+    }
+}
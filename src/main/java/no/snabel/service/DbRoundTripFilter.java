@@ -0,0 +1,50 @@
+package no.snabel.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.common.vertx.ContextLocals;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.resteasy.reactive.server.ServerRequestFilter;
+import org.jboss.resteasy.reactive.server.ServerResponseFilter;
+import org.jboss.resteasy.reactive.server.SimpleResourceInfo;
+
+/**
+ * Counts the database round trips of every request (statements are counted by
+ * {@link QueryMonitor}) and reports them in a Server-Timing header and the
+ * snabel.http.db.round.trips summary per endpoint, so an N+1 query shows up as soon as it ships.
+ */
+public class DbRoundTripFilter {
+
+    private static final double[] BUCKETS = {1, 2, 3, 5, 10, 20, 50, 100};
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "snabel.db.server-timing", defaultValue = "true")
+    boolean serverTiming;
+
+    @ServerRequestFilter
+    public void countRoundTrips(SimpleResourceInfo resource) {
+        String endpoint = resource.getResourceClass().getSimpleName() + "." + resource.getMethodName();
+        ContextLocals.put(DbRoundTrips.LOCAL, new DbRoundTrips(endpoint));
+    }
+
+    @ServerResponseFilter
+    public void reportRoundTrips(ContainerResponseContext response) {
+        DbRoundTrips trips = DbRoundTrips.current();
+        if (trips == null) {
+            return;
+        }
+        DistributionSummary.builder("snabel.http.db.round.trips")
+                .description("Database statements per HTTP request")
+                .tag("endpoint", trips.getEndpoint())
+                .serviceLevelObjectives(BUCKETS)
+                .register(registry)
+                .record(trips.getCount());
+        if (serverTiming) {
+            response.getHeaders().add("Server-Timing", trips.serverTiming());
+        }
+    }
+}
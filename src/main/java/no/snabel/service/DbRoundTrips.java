@@ -0,0 +1,62 @@
+package no.snabel.service;
+
+import io.smallrye.common.vertx.ContextLocals;
+import io.smallrye.common.vertx.VertxContext;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statements sent to the database while serving one HTTP request. Kept in the request's
+ * duplicated Vert.x context, which every statement of the request is issued from.
+ */
+public class DbRoundTrips {
+
+    static final String LOCAL = "snabel.dbRoundTrips";
+
+    private final String endpoint;
+    private final AtomicInteger count = new AtomicInteger();
+    private final AtomicLong nanos = new AtomicLong();
+
+    DbRoundTrips(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    /**
+     * The round trips of the request being served on this thread, or null outside a request.
+     */
+    static DbRoundTrips current() {
+        Context context = Vertx.currentContext();
+        if (context == null || !VertxContext.isDuplicatedContext(context)) {
+            return null;
+        }
+        return ContextLocals.<DbRoundTrips>get(LOCAL).orElse(null);
+    }
+
+    void started() {
+        count.incrementAndGet();
+    }
+
+    void ended(long latencyNanos) {
+        nanos.addAndGet(latencyNanos);
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public int getCount() {
+        return count.get();
+    }
+
+    public long getNanos() {
+        return nanos.get();
+    }
+
+    String serverTiming() {
+        return String.format(Locale.ROOT, "db;desc=\"%d round trips\";dur=%.1f", count.get(), nanos.get() / 1e6);
+    }
+}
@@ -0,0 +1,71 @@
+package no.snabel.service;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.inject.Singleton;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.List;
+
+/**
+ * The sampler configured with quarkus.otel.traces.sampler, except that SQL statement spans it
+ * would drop are still recorded (not exported), so {@link QueryMonitor} sees every statement
+ * whatever the sampling ratio. Quarkus uses a Sampler bean in place of the configured one,
+ * which is why the configured one is built here.
+ */
+@Singleton
+public class DbStatementSampler implements Sampler {
+
+    // Set by the SQL client instrumentation before the span starts
+    private static final AttributeKey<String> DB_SYSTEM = AttributeKey.stringKey("db.system");
+    private static final AttributeKey<String> DB_SYSTEM_NAME = AttributeKey.stringKey("db.system.name");
+
+    @ConfigProperty(name = "quarkus.otel.traces.sampler", defaultValue = "parentbased_always_on")
+    String sampler;
+
+    @ConfigProperty(name = "quarkus.otel.traces.sampler.arg", defaultValue = "1.0")
+    double ratio;
+
+    private Sampler delegate;
+
+    // Before StartupEvent: the SDK samples spans created while the application boots
+    @PostConstruct
+    void init() {
+        delegate = configured(sampler, ratio);
+    }
+
+    static Sampler configured(String sampler, double ratio) {
+        return switch (sampler) {
+            case "always_on" -> Sampler.alwaysOn();
+            case "always_off" -> Sampler.alwaysOff();
+            case "traceidratio" -> Sampler.traceIdRatioBased(ratio);
+            case "parentbased_always_on" -> Sampler.parentBased(Sampler.alwaysOn());
+            case "parentbased_always_off" -> Sampler.parentBased(Sampler.alwaysOff());
+            case "parentbased_traceidratio" -> Sampler.parentBased(Sampler.traceIdRatioBased(ratio));
+            default -> throw new IllegalArgumentException("Unsupported quarkus.otel.traces.sampler: " + sampler);
+        };
+    }
+
+    @Override
+    public SamplingResult shouldSample(Context parentContext, String traceId, String name, SpanKind spanKind,
+                                       Attributes attributes, List<LinkData> parentLinks) {
+        SamplingResult result = delegate.shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
+        if (result.getDecision() == SamplingDecision.DROP && spanKind == SpanKind.CLIENT
+                && (attributes.get(DB_SYSTEM) != null || attributes.get(DB_SYSTEM_NAME) != null)) {
+            return SamplingResult.recordOnly();
+        }
+        return result;
+    }
+
+    @Override
+    public String getDescription() {
+        return "DbStatementSampler{" + delegate.getDescription() + "}";
+    }
+}
@@ -1,5 +1,7 @@
 package no.snabel.service;
 
+import io.micrometer.core.annotation.Timed;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
 import jakarta.enterprise.context.ApplicationScoped;
 import no.snabel.model.Customer;
 import no.snabel.model.Invoice;
@@ -39,6 +41,15 @@ public class EHFInvoiceService {
      * Generate EHF 3.0 XML for an invoice
      */
     public String generateEHF(Invoice invoice) {
+        return generateEHF(invoice, invoice.customer);
+    }
+
+    /**
+     * Generate EHF 3.0 XML for an invoice, with the supplier loaded separately (e.g. from the reference cache)
+     */
+    @Timed(value = "snabel.invoice.render", extraTags = {"format", "ehf"})
+    @WithSpan
+    public String generateEHF(Invoice invoice, Customer supplier) {
         try {
             DocumentBuilderFactory docFactory = DocumentBuilderFactory.newInstance();
             docFactory.setNamespaceAware(true);
@@ -91,13 +102,13 @@ public class EHFInvoiceService {
             }
 
             // Accounting Supplier Party (Seller/Supplier)
-            addSupplierParty(doc, rootElement, invoice.customer);
+            addSupplierParty(doc, rootElement, supplier);
 
             // Accounting Customer Party (Buyer/Customer)
             addCustomerParty(doc, rootElement, invoice);
 
             // Payment means (bank transfer)
-            addPaymentMeans(doc, rootElement, invoice);
+            addPaymentMeans(doc, rootElement, invoice, supplier);
 
             // Payment terms
             if (invoice.paymentTerms != null && !invoice.paymentTerms.isEmpty()) {
@@ -244,7 +255,7 @@ public class EHFInvoiceService {
         }
     }
 
-    private void addPaymentMeans(Document doc, Element parent, Invoice invoice) {
+    private void addPaymentMeans(Document doc, Element parent, Invoice invoice, Customer supplier) {
         Element paymentMeans = addCacElement(doc, parent, "PaymentMeans");
 
         // Payment means type code (30 = Credit transfer / bank transfer)
@@ -257,7 +268,7 @@ public class EHFInvoiceService {
 
         // Payee financial account (bank account)
         String bankAccount = invoice.bankAccount != null ? invoice.bankAccount :
-                           (invoice.customer.bankAccount != null ? invoice.customer.bankAccount : null);
+                           (supplier.bankAccount != null ? supplier.bankAccount : null);
 
         if (bankAccount != null) {
             Element payeeFinancialAccount = addCacElement(doc, paymentMeans, "PayeeFinancialAccount");
@@ -265,9 +276,9 @@ public class EHFInvoiceService {
 
             // Add FinancialInstitutionBranch only if SWIFT/BIC is available
             // Note: UBL-CR-429 - Name element should not be included
-            if (invoice.customer.swiftBic != null && !invoice.customer.swiftBic.isEmpty()) {
+            if (supplier.swiftBic != null && !supplier.swiftBic.isEmpty()) {
                 Element financialInstitutionBranch = addCacElement(doc, payeeFinancialAccount, "FinancialInstitutionBranch");
-                addCbcElement(doc, financialInstitutionBranch, "ID", invoice.customer.swiftBic);
+                addCbcElement(doc, financialInstitutionBranch, "ID", supplier.swiftBic);
             }
         }
     }
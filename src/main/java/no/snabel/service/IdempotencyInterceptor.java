@@ -0,0 +1,208 @@
+package no.snabel.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.smallrye.common.vertx.ContextLocals;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServerRequest;
+import jakarta.annotation.Priority;
+import jakarta.inject.Inject;
+import jakarta.interceptor.AroundInvoke;
+import jakarta.interceptor.Interceptor;
+import jakarta.interceptor.InvocationContext;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import no.snabel.security.TenantContext;
+import no.snabel.service.IdempotencyStore.StoredResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs an {@link Idempotent} write at most once per Idempotency-Key and tenant.
+ *
+ * Duplicates arriving while the first request runs on this node wait for it and get its
+ * response; on another node they get 409 until it completes. Later retries are answered from
+ * the stored response without calling the endpoint. Reusing a key for a different request
+ * (other method, path or body) is rejected with 422. 5xx responses and exceptions are not
+ * stored, so the client's retry runs the write again.
+ *
+ * The response is stored after the endpoint's own transaction has committed. A node dying in
+ * between leaves the key claimed until the lease runs out, after which a retry runs again.
+ */
+@Idempotent
+@Interceptor
+// Inside the scope check, outside @WithTransaction (200) so the response is stored only once committed
+@Priority(Interceptor.Priority.PLATFORM_BEFORE + 150)
+public class IdempotencyInterceptor {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    static final int MAX_KEY_LENGTH = 255;
+
+    @Inject
+    HttpServerRequest request;
+
+    @Inject
+    TenantContext tenant;
+
+    @Inject
+    IdempotencyStore store;
+
+    @Inject
+    ObjectMapper objectMapper;
+
+    @Inject
+    MeterRegistry registry;
+
+    @AroundInvoke
+    Object deduplicate(InvocationContext context) throws Exception {
+        String key = request.getHeader(HEADER);
+        Long customerId = tenant.getCustomerId();
+        // Keys are scoped to the tenant; the development endpoints that run without one are not covered
+        if (key == null || customerId == null) {
+            return context.proceed();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return Uni.createFrom().item(error(Response.Status.BAD_REQUEST,
+                    HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters"));
+        }
+        // Hashed from the raw body by IdempotencyRequestFilter, as endpoints fill in fields on the entity
+        String requestHash = ContextLocals.<String>get(IdempotencyRequestFilter.REQUEST_HASH_LOCAL)
+                .orElseThrow(() -> new IllegalStateException("No request hash for " + HEADER));
+
+        StoredResponse cached = store.cached(customerId, key);
+        if (cached != null) {
+            return Uni.createFrom().item(replay(cached, requestHash));
+        }
+
+        CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+        CompletableFuture<StoredResponse> running = store.join(customerId, key, mine);
+        if (running != null) {
+            count("collapsed");
+            // Completed on the first request's context; carry on on our own
+            Context own = Vertx.currentContext();
+            Uni<StoredResponse> result = Uni.createFrom().completionStage(running);
+            if (own != null) {
+                result = result.emitOn(task -> own.runOnContext(v -> task.run()));
+            }
+            return result.map(stored -> replay(stored, requestHash));
+        }
+
+        return store.claim(customerId, key, requestHash)
+                .chain(existing -> {
+                    if (existing != null) {
+                        mine.complete(existing);
+                        return Uni.createFrom().item(replay(existing, requestHash));
+                    }
+                    count("executed");
+                    return proceed(context)
+                            .call(response -> {
+                                StoredResponse stored = capture(requestHash, response);
+                                mine.complete(stored);
+                                return response.getStatus() >= 500
+                                        ? store.release(customerId, key)
+                                        : store.complete(customerId, key, stored);
+                            })
+                            .onFailure().call(e -> {
+                                mine.completeExceptionally(e);
+                                return store.release(customerId, key);
+                            });
+                })
+                .onFailure().invoke(mine::completeExceptionally)
+                .eventually(() -> store.leave(customerId, key, mine));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Uni<Response> proceed(InvocationContext context) {
+        try {
+            return (Uni<Response>) context.proceed();
+        } catch (Exception e) {
+            return Uni.createFrom().failure(e);
+        }
+    }
+
+    private Response replay(StoredResponse stored, String requestHash) {
+        if (stored == IdempotencyStore.IN_PROGRESS) {
+            count("in_progress");
+            return Response.fromResponse(error(Response.Status.CONFLICT,
+                            "A request with this " + HEADER + " is still being processed"))
+                    .header("Retry-After", "1")
+                    .build();
+        }
+        if (!stored.requestHash().equals(requestHash)) {
+            count("mismatch");
+            return error(422, HEADER + " was already used for a different request");
+        }
+        count("replayed");
+        Response.ResponseBuilder builder = Response.status(stored.status())
+                .header(REPLAYED_HEADER, "true");
+        if (stored.body().length > 0) {
+            builder.entity(stored.body()).type(stored.contentType());
+        }
+        if (stored.location() != null) {
+            builder.header(HttpHeaders.LOCATION, stored.location());
+        }
+        return builder.build();
+    }
+
+    private StoredResponse capture(String requestHash, Response response) {
+        Object entity = response.getEntity();
+        byte[] body;
+        if (entity == null) {
+            body = new byte[0];
+        } else if (entity instanceof byte[] bytes) {
+            body = bytes;
+        } else if (entity instanceof String text) {
+            body = text.getBytes(StandardCharsets.UTF_8);
+        } else {
+            body = serialize(entity);
+        }
+        MediaType type = response.getMediaType();
+        String location = response.getLocation() != null ? response.getLocation().toString() : null;
+        return new StoredResponse(requestHash, response.getStatus(),
+                type != null ? type.toString() : MediaType.APPLICATION_JSON, location, body);
+    }
+
+    static String requestHash(String method, String path, byte[] body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((method + ' ' + path + '\n').getBytes(StandardCharsets.UTF_8));
+            digest.update(body);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize for " + HEADER, e);
+        }
+    }
+
+    private static Response error(int status, String message) {
+        return Response.status(status)
+                .entity("{\"error\": \"" + message + "\"}")
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+
+    private static Response error(Response.Status status, String message) {
+        return error(status.getStatusCode(), message);
+    }
+
+    private void count(String outcome) {
+        registry.counter("snabel.idempotency.requests", "outcome", outcome).increment();
+    }
+}
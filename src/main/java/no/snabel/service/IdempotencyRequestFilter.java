@@ -0,0 +1,43 @@
+package no.snabel.service;
+
+import io.smallrye.common.vertx.ContextLocals;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ResourceInfo;
+import org.jboss.resteasy.reactive.server.ServerRequestFilter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Hashes the request of an {@link Idempotent} endpoint called with an Idempotency-Key as the
+ * client sent it: method, path and the raw body bytes. {@link IdempotencyInterceptor} compares
+ * retries by this hash, so it does not depend on how the body deserializes.
+ */
+public class IdempotencyRequestFilter {
+
+    static final String REQUEST_HASH_LOCAL = "snabel.idempotencyRequestHash";
+
+    // readBody: runs once the body is buffered, which JSON endpoints do before deserializing anyway
+    @ServerRequestFilter(readBody = true)
+    public void hashRequest(ContainerRequestContext request, ResourceInfo resource) {
+        if (request.getHeaderString(IdempotencyInterceptor.HEADER) == null || !isIdempotent(resource)) {
+            return;
+        }
+        byte[] body;
+        try {
+            body = request.hasEntity() ? request.getEntityStream().readAllBytes() : new byte[0];
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        request.setEntityStream(new ByteArrayInputStream(body));
+        ContextLocals.put(REQUEST_HASH_LOCAL, IdempotencyInterceptor.requestHash(
+                request.getMethod(), request.getUriInfo().getRequestUri().getRawPath(), body));
+    }
+
+    private static boolean isIdempotent(ResourceInfo resource) {
+        return resource.getResourceMethod() != null
+                && (resource.getResourceMethod().isAnnotationPresent(Idempotent.class)
+                || resource.getResourceClass().isAnnotationPresent(Idempotent.class));
+    }
+}
@@ -0,0 +1,181 @@
+package no.snabel.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Vertx;
+import io.vertx.mutiny.core.buffer.Buffer;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.RowIterator;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Idempotency keys and the responses they produced, in the idempotency_keys table with an
+ * in-memory front cache of completed responses.
+ *
+ * A key is claimed by inserting its row before the write runs. The row is filled in with the
+ * response afterwards, or deleted if the write failed so that a retry runs it again. A claim
+ * whose request died (no response after the lease) can be taken over by the next retry.
+ */
+@ApplicationScoped
+public class IdempotencyStore {
+
+    private static final Logger LOG = Logger.getLogger(IdempotencyStore.class);
+
+    /**
+     * Returned by {@link #claim} when the key is held by a request that has not finished yet.
+     */
+    static final StoredResponse IN_PROGRESS = new StoredResponse(null, 0, null, null, null);
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    Pool pool;
+
+    @ConfigProperty(name = "snabel.idempotency.ttl", defaultValue = "86400")
+    long ttlSeconds;
+
+    @ConfigProperty(name = "snabel.idempotency.lease", defaultValue = "60")
+    long leaseSeconds;
+
+    @ConfigProperty(name = "snabel.idempotency.cache-size", defaultValue = "10000")
+    long cacheSize;
+
+    @ConfigProperty(name = "snabel.idempotency.purge-interval", defaultValue = "600000")
+    long purgeIntervalMillis;
+
+    private Cache<String, StoredResponse> completed;
+
+    // Requests running on this node, so concurrent duplicates wait for the first instead of hitting the table
+    private final Map<String, CompletableFuture<StoredResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private long purgeTimer = -1;
+
+    void onStart(@Observes StartupEvent event) {
+        completed = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .maximumSize(cacheSize)
+                .build();
+        purgeTimer = vertx.setPeriodic(purgeIntervalMillis, id -> purgeExpired()
+                .subscribe().with(
+                        v -> { },
+                        e -> LOG.warnf("Purging expired idempotency keys failed: %s", e.getMessage())));
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (purgeTimer >= 0) {
+            vertx.cancelTimer(purgeTimer);
+        }
+    }
+
+    StoredResponse cached(Long customerId, String key) {
+        return completed.getIfPresent(scope(customerId, key));
+    }
+
+    /**
+     * Registers the caller as the request running the key on this node. Returns null if it now
+     * is, or the running request's result to wait for.
+     */
+    CompletableFuture<StoredResponse> join(Long customerId, String key, CompletableFuture<StoredResponse> mine) {
+        return inFlight.putIfAbsent(scope(customerId, key), mine);
+    }
+
+    void leave(Long customerId, String key, CompletableFuture<StoredResponse> mine) {
+        inFlight.remove(scope(customerId, key), mine);
+    }
+
+    /**
+     * Claims the key for a new request. Emits null when claimed, {@link #IN_PROGRESS} when
+     * another request holds it, or the stored response of the request that completed it.
+     */
+    Uni<StoredResponse> claim(Long customerId, String key, String requestHash) {
+        LocalDateTime now = LocalDateTime.now();
+        return pool.preparedQuery("""
+                        INSERT INTO idempotency_keys (customer_id, idempotency_key, request_hash, locked_at, expires_at)
+                        VALUES ($1, $2, $3, $4, $5)
+                        ON CONFLICT (customer_id, idempotency_key) DO UPDATE
+                            SET request_hash = EXCLUDED.request_hash, status_code = NULL, content_type = NULL,
+                                location = NULL, body = NULL, locked_at = EXCLUDED.locked_at,
+                                expires_at = EXCLUDED.expires_at
+                            WHERE idempotency_keys.expires_at < $4
+                               OR (idempotency_keys.status_code IS NULL AND idempotency_keys.locked_at < $6)
+                        RETURNING 1""")
+                .execute(Tuple.of(customerId, key, requestHash, now, now.plusSeconds(ttlSeconds),
+                        now.minusSeconds(leaseSeconds)))
+                .chain(claimed -> {
+                    if (claimed.rowCount() > 0) {
+                        return Uni.createFrom().nullItem();
+                    }
+                    return pool.preparedQuery("""
+                                    SELECT request_hash, status_code, content_type, location, body
+                                    FROM idempotency_keys WHERE customer_id = $1 AND idempotency_key = $2""")
+                            .execute(Tuple.of(customerId, key))
+                            .map(rows -> {
+                                RowIterator<Row> iterator = rows.iterator();
+                                if (!iterator.hasNext()) {
+                                    // Purged between the two statements; the client's retry will claim it
+                                    return IN_PROGRESS;
+                                }
+                                Row row = iterator.next();
+                                if (row.getInteger("status_code") == null) {
+                                    return IN_PROGRESS;
+                                }
+                                StoredResponse stored = new StoredResponse(row.getString("request_hash"),
+                                        row.getInteger("status_code"), row.getString("content_type"),
+                                        row.getString("location"), row.getBuffer("body").getBytes());
+                                completed.put(scope(customerId, key), stored);
+                                return stored;
+                            });
+                });
+    }
+
+    Uni<Void> complete(Long customerId, String key, StoredResponse response) {
+        return pool.preparedQuery("""
+                        UPDATE idempotency_keys SET status_code = $3, content_type = $4, location = $5, body = $6
+                        WHERE customer_id = $1 AND idempotency_key = $2""")
+                .execute(Tuple.of(customerId, key, response.status(), response.contentType(),
+                        response.location(), Buffer.buffer(response.body())))
+                .invoke(() -> completed.put(scope(customerId, key), response))
+                .replaceWithVoid();
+    }
+
+    /**
+     * Gives up the claim after the write failed, so a retry runs it again.
+     */
+    Uni<Void> release(Long customerId, String key) {
+        return pool.preparedQuery("DELETE FROM idempotency_keys WHERE customer_id = $1 AND idempotency_key = $2 AND status_code IS NULL")
+                .execute(Tuple.of(customerId, key))
+                .replaceWithVoid();
+    }
+
+    private Uni<Void> purgeExpired() {
+        return pool.preparedQuery("DELETE FROM idempotency_keys WHERE expires_at < $1")
+                .execute(Tuple.of(LocalDateTime.now()))
+                .replaceWithVoid();
+    }
+
+    private static String scope(Long customerId, String key) {
+        return customerId + ":" + key;
+    }
+
+    /**
+     * What a completed request answered, enough to replay it byte for byte.
+     */
+    record StoredResponse(String requestHash, int status, String contentType, String location, byte[] body) {
+    }
+}
@@ -0,0 +1,19 @@
+package no.snabel.service;
+
+import jakarta.interceptor.InterceptorBinding;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Write endpoint that honours the Idempotency-Key header: a retry with the same key gets the
+ * first response replayed instead of running the write again. Requests without the header are
+ * not affected. The endpoint must return {@code Uni<Response>}.
+ */
+@InterceptorBinding
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Idempotent {
+}
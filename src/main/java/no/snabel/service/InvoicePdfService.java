@@ -1,5 +1,7 @@
 package no.snabel.service;
 
+import io.micrometer.core.annotation.Timed;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
 import jakarta.enterprise.context.ApplicationScoped;
 import no.snabel.model.Customer;
 import no.snabel.model.Invoice;
@@ -33,6 +35,15 @@ public class InvoicePdfService {
      * Generate PDF for an invoice
      */
     public byte[] generatePdf(Invoice invoice) {
+        return generatePdf(invoice, invoice.customer);
+    }
+
+    /**
+     * Generate PDF for an invoice, with the supplier loaded separately (e.g. from the reference cache)
+     */
+    @Timed(value = "snabel.invoice.render", extraTags = {"format", "pdf"})
+    @WithSpan
+    public byte[] generatePdf(Invoice invoice, Customer supplier) {
         try (PDDocument document = new PDDocument()) {
             PDPage page = new PDPage(PDRectangle.A4);
             document.addPage(page);
@@ -41,7 +52,7 @@ public class InvoicePdfService {
                 float yPosition = page.getMediaBox().getHeight() - MARGIN;
 
                 // Supplier (seller) information - top left
-                yPosition = addSupplierInfo(contentStream, invoice.customer, yPosition);
+                yPosition = addSupplierInfo(contentStream, supplier, yPosition);
 
                 // Invoice title and number - top right
                 addInvoiceHeader(contentStream, invoice, page.getMediaBox().getWidth());
@@ -63,7 +74,7 @@ public class InvoicePdfService {
 
                 // Payment information
                 yPosition -= 20;
-                addPaymentInfo(contentStream, invoice, yPosition);
+                addPaymentInfo(contentStream, invoice, supplier, yPosition);
 
                 // Footer
                 addFooter(contentStream, invoice, page.getMediaBox().getHeight());
@@ -423,7 +434,7 @@ public class InvoicePdfService {
         return yPosition - LINE_HEIGHT;
     }
 
-    private void addPaymentInfo(PDPageContentStream contentStream, Invoice invoice, float yPosition) throws Exception {
+    private void addPaymentInfo(PDPageContentStream contentStream, Invoice invoice, Customer supplier, float yPosition) throws Exception {
         contentStream.beginText();
         contentStream.setFont(new PDType1Font(Standard14Fonts.FontName.HELVETICA_BOLD), FONT_SIZE_HEADING);
         contentStream.newLineAtOffset(MARGIN, yPosition);
@@ -433,7 +444,7 @@ public class InvoicePdfService {
         yPosition -= LINE_HEIGHT * 1.5f;
 
         String bankAccount = invoice.bankAccount != null ? invoice.bankAccount :
-                           (invoice.customer.bankAccount != null ? invoice.customer.bankAccount : null);
+                           (supplier.bankAccount != null ? supplier.bankAccount : null);
 
         if (bankAccount != null) {
             contentStream.beginText();
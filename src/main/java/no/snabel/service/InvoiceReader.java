@@ -0,0 +1,149 @@
+package no.snabel.service;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.RowIterator;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import no.snabel.dto.InvoiceSummary;
+import no.snabel.model.Invoice;
+import no.snabel.model.InvoiceLine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only invoice queries, run on the SQL client so {@link ReadReplicaRouter} can send them to
+ * the read replica. The invoices returned are detached: they are not managed by any session and
+ * only carry the columns and lines, not the customer, journal entry or creating user.
+ */
+@ApplicationScoped
+public class InvoiceReader {
+
+    private static final String SUMMARY_COLUMNS = """
+            id, invoice_number, invoice_date, due_date, client_name, client_organization_number,
+            subtotal, vat_amount, total_amount, currency, status, created_at, sent_at, paid_at""";
+
+    @Inject
+    ReadReplicaRouter replicaRouter;
+
+    /**
+     * Rows of GET /api/invoices, optionally only those with the given status.
+     */
+    public Uni<List<InvoiceSummary>> list(Long customerId, String status, int limit) {
+        Tuple params = Tuple.of(customerId);
+        StringBuilder sql = new StringBuilder("SELECT " + SUMMARY_COLUMNS + " FROM invoices WHERE customer_id = $1");
+        if (status != null && !status.isEmpty()) {
+            params.addValue(status);
+            sql.append(" AND status = $").append(params.size());
+        }
+        params.addValue(limit);
+        sql.append(" LIMIT $").append(params.size());
+
+        return replicaRouter.forRead().preparedQuery(sql.toString())
+                .execute(params)
+                .map(rows -> {
+                    List<InvoiceSummary> summaries = new ArrayList<>(rows.size());
+                    for (Row row : rows) {
+                        summaries.add(toSummary(row));
+                    }
+                    return summaries;
+                });
+    }
+
+    /**
+     * The customer's invoice with its lines in line order, as document generation needs it;
+     * null when there is no such invoice.
+     */
+    public Uni<Invoice> withLines(Long id, Long customerId) {
+        // Both queries on the same pool, so the lines match the invoice
+        Pool pool = replicaRouter.forRead();
+        return pool.preparedQuery("SELECT * FROM invoices WHERE id = $1 AND customer_id = $2")
+                .execute(Tuple.of(id, customerId))
+                .chain(rows -> {
+                    RowIterator<Row> iterator = rows.iterator();
+                    if (!iterator.hasNext()) {
+                        return Uni.createFrom().nullItem();
+                    }
+                    Invoice invoice = toInvoice(iterator.next());
+                    return pool.preparedQuery("SELECT * FROM invoice_lines WHERE invoice_id = $1 ORDER BY line_number")
+                            .execute(Tuple.of(id))
+                            .map(lines -> {
+                                for (Row line : lines) {
+                                    invoice.lines.add(toLine(line, invoice));
+                                }
+                                return invoice;
+                            });
+                });
+    }
+
+    static InvoiceSummary toSummary(Row row) {
+        return new InvoiceSummary(
+                row.getLong("id"),
+                row.getString("invoice_number"),
+                row.getLocalDate("invoice_date"),
+                row.getLocalDate("due_date"),
+                row.getString("client_name"),
+                row.getString("client_organization_number"),
+                row.getBigDecimal("subtotal"),
+                row.getBigDecimal("vat_amount"),
+                row.getBigDecimal("total_amount"),
+                row.getString("currency"),
+                row.getString("status"),
+                row.getLocalDateTime("created_at"),
+                row.getLocalDateTime("sent_at"),
+                row.getLocalDateTime("paid_at"));
+    }
+
+    static Invoice toInvoice(Row row) {
+        Invoice invoice = new Invoice();
+        invoice.id = row.getLong("id");
+        invoice.invoiceNumber = row.getString("invoice_number");
+        invoice.invoiceDate = row.getLocalDate("invoice_date");
+        invoice.dueDate = row.getLocalDate("due_date");
+        invoice.clientName = row.getString("client_name");
+        invoice.clientOrganizationNumber = row.getString("client_organization_number");
+        invoice.clientAddress = row.getString("client_address");
+        invoice.clientPostalCode = row.getString("client_postal_code");
+        invoice.clientCity = row.getString("client_city");
+        invoice.subtotal = row.getBigDecimal("subtotal");
+        invoice.vatAmount = row.getBigDecimal("vat_amount");
+        invoice.totalAmount = row.getBigDecimal("total_amount");
+        invoice.currency = row.getString("currency");
+        invoice.status = row.getString("status");
+        invoice.paymentTerms = row.getString("payment_terms");
+        invoice.paymentReference = row.getString("payment_reference");
+        invoice.bankAccount = row.getString("bank_account");
+        invoice.buyerReference = row.getString("buyer_reference");
+        invoice.contractReference = row.getString("contract_reference");
+        invoice.orderReference = row.getString("order_reference");
+        invoice.clientEndpointId = row.getString("client_endpoint_id");
+        invoice.clientEndpointScheme = row.getString("client_endpoint_scheme");
+        invoice.notes = row.getString("notes");
+        invoice.createdAt = row.getLocalDateTime("created_at");
+        invoice.updatedAt = row.getLocalDateTime("updated_at");
+        invoice.sentAt = row.getLocalDateTime("sent_at");
+        invoice.paidAt = row.getLocalDateTime("paid_at");
+        return invoice;
+    }
+
+    static InvoiceLine toLine(Row row, Invoice invoice) {
+        InvoiceLine line = new InvoiceLine();
+        line.id = row.getLong("id");
+        line.invoice = invoice;
+        line.lineNumber = row.getInteger("line_number");
+        line.description = row.getString("description");
+        line.itemName = row.getString("item_name");
+        line.itemId = row.getString("item_id");
+        line.unitCode = row.getString("unit_code");
+        line.quantity = row.getBigDecimal("quantity");
+        line.unitPrice = row.getBigDecimal("unit_price");
+        line.vatRate = row.getBigDecimal("vat_rate");
+        line.vatAmount = row.getBigDecimal("vat_amount");
+        line.lineTotal = row.getBigDecimal("line_total");
+        line.createdAt = row.getLocalDateTime("created_at");
+        return line;
+    }
+}
@@ -0,0 +1,314 @@
+package no.snabel.service;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.core.WorkerExecutor;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.RowSet;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import no.snabel.dto.JournalVerificationResult;
+import no.snabel.model.JournalChainCheckpoint;
+import no.snabel.model.JournalChainHead;
+import no.snabel.model.JournalEntry;
+import no.snabel.model.JournalEntryLine;
+import no.snabel.util.JournalHasher;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Seals posted journal entries into a per-customer SHA-256 hash chain and verifies the chains.
+ *
+ * Posting locks the customer's chain head, so entries are sealed one at a time per customer
+ * while different customers post concurrently. Every checkpoint-interval entries the chain
+ * hash is also stored as a checkpoint. Verification splits each chain at the checkpoints into
+ * segments that are checked independently: each segment starts from the hash of the checkpoint
+ * before it and must end on the hash of the checkpoint after it, so together the segments cover
+ * the whole chain. Segments of all customers are fetched concurrently and hashed on a worker pool,
+ * from the read replica when it is current.
+ */
+@ApplicationScoped
+public class JournalChainService {
+
+    private static final Logger LOG = Logger.getLogger(JournalChainService.class);
+
+    private static final Comparator<JournalEntryLine> LINE_ORDER = Comparator
+            .comparing((JournalEntryLine line) -> line.lineNumber, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(line -> line.id, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    ReadReplicaRouter replicaRouter;
+
+    @ConfigProperty(name = "snabel.journal.checkpoint-interval", defaultValue = "10000")
+    long checkpointInterval;
+
+    @ConfigProperty(name = "snabel.journal.verify.pool-size", defaultValue = "4")
+    int verifyPoolSize;
+
+    // Segments fetched from the database at the same time
+    @ConfigProperty(name = "snabel.journal.verify.parallelism", defaultValue = "8")
+    int verifyParallelism;
+
+    // 0 disables the background verification of all chains
+    @ConfigProperty(name = "snabel.journal.verify.interval", defaultValue = "0")
+    long verifyIntervalMillis;
+
+    private WorkerExecutor executor;
+
+    private long verifyTimer = -1;
+
+    record Segment(Long customerId, long fromSeq, String startHash, long toSeq, String endHash) {
+    }
+
+    record SegmentResult(Long customerId, long entries, Long firstInvalidSeq, String error) {
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        executor = vertx.createSharedWorkerExecutor("snabel-journal-verify", verifyPoolSize);
+        if (verifyIntervalMillis > 0) {
+            verifyTimer = vertx.setPeriodic(verifyIntervalMillis, id -> verifyAll()
+                    .subscribe().with(
+                            results -> results.stream().filter(r -> !r.valid).forEach(r ->
+                                    LOG.errorf("Journal chain of customer %d is broken at seq %d: %s",
+                                            r.customerId, r.firstInvalidSeq, r.error)),
+                            e -> LOG.warnf("Journal chain verification failed: %s", e.getMessage())));
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (verifyTimer >= 0) {
+            vertx.cancelTimer(verifyTimer);
+        }
+        if (executor != null) {
+            executor.closeAndForget();
+        }
+    }
+
+    /**
+     * Post an entry and append it to its customer's chain. Must run inside a transaction, with
+     * the entry's customer and lines loaded.
+     */
+    public Uni<JournalEntry> seal(JournalEntry entry) {
+        Long customerId = entry.customer.id;
+        return JournalChainHead.lockForCustomer(customerId).chain(head -> {
+            long seq = head.lastSeq + 1;
+            entry.posted = true;
+            // The database keeps microseconds; the hash must see the same value it will read back
+            entry.postedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+            entry.chainSeq = seq;
+            entry.prevHash = head.lastHash;
+            entry.entryHash = hash(new JournalHasher(), customerId, entry);
+            head.lastSeq = seq;
+            head.lastHash = entry.entryHash;
+
+            if (seq % checkpointInterval != 0) {
+                return Uni.createFrom().item(entry);
+            }
+            JournalChainCheckpoint checkpoint = new JournalChainCheckpoint();
+            checkpoint.customerId = customerId;
+            checkpoint.chainSeq = seq;
+            checkpoint.entryHash = entry.entryHash;
+            return checkpoint.persist().replaceWith(entry);
+        });
+    }
+
+    static String hash(JournalHasher hasher, Long customerId, JournalEntry entry) {
+        hasher.start(entry.prevHash, customerId, entry.chainSeq)
+                .entry(entry.entryNumber, entry.entryDate, entry.description, entry.reference,
+                        entry.entryType, entry.postedAt);
+        entry.lines.stream().sorted(LINE_ORDER).forEach(line -> hasher.line(line.accountId, line.description,
+                line.debitAmount, line.creditAmount, line.vatAmount, line.vatCode, line.currency,
+                line.exchangeRate));
+        return hasher.finish();
+    }
+
+    public Uni<JournalVerificationResult> verify(Long customerId) {
+        long started = System.nanoTime();
+        Pool pool = replicaRouter.forRead();
+        return planSegments(pool, customerId)
+                .chain(segments -> verifySegments(pool, segments)
+                        .map(results -> summarize(customerId, segments.size(), results, started)));
+    }
+
+    public Uni<List<JournalVerificationResult>> verifyAll() {
+        long started = System.nanoTime();
+        Pool pool = replicaRouter.forRead();
+        return pool.query("SELECT customer_id FROM journal_chain_heads ORDER BY customer_id").execute()
+                .chain(rows -> {
+                    List<Uni<List<Segment>>> plans = new ArrayList<>();
+                    for (Row row : rows) {
+                        plans.add(planSegments(pool, row.getLong("customer_id")));
+                    }
+                    if (plans.isEmpty()) {
+                        return Uni.createFrom().item(List.<Segment>of());
+                    }
+                    return Uni.join().all(plans).andFailFast()
+                            .map(perCustomer -> perCustomer.stream().flatMap(List::stream).toList());
+                })
+                .chain(segments -> verifySegments(pool, segments).map(results -> {
+                    Map<Long, List<SegmentResult>> byCustomer = new LinkedHashMap<>();
+                    Map<Long, Integer> segmentCounts = new LinkedHashMap<>();
+                    for (Segment segment : segments) {
+                        segmentCounts.merge(segment.customerId(), 1, Integer::sum);
+                        byCustomer.computeIfAbsent(segment.customerId(), id -> new ArrayList<>());
+                    }
+                    results.forEach(r -> byCustomer.get(r.customerId()).add(r));
+                    List<JournalVerificationResult> summaries = new ArrayList<>();
+                    byCustomer.forEach((customerId, customerResults) -> summaries.add(
+                            summarize(customerId, segmentCounts.get(customerId), customerResults, started)));
+                    return summaries;
+                }));
+    }
+
+    private Uni<List<Segment>> planSegments(Pool pool, Long customerId) {
+        Uni<RowSet<Row>> head = pool.preparedQuery("SELECT last_seq, last_hash FROM journal_chain_heads WHERE customer_id = $1")
+                .execute(Tuple.of(customerId));
+        Uni<RowSet<Row>> checkpoints = pool.preparedQuery(
+                        "SELECT chain_seq, entry_hash FROM journal_chain_checkpoints WHERE customer_id = $1 ORDER BY chain_seq")
+                .execute(Tuple.of(customerId));
+        return Uni.combine().all().unis(head, checkpoints).asTuple().map(pair -> {
+            List<Segment> segments = new ArrayList<>();
+            if (pair.getItem1().size() == 0) {
+                return segments;
+            }
+            Row tip = pair.getItem1().iterator().next();
+            long lastSeq = tip.getLong("last_seq");
+
+            long fromSeq = 0;
+            String startHash = JournalHasher.GENESIS;
+            for (Row checkpoint : pair.getItem2()) {
+                long seq = checkpoint.getLong("chain_seq");
+                if (seq > lastSeq) {
+                    break;
+                }
+                String hash = checkpoint.getString("entry_hash");
+                segments.add(new Segment(customerId, fromSeq, startHash, seq, hash));
+                fromSeq = seq;
+                startHash = hash;
+            }
+            if (fromSeq < lastSeq) {
+                segments.add(new Segment(customerId, fromSeq, startHash, lastSeq, tip.getString("last_hash")));
+            }
+            return segments;
+        });
+    }
+
+    private Uni<List<SegmentResult>> verifySegments(Pool pool, List<Segment> segments) {
+        if (segments.isEmpty()) {
+            return Uni.createFrom().item(List.of());
+        }
+        return Multi.createFrom().iterable(segments)
+                .onItem().transformToUni(segment -> verifySegment(pool, segment)).merge(verifyParallelism)
+                .collect().asList();
+    }
+
+    private Uni<SegmentResult> verifySegment(Pool pool, Segment segment) {
+        return pool.preparedQuery("""
+                        SELECT e.chain_seq, e.prev_hash, e.entry_hash, e.entry_number, e.entry_date, e.description,
+                               e.reference, e.entry_type, e.posted_at,
+                               l.account_id, l.description AS line_description, l.debit_amount, l.credit_amount,
+                               l.vat_amount, l.vat_code, l.currency, l.exchange_rate
+                        FROM journal_entries e
+                        LEFT JOIN journal_entry_lines l ON l.journal_entry_id = e.id
+                        WHERE e.customer_id = $1 AND e.chain_seq > $2 AND e.chain_seq <= $3
+                        ORDER BY e.chain_seq, l.line_number, l.id""")
+                .execute(Tuple.of(segment.customerId(), segment.fromSeq(), segment.toSeq()))
+                .chain(rows -> executor.executeBlocking(() -> check(segment, rows), false));
+    }
+
+    /**
+     * Recompute one segment. Rows are one per line, ordered as they were hashed.
+     */
+    static SegmentResult check(Segment segment, Iterable<Row> rows) {
+        JournalHasher hasher = new JournalHasher();
+        String running = segment.startHash();
+        long expectedSeq = segment.fromSeq() + 1;
+        long currentSeq = -1;
+        String storedHash = null;
+
+        for (Row row : rows) {
+            long seq = row.getLong("chain_seq");
+            if (seq != currentSeq) {
+                if (currentSeq >= 0) {
+                    String computed = hasher.finish();
+                    if (!computed.equals(storedHash)) {
+                        return broken(segment, currentSeq, "entry content does not match its hash");
+                    }
+                    running = computed;
+                    expectedSeq++;
+                }
+                if (seq != expectedSeq) {
+                    return broken(segment, expectedSeq, "entry is missing from the chain");
+                }
+                if (!running.equals(row.getString("prev_hash"))) {
+                    return broken(segment, seq, "prev_hash does not match the previous entry");
+                }
+                currentSeq = seq;
+                storedHash = row.getString("entry_hash");
+                hasher.start(running, segment.customerId(), seq)
+                        .entry(row.getString("entry_number"), row.getLocalDate("entry_date"),
+                                row.getString("description"), row.getString("reference"),
+                                row.getString("entry_type"), row.getLocalDateTime("posted_at"));
+            }
+            // An entry without lines comes back as a single row with null line columns
+            if (row.getValue("account_id") != null) {
+                hasher.line(row.getLong("account_id"), row.getString("line_description"),
+                        row.getBigDecimal("debit_amount"), row.getBigDecimal("credit_amount"),
+                        row.getBigDecimal("vat_amount"), row.getString("vat_code"),
+                        row.getString("currency"), row.getBigDecimal("exchange_rate"));
+            }
+        }
+        if (currentSeq >= 0) {
+            String computed = hasher.finish();
+            if (!computed.equals(storedHash)) {
+                return broken(segment, currentSeq, "entry content does not match its hash");
+            }
+            running = computed;
+        }
+        if (currentSeq != segment.toSeq()) {
+            return broken(segment, Math.max(currentSeq + 1, segment.fromSeq() + 1), "entry is missing from the chain");
+        }
+        if (!running.equals(segment.endHash())) {
+            return broken(segment, segment.toSeq(), "chain does not match its checkpoint");
+        }
+        return new SegmentResult(segment.customerId(), segment.toSeq() - segment.fromSeq(), null, null);
+    }
+
+    private static SegmentResult broken(Segment segment, long seq, String error) {
+        return new SegmentResult(segment.customerId(), Math.max(0, seq - segment.fromSeq() - 1), seq, error);
+    }
+
+    private static JournalVerificationResult summarize(Long customerId, int segmentCount, List<SegmentResult> results,
+                                                       long startedNanos) {
+        JournalVerificationResult summary = new JournalVerificationResult(customerId);
+        summary.segments = segmentCount;
+        for (SegmentResult result : results) {
+            summary.entriesVerified += result.entries();
+            if (result.firstInvalidSeq() != null
+                    && (summary.firstInvalidSeq == null || result.firstInvalidSeq() < summary.firstInvalidSeq)) {
+                summary.valid = false;
+                summary.firstInvalidSeq = result.firstInvalidSeq();
+                summary.error = result.error();
+            }
+        }
+        summary.durationMs = (System.nanoTime() - startedNanos) / 1_000_000;
+        return summary;
+    }
+}
@@ -0,0 +1,96 @@
+package no.snabel.service;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Vertx;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Buffers users' lastLogin timestamps and writes them in one batched UPDATE per interval.
+ *
+ * Repeated logins by the same user within an interval collapse into a single row update,
+ * and login itself no longer needs a write transaction.
+ */
+@ApplicationScoped
+public class LastLoginRecorder {
+
+    private static final Logger LOG = Logger.getLogger(LastLoginRecorder.class);
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    Pool pool;
+
+    @ConfigProperty(name = "snabel.auth.last-login.flush-interval", defaultValue = "10000")
+    long flushIntervalMillis;
+
+    private final Map<Long, LocalDateTime> pending = new ConcurrentHashMap<>();
+
+    private long flushTimer = -1;
+
+    void onStart(@Observes StartupEvent event) {
+        flushTimer = vertx.setPeriodic(flushIntervalMillis, id -> flush()
+                .subscribe().with(
+                        v -> { },
+                        e -> LOG.warnf("Failed to flush last login timestamps: %s", e.getMessage())));
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (flushTimer >= 0) {
+            vertx.cancelTimer(flushTimer);
+        }
+        try {
+            flush().await().atMost(Duration.ofSeconds(5));
+        } catch (RuntimeException e) {
+            LOG.warnf("Dropped %d last login timestamps on shutdown: %s", pending.size(), e.getMessage());
+        }
+    }
+
+    public void record(Long userId) {
+        pending.put(userId, LocalDateTime.now());
+    }
+
+    Uni<Void> flush() {
+        if (pending.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+
+        List<Long> userIds = new ArrayList<>();
+        List<LocalDateTime> timestamps = new ArrayList<>();
+        for (Long userId : pending.keySet()) {
+            LocalDateTime lastLogin = pending.remove(userId);
+            if (lastLogin != null) {
+                userIds.add(userId);
+                timestamps.add(lastLogin);
+            }
+        }
+
+        return pool.preparedQuery("""
+                        UPDATE users u SET last_login = v.last_login
+                        FROM unnest($1::bigint[], $2::timestamp[]) AS v(id, last_login)
+                        WHERE u.id = v.id AND (u.last_login IS NULL OR u.last_login < v.last_login)""")
+                .execute(Tuple.of(userIds.toArray(new Long[0]), timestamps.toArray(new LocalDateTime[0])))
+                .onFailure().invoke(e -> {
+                    // Put them back for the next attempt unless a newer login was recorded meanwhile
+                    for (int i = 0; i < userIds.size(); i++) {
+                        pending.putIfAbsent(userIds.get(i), timestamps.get(i));
+                    }
+                })
+                .replaceWithVoid();
+    }
+}
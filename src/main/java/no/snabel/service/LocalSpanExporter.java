@@ -0,0 +1,243 @@
+package no.snabel.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.common.InstrumentationScopeInfo;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.data.EventData;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import jakarta.inject.Singleton;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Span exporter that works without a collector.
+ *
+ * In file mode every batch is appended as one OTLP/JSON ExportTraceServiceRequest per line
+ * (the format of the collector's file exporter, so a file can be replayed into a collector
+ * later; written here from the public SpanData API rather than the exporter's internal
+ * marshalers). In memory mode the most recent spans are kept for tests. Quarkus picks this bean up
+ * next to its own OTLP exporter and feeds it through a batch span processor.
+ */
+@Singleton
+public class LocalSpanExporter implements SpanExporter {
+
+    private static final Logger LOG = Logger.getLogger(LocalSpanExporter.class);
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    public enum Mode {
+        NONE,
+        FILE,
+        MEMORY
+    }
+
+    @ConfigProperty(name = "snabel.tracing.local-exporter", defaultValue = "none")
+    Mode mode;
+
+    @ConfigProperty(name = "snabel.tracing.file", defaultValue = "traces.jsonl")
+    String file;
+
+    @ConfigProperty(name = "snabel.tracing.memory.max-spans", defaultValue = "10000")
+    int maxSpans;
+
+    // guarded by this
+    private final ArrayDeque<SpanData> recent = new ArrayDeque<>();
+    private OutputStream out;
+    private boolean shutdown;
+
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> spans) {
+        if (shutdown || spans.isEmpty()) {
+            return CompletableResultCode.ofSuccess();
+        }
+        switch (mode) {
+            case MEMORY -> {
+                for (SpanData span : spans) {
+                    if (recent.size() >= maxSpans) {
+                        recent.poll();
+                    }
+                    recent.add(span);
+                }
+            }
+            case FILE -> {
+                try {
+                    if (out == null) {
+                        out = new BufferedOutputStream(Files.newOutputStream(Path.of(file),
+                                StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+                    }
+                    writeJson(spans, out);
+                    out.write('\n');
+                    out.flush();
+                } catch (IOException e) {
+                    LOG.warnf("Could not write %d spans to %s: %s", spans.size(), file, e.getMessage());
+                    return CompletableResultCode.ofFailure();
+                }
+            }
+            case NONE -> {
+            }
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+
+    @Override
+    public synchronized CompletableResultCode shutdown() {
+        shutdown = true;
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                LOG.warnf("Could not close %s: %s", file, e.getMessage());
+            }
+            out = null;
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+
+    /**
+     * One OTLP/JSON ExportTraceServiceRequest, spans grouped by resource and instrumentation scope.
+     */
+    static void writeJson(Collection<SpanData> spans, OutputStream out) throws IOException {
+        Map<Resource, Map<InstrumentationScopeInfo, List<SpanData>>> grouped = new LinkedHashMap<>();
+        for (SpanData span : spans) {
+            grouped.computeIfAbsent(span.getResource(), r -> new LinkedHashMap<>())
+                    .computeIfAbsent(span.getInstrumentationScopeInfo(), scope -> new ArrayList<>())
+                    .add(span);
+        }
+
+        try (JsonGenerator json = JSON.createGenerator(out, JsonEncoding.UTF8)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.writeStartObject();
+            json.writeArrayFieldStart("resourceSpans");
+            for (Map.Entry<Resource, Map<InstrumentationScopeInfo, List<SpanData>>> resource : grouped.entrySet()) {
+                json.writeStartObject();
+                json.writeObjectFieldStart("resource");
+                writeAttributes(json, resource.getKey().getAttributes());
+                json.writeEndObject();
+                json.writeArrayFieldStart("scopeSpans");
+                for (Map.Entry<InstrumentationScopeInfo, List<SpanData>> scope : resource.getValue().entrySet()) {
+                    json.writeStartObject();
+                    json.writeObjectFieldStart("scope");
+                    json.writeStringField("name", scope.getKey().getName());
+                    if (scope.getKey().getVersion() != null) {
+                        json.writeStringField("version", scope.getKey().getVersion());
+                    }
+                    json.writeEndObject();
+                    json.writeArrayFieldStart("spans");
+                    for (SpanData span : scope.getValue()) {
+                        writeSpan(json, span);
+                    }
+                    json.writeEndArray();
+                    json.writeEndObject();
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+    }
+
+    private static void writeSpan(JsonGenerator json, SpanData span) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("traceId", span.getTraceId());
+        json.writeStringField("spanId", span.getSpanId());
+        if (span.getParentSpanContext().isValid()) {
+            json.writeStringField("parentSpanId", span.getParentSpanId());
+        }
+        json.writeStringField("name", span.getName());
+        // OTLP numbers kinds from 1 (INTERNAL) in the order of the SpanKind enum
+        json.writeNumberField("kind", span.getKind().ordinal() + 1);
+        // 64-bit integers are strings in OTLP/JSON
+        json.writeStringField("startTimeUnixNano", Long.toString(span.getStartEpochNanos()));
+        json.writeStringField("endTimeUnixNano", Long.toString(span.getEndEpochNanos()));
+        writeAttributes(json, span.getAttributes());
+        if (!span.getEvents().isEmpty()) {
+            json.writeArrayFieldStart("events");
+            for (EventData event : span.getEvents()) {
+                json.writeStartObject();
+                json.writeStringField("timeUnixNano", Long.toString(event.getEpochNanos()));
+                json.writeStringField("name", event.getName());
+                writeAttributes(json, event.getAttributes());
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+        }
+        json.writeObjectFieldStart("status");
+        // UNSET, OK, ERROR are 0, 1, 2 in both
+        json.writeNumberField("code", span.getStatus().getStatusCode().ordinal());
+        if (!span.getStatus().getDescription().isEmpty()) {
+            json.writeStringField("message", span.getStatus().getDescription());
+        }
+        json.writeEndObject();
+        json.writeEndObject();
+    }
+
+    private static void writeAttributes(JsonGenerator json, Attributes attributes) throws IOException {
+        json.writeArrayFieldStart("attributes");
+        for (Map.Entry<AttributeKey<?>, Object> attribute : attributes.asMap().entrySet()) {
+            json.writeStartObject();
+            json.writeStringField("key", attribute.getKey().getKey());
+            json.writeFieldName("value");
+            writeValue(json, attribute.getValue());
+            json.writeEndObject();
+        }
+        json.writeEndArray();
+    }
+
+    private static void writeValue(JsonGenerator json, Object value) throws IOException {
+        json.writeStartObject();
+        if (value instanceof Boolean b) {
+            json.writeBooleanField("boolValue", b);
+        } else if (value instanceof Long l) {
+            json.writeStringField("intValue", Long.toString(l));
+        } else if (value instanceof Double d) {
+            json.writeNumberField("doubleValue", d);
+        } else if (value instanceof List<?> list) {
+            json.writeObjectFieldStart("arrayValue");
+            json.writeArrayFieldStart("values");
+            for (Object element : list) {
+                writeValue(json, element);
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        } else {
+            json.writeStringField("stringValue", String.valueOf(value));
+        }
+        json.writeEndObject();
+    }
+
+    /**
+     * Spans exported so far in memory mode, oldest first.
+     */
+    public synchronized List<SpanData> getSpans() {
+        return List.copyOf(recent);
+    }
+
+    public synchronized void reset() {
+        recent.clear();
+    }
+}
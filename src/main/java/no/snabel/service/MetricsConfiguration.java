@@ -0,0 +1,44 @@
+package no.snabel.service;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Singleton;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Publishes latency histograms for the timers we alert on.
+ *
+ * Histogram buckets (rather than client-side percentiles) can be aggregated across nodes, so
+ * p99 per route and tier is computed in Prometheus with histogram_quantile().
+ */
+public class MetricsConfiguration {
+
+    private static final List<String> HISTOGRAM_TIMERS = List.of(
+            "http.server.requests",
+            "snabel.invoice.render",
+            "snabel.auth.bcrypt",
+            "sql.pool.queue.delay");
+
+    @Produces
+    @Singleton
+    public MeterFilter latencyHistograms() {
+        return new MeterFilter() {
+            @Override
+            public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                if (!HISTOGRAM_TIMERS.contains(id.getName())) {
+                    return config;
+                }
+                return DistributionStatisticConfig.builder()
+                        .percentilesHistogram(true)
+                        .minimumExpectedValue((double) Duration.ofMillis(1).toNanos())
+                        .maximumExpectedValue((double) Duration.ofSeconds(30).toNanos())
+                        .build()
+                        .merge(config);
+            }
+        };
+    }
+}
@@ -0,0 +1,127 @@
+package no.snabel.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import no.snabel.util.SqlNormalizer;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the spans the reactive SQL client creates for every statement: counts them against
+ * the current request's {@link DbRoundTrips} and logs statements slower than the threshold,
+ * normalized, with the endpoint and the application frame that issued them.
+ *
+ * Statement spans are recorded even when the trace is not sampled (see {@link DbStatementSampler}),
+ * so the counts do not depend on the sampling ratio.
+ *
+ * Replaces hibernate-orm.log.sql, which logs every statement and is far too costly under load.
+ */
+@Singleton
+public class QueryMonitor implements SpanProcessor {
+
+    private static final Logger LOG = Logger.getLogger(QueryMonitor.class);
+
+    // The Vert.x SQL client instrumentation uses the older semantic conventions
+    private static final AttributeKey<String> DB_STATEMENT = AttributeKey.stringKey("db.statement");
+    private static final AttributeKey<String> DB_QUERY_TEXT = AttributeKey.stringKey("db.query.text");
+
+    private static final StackWalker STACK = StackWalker.getInstance();
+
+    @Inject
+    MeterRegistry registry;
+
+    @ConfigProperty(name = "snabel.db.slow-query.threshold", defaultValue = "200")
+    long thresholdMillis;
+
+    @ConfigProperty(name = "snabel.db.slow-query.capture-caller", defaultValue = "true")
+    boolean captureCaller;
+
+    @ConfigProperty(name = "snabel.db.slow-query.max-statement-length", defaultValue = "2000")
+    int maxStatementLength;
+
+    // Statements whose span has not ended. Weak keys and expiry keep spans that never end from piling up
+    private final Cache<ReadableSpan, Statement> running = Caffeine.newBuilder()
+            .weakKeys()
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
+    private record Statement(DbRoundTrips trips, String caller) {
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+        if (statement(span) == null) {
+            return;
+        }
+        DbRoundTrips trips = DbRoundTrips.current();
+        if (trips != null) {
+            trips.started();
+        }
+        // Called on the thread that sends the statement, so the issuing code may still be on the stack
+        running.put(span, new Statement(trips, captureCaller ? caller() : null));
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        Statement statement = running.asMap().remove(span);
+        if (statement == null) {
+            return;
+        }
+        long latency = span.getLatencyNanos();
+        if (statement.trips() != null) {
+            statement.trips().ended(latency);
+        }
+        if (thresholdMillis >= 0 && latency >= TimeUnit.MILLISECONDS.toNanos(thresholdMillis)) {
+            registry.counter("snabel.db.slow.queries").increment();
+            LOG.warnf("Slow query duration_ms=%d trace=%s endpoint=%s caller=%s statement=\"%s\"",
+                    TimeUnit.NANOSECONDS.toMillis(latency),
+                    span.getSpanContext().getTraceId(),
+                    statement.trips() != null ? statement.trips().getEndpoint() : "-",
+                    statement.caller() != null ? statement.caller() : "-",
+                    SqlNormalizer.normalize(statement(span), maxStatementLength));
+        }
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        running.invalidateAll();
+        return CompletableResultCode.ofSuccess();
+    }
+
+    private static String statement(ReadableSpan span) {
+        String statement = span.getAttribute(DB_STATEMENT);
+        return statement != null ? statement : span.getAttribute(DB_QUERY_TEXT);
+    }
+
+    private static String caller() {
+        return STACK.walk(frames -> frames
+                .filter(f -> f.getClassName().startsWith("no.snabel.")
+                        && !f.getClassName().equals(QueryMonitor.class.getName()))
+                .findFirst()
+                .map(f -> f.getClassName().substring(f.getClassName().lastIndexOf('.') + 1)
+                        + "." + f.getMethodName() + ":" + f.getLineNumber())
+                .orElse(null));
+    }
+}
@@ -0,0 +1,178 @@
+package no.snabel.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.reactive.datasource.ReactiveDataSource;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.common.vertx.ContextLocals;
+import io.smallrye.common.vertx.VertxContext;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.mutiny.sqlclient.Pool;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Picks the pool for read-only SQL: the read replica when it has caught up with the caller's
+ * last write, the primary otherwise.
+ *
+ * Write responses carry the primary's WAL position (see {@link ReadYourWritesFilter}). A read
+ * presenting one goes to the replica only once the replica has replayed past it, so users
+ * always see their own writes. The replica's replay position is polled, not checked per read.
+ */
+@ApplicationScoped
+public class ReadReplicaRouter {
+
+    private static final Logger LOG = Logger.getLogger(ReadReplicaRouter.class);
+
+    static final String READ_AFTER_LOCAL = "snabel.readAfterLsn";
+
+    private static final long UNKNOWN = -1;
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    MeterRegistry registry;
+
+    @Inject
+    Pool primary;
+
+    // Only resolved when routing is enabled: the replica datasource is inactive otherwise
+    @Inject
+    @ReactiveDataSource("replica")
+    Instance<Pool> replicaPool;
+
+    @ConfigProperty(name = "snabel.db.replica.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "snabel.db.replica.poll-interval", defaultValue = "200")
+    long pollIntervalMillis;
+
+    // Reads without a token also go to the primary while the replica is further behind than this
+    @ConfigProperty(name = "snabel.db.replica.max-lag-bytes", defaultValue = "16777216")
+    long maxLagBytes;
+
+    private Pool replica;
+    private volatile long primaryLsn = UNKNOWN;
+    private volatile long replayedLsn = UNKNOWN;
+    private final AtomicBoolean polling = new AtomicBoolean();
+    private long pollTimer = -1;
+
+    void onStart(@Observes StartupEvent event) {
+        if (!enabled) {
+            return;
+        }
+        replica = replicaPool.get();
+        Gauge.builder("snabel.db.replica.lag.bytes", this, ReadReplicaRouter::lagBytes)
+                .description("WAL bytes the read replica is behind the primary, -1 when unknown")
+                .register(registry);
+        pollTimer = vertx.setPeriodic(pollIntervalMillis, id -> poll());
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (pollTimer >= 0) {
+            vertx.cancelTimer(pollTimer);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The pool to run a read-only query of the current request on.
+     */
+    public Pool forRead() {
+        if (!enabled) {
+            return primary;
+        }
+        long replayed = replayedLsn;
+        long lag = lagBytes();
+        Long readAfter = readAfter();
+        if (replayed == UNKNOWN || lag < 0 || lag > maxLagBytes || (readAfter != null && readAfter > replayed)) {
+            registry.counter("snabel.db.reads", "target", "primary").increment();
+            return primary;
+        }
+        registry.counter("snabel.db.reads", "target", "replica").increment();
+        return replica;
+    }
+
+    /**
+     * The primary's current WAL position, which covers every transaction committed so far.
+     */
+    Uni<String> currentPrimaryLsn() {
+        return primary.query("SELECT pg_current_wal_lsn()::text AS lsn").execute()
+                .map(rows -> rows.iterator().next().getString("lsn"));
+    }
+
+    long lagBytes() {
+        long p = primaryLsn;
+        long r = replayedLsn;
+        return p == UNKNOWN || r == UNKNOWN ? UNKNOWN : Math.max(0, p - r);
+    }
+
+    private void poll() {
+        if (!polling.compareAndSet(false, true)) {
+            return;
+        }
+        // A "replica" that is not in recovery (e.g. the primary itself in dev) is always current
+        Uni<Long> replayed = lsn(replica, """
+                SELECT (CASE WHEN pg_is_in_recovery() THEN pg_last_wal_replay_lsn()
+                             ELSE pg_current_wal_lsn() END)::text AS lsn""");
+        Uni<Long> current = lsn(primary, "SELECT pg_current_wal_lsn()::text AS lsn");
+        Uni.combine().all().unis(replayed, current).asTuple()
+                .eventually(() -> polling.set(false))
+                .subscribe().with(
+                        lsns -> {
+                            replayedLsn = lsns.getItem1();
+                            primaryLsn = lsns.getItem2();
+                        },
+                        e -> {
+                            if (replayedLsn != UNKNOWN) {
+                                LOG.warnf("Read replica unavailable, reading from the primary: %s", e.getMessage());
+                            }
+                            replayedLsn = UNKNOWN;
+                        });
+    }
+
+    private static Uni<Long> lsn(Pool pool, String sql) {
+        return pool.query(sql).execute().map(rows -> {
+            String lsn = rows.iterator().next().getString("lsn");
+            return lsn == null ? UNKNOWN : parseLsn(lsn);
+        });
+    }
+
+    private static Long readAfter() {
+        Context context = Vertx.currentContext();
+        if (context == null || !VertxContext.isDuplicatedContext(context)) {
+            return null;
+        }
+        return ContextLocals.<Long>get(READ_AFTER_LOCAL).orElse(null);
+    }
+
+    /**
+     * Parses PostgreSQL's textual LSN, two hex numbers such as {@code 16/B374D848}.
+     */
+    static long parseLsn(String lsn) {
+        int slash = lsn.indexOf('/');
+        if (slash < 1 || slash > 8 || slash == lsn.length() - 1 || lsn.length() - slash - 1 > 8) {
+            throw new IllegalArgumentException("Not an LSN: " + lsn);
+        }
+        long high = Long.parseUnsignedLong(lsn, 0, slash, 16);
+        long low = Long.parseUnsignedLong(lsn, slash + 1, lsn.length(), 16);
+        return (high << 32) | low;
+    }
+
+    static String formatLsn(long lsn) {
+        return String.format("%X/%X", lsn >>> 32, lsn & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,89 @@
+package no.snabel.service;
+
+import io.smallrye.common.vertx.ContextLocals;
+import io.smallrye.mutiny.Uni;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.core.Cookie;
+import jakarta.ws.rs.core.HttpHeaders;
+import no.snabel.security.TenantContext;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+import org.jboss.resteasy.reactive.server.ServerRequestFilter;
+import org.jboss.resteasy.reactive.server.ServerResponseFilter;
+
+import java.util.Set;
+
+/**
+ * Read-your-writes token for {@link ReadReplicaRouter}.
+ *
+ * Successful writes answer with the primary's WAL position in the snabel_lsn cookie and the
+ * X-Snabel-Lsn header. Browsers send the cookie back; API clients echo the header on the reads
+ * that must see their write. Only tenant writes get one: the replica only serves tenant reports,
+ * so sign-in and other untenanted writes skip the extra round trip to the primary.
+ */
+public class ReadYourWritesFilter {
+
+    private static final Logger LOG = Logger.getLogger(ReadYourWritesFilter.class);
+
+    static final String COOKIE = "snabel_lsn";
+    static final String HEADER = "X-Snabel-Lsn";
+
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    // Token and session endpoints: nothing they write is read back from the replica
+    private static final String AUTH_PATH = "/api/auth";
+
+    // Sent when the position could not be read: forces the primary until the token expires
+    private static final String PRIMARY_ONLY = ReadReplicaRouter.formatLsn(Long.MAX_VALUE);
+
+    @Inject
+    ReadReplicaRouter router;
+
+    @Inject
+    TenantContext tenant;
+
+    @ConfigProperty(name = "snabel.db.replica.token-ttl", defaultValue = "300")
+    int tokenTtlSeconds;
+
+    @ServerRequestFilter
+    public void readAfter(ContainerRequestContext request) {
+        if (!router.isEnabled()) {
+            return;
+        }
+        String token = request.getHeaderString(HEADER);
+        if (token == null) {
+            Cookie cookie = request.getCookies().get(COOKIE);
+            token = cookie != null ? cookie.getValue() : null;
+        }
+        if (token == null) {
+            return;
+        }
+        try {
+            ContextLocals.put(ReadReplicaRouter.READ_AFTER_LOCAL, ReadReplicaRouter.parseLsn(token));
+        } catch (IllegalArgumentException e) {
+            LOG.debugf("Ignoring malformed %s token: %s", COOKIE, token);
+        }
+    }
+
+    @ServerResponseFilter
+    public Uni<Void> rememberWrite(ContainerRequestContext request, ContainerResponseContext response) {
+        if (!router.isEnabled() || READ_METHODS.contains(request.getMethod()) || response.getStatus() >= 400
+                || tenant.getCustomerId() == null || request.getUriInfo().getRequestUri().getPath().startsWith(AUTH_PATH)) {
+            return Uni.createFrom().voidItem();
+        }
+        return router.currentPrimaryLsn()
+                .onFailure().recoverWithItem(e -> {
+                    LOG.warnf("Could not read the primary WAL position, pinning the caller to the primary: %s",
+                            e.getMessage());
+                    return PRIMARY_ONLY;
+                })
+                .invoke(lsn -> {
+                    response.getHeaders().add(HEADER, lsn);
+                    response.getHeaders().add(HttpHeaders.SET_COOKIE,
+                            COOKIE + "=" + lsn + "; Path=/; Max-Age=" + tokenTtlSeconds + "; HttpOnly; SameSite=Lax");
+                })
+                .replaceWithVoid();
+    }
+}
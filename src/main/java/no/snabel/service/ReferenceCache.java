@@ -0,0 +1,189 @@
+package no.snabel.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import no.snabel.model.Customer;
+import no.snabel.model.Department;
+import no.snabel.model.Project;
+import no.snabel.model.StandardAccount;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.reactive.mutiny.Mutiny;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Read-mostly cache of reference entities: customers, the standard chart of accounts,
+ * departments and projects.
+ *
+ * Hibernate Reactive has no second-level cache, so this keeps detached snapshots loaded
+ * through a stateless session. They are shared between requests and must not be modified
+ * or attached to a session. Each entity type has its own TTL and size bound. Writes through
+ * the API drop the entry on every node (see {@link ClusterNotifier}); the TTL bounds how long
+ * a row changed outside the API can be served stale.
+ */
+@ApplicationScoped
+public class ReferenceCache {
+
+    static final String CUSTOMERS = "customers";
+    static final String STANDARD_ACCOUNTS = "standard-accounts";
+    static final String DEPARTMENTS = "departments";
+    static final String PROJECTS = "projects";
+
+    @Inject
+    Mutiny.SessionFactory sessionFactory;
+
+    @Inject
+    ClusterNotifier clusterNotifier;
+
+    @ConfigProperty(name = "snabel.cache.customers.ttl", defaultValue = "600")
+    long customerTtlSeconds;
+
+    @ConfigProperty(name = "snabel.cache.customers.max-size", defaultValue = "10000")
+    long customerMaxSize;
+
+    @ConfigProperty(name = "snabel.cache.standard-accounts.ttl", defaultValue = "3600")
+    long standardAccountTtlSeconds;
+
+    @ConfigProperty(name = "snabel.cache.standard-accounts.max-size", defaultValue = "1000")
+    long standardAccountMaxSize;
+
+    @ConfigProperty(name = "snabel.cache.departments.ttl", defaultValue = "300")
+    long departmentTtlSeconds;
+
+    @ConfigProperty(name = "snabel.cache.departments.max-size", defaultValue = "50000")
+    long departmentMaxSize;
+
+    @ConfigProperty(name = "snabel.cache.projects.ttl", defaultValue = "300")
+    long projectTtlSeconds;
+
+    @ConfigProperty(name = "snabel.cache.projects.max-size", defaultValue = "50000")
+    long projectMaxSize;
+
+    private Region<Customer> customers;
+    private Region<StandardAccount> standardAccounts;
+    private Region<Owned<Department>> departments;
+    private Region<Owned<Project>> projects;
+
+    void onStart(@Observes StartupEvent event) {
+        customers = region(CUSTOMERS, customerTtlSeconds, customerMaxSize);
+        standardAccounts = region(STANDARD_ACCOUNTS, standardAccountTtlSeconds, standardAccountMaxSize);
+        departments = region(DEPARTMENTS, departmentTtlSeconds, departmentMaxSize);
+        projects = region(PROJECTS, projectTtlSeconds, projectMaxSize);
+    }
+
+    private <V> Region<V> region(String topic, long ttlSeconds, long maxSize) {
+        Region<V> region = new Region<>(Duration.ofSeconds(ttlSeconds), maxSize);
+        clusterNotifier.subscribe(topic, region::onInvalidation);
+        return region;
+    }
+
+    public Uni<Customer> customer(Long id) {
+        return customers.getOrLoad(id, () -> sessionFactory.withStatelessSession(s -> s.get(Customer.class, id)));
+    }
+
+    public Uni<StandardAccount> standardAccount(Long id) {
+        return standardAccounts.getOrLoad(id,
+                () -> sessionFactory.withStatelessSession(s -> s.get(StandardAccount.class, id)));
+    }
+
+    /**
+     * The tenant's department, or null if it does not exist or belongs to another tenant.
+     */
+    public Uni<Department> department(Long customerId, Long id) {
+        return departments.getOrLoad(id, () -> loadOwned(Department.class, "Department", id))
+                .map(owned -> owned != null && owned.isOwnedBy(customerId) ? owned.value() : null);
+    }
+
+    /**
+     * The tenant's project, or null if it does not exist or belongs to another tenant.
+     */
+    public Uni<Project> project(Long customerId, Long id) {
+        return projects.getOrLoad(id, () -> loadOwned(Project.class, "Project", id))
+                .map(owned -> owned != null && owned.isOwnedBy(customerId) ? owned.value() : null);
+    }
+
+    /**
+     * Drop the entry here and on all other nodes. Like the other invalidate methods, call it
+     * after the write is flushed.
+     */
+    public Uni<Void> invalidateCustomer(Long id) {
+        return clusterNotifier.publish(CUSTOMERS, String.valueOf(id));
+    }
+
+    public Uni<Void> invalidateStandardAccount(Long id) {
+        return clusterNotifier.publish(STANDARD_ACCOUNTS, String.valueOf(id));
+    }
+
+    public Uni<Void> invalidateDepartment(Long id) {
+        return clusterNotifier.publish(DEPARTMENTS, String.valueOf(id));
+    }
+
+    public Uni<Void> invalidateProject(Long id) {
+        return clusterNotifier.publish(PROJECTS, String.valueOf(id));
+    }
+
+    private <E> Uni<Owned<E>> loadOwned(Class<E> type, String entityName, Long id) {
+        // The owner is selected as a column: a lazy association on a stateless entity cannot be read later
+        return sessionFactory.withStatelessSession(s -> s
+                .createSelectionQuery("select e, e.customer.id from " + entityName + " e where e.id = ?1", Object[].class)
+                .setParameter(1, id)
+                .getSingleResultOrNull()
+                .map(row -> row == null ? null : new Owned<>((Long) row[1], type.cast(row[0]))));
+    }
+
+    record Owned<E>(Long customerId, E value) {
+        boolean isOwnedBy(Long tenant) {
+            return tenant != null && tenant.equals(customerId);
+        }
+    }
+
+    /**
+     * One entity type's entries, keyed by id.
+     */
+    static final class Region<V> {
+
+        private final Cache<Long, V> cache;
+
+        // Bumped on every invalidation so a load that raced with a write is not cached
+        private final AtomicLong generation = new AtomicLong();
+
+        Region(Duration ttl, long maxSize) {
+            cache = Caffeine.newBuilder()
+                    .expireAfterWrite(ttl)
+                    .maximumSize(maxSize)
+                    .build();
+        }
+
+        /**
+         * Missing rows (a null load) are not cached, so a row created later is found at once.
+         */
+        Uni<V> getOrLoad(Long id, Supplier<Uni<V>> loader) {
+            V cached = cache.getIfPresent(id);
+            if (cached != null) {
+                return Uni.createFrom().item(cached);
+            }
+            long loadGeneration = generation.get();
+            return loader.get().invoke(value -> {
+                if (value != null && generation.get() == loadGeneration) {
+                    cache.put(id, value);
+                }
+            });
+        }
+
+        void onInvalidation(String key) {
+            generation.incrementAndGet();
+            if (ClusterNotifier.ALL.equals(key)) {
+                cache.invalidateAll();
+            } else {
+                cache.invalidate(Long.valueOf(key));
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package no.snabel.service;
+
+/**
+ * Thrown when a customer's queue of expensive operations is full or a job waited too long.
+ */
+public class TenantQuotaExceededException extends RuntimeException {
+
+    public TenantQuotaExceededException(Long customerId) {
+        super("Too many concurrent expensive operations for customer " + customerId);
+    }
+}
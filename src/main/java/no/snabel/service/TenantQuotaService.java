@@ -0,0 +1,246 @@
+package no.snabel.service;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.opentelemetry.context.Context;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.UniEmitter;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Schedules expensive per-tenant work (PDF and EHF rendering, exports, reports) on a shared
+ * worker pool.
+ *
+ * Each customer has a semaphore capping how many of its jobs may run at once, sized by its
+ * {@link Tier}. Jobs beyond that wait in the customer's own queue, and free workers are handed
+ * out round-robin across customers with waiting work, so a tenant queueing hundreds of PDFs
+ * cannot push another tenant's single download to the back of the line. A tenant whose queue
+ * is full, or whose job waits longer than the queue timeout, gets {@link TenantQuotaExceededException}.
+ * None of this runs on the event loop, so interactive requests are unaffected either way.
+ */
+@ApplicationScoped
+public class TenantQuotaService {
+
+    public enum Tier {
+        STANDARD,
+        PREMIUM
+    }
+
+    @Inject
+    Vertx vertx;
+
+    @ConfigProperty(name = "snabel.quota.worker-pool.size", defaultValue = "4")
+    int poolSize;
+
+    @ConfigProperty(name = "snabel.quota.standard.max-concurrent", defaultValue = "2")
+    int standardMaxConcurrent;
+
+    @ConfigProperty(name = "snabel.quota.premium.max-concurrent", defaultValue = "4")
+    int premiumMaxConcurrent;
+
+    @ConfigProperty(name = "snabel.quota.premium.customers")
+    Optional<List<Long>> premiumCustomerIds;
+
+    @ConfigProperty(name = "snabel.quota.max-queued", defaultValue = "20")
+    int maxQueued;
+
+    @ConfigProperty(name = "snabel.quota.queue-timeout", defaultValue = "30000")
+    long queueTimeoutMillis;
+
+    private WorkerExecutor executor;
+
+    private Semaphore workers;
+
+    private Set<Long> premiumCustomers = Set.of();
+
+    private final Map<Long, Lane> lanes = new ConcurrentHashMap<>();
+
+    // Lanes with queued jobs, in round-robin order; guarded by this
+    private final ArrayDeque<Lane> waitingLanes = new ArrayDeque<>();
+
+    void onStart(@Observes StartupEvent event) {
+        executor = vertx.createSharedWorkerExecutor("snabel-render", poolSize);
+        workers = new Semaphore(poolSize);
+        premiumCustomers = Set.copyOf(premiumCustomerIds.orElse(List.of()));
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (executor != null) {
+            executor.close();
+        }
+    }
+
+    public Tier tierOf(Long customerId) {
+        return customerId != null && premiumCustomers.contains(customerId) ? Tier.PREMIUM : Tier.STANDARD;
+    }
+
+    /**
+     * Run blocking work for a customer once both a worker and one of the customer's permits
+     * are free. The work runs in the caller's trace context and the result is delivered on the
+     * caller's Vert.x context.
+     */
+    public <T> Uni<T> submit(Long customerId, Callable<T> work) {
+        return Uni.createFrom().emitter(emitter -> {
+            Lane lane = lanes.computeIfAbsent(customerId, id -> new Lane(
+                    tierOf(id) == Tier.PREMIUM ? premiumMaxConcurrent : standardMaxConcurrent));
+            var caller = Vertx.currentContext();
+            Job<T> job = new Job<>(Context.current().wrap(work), emitter,
+                    caller == null ? null : task -> caller.runOnContext(v -> task.run()));
+
+            synchronized (this) {
+                if (lane.waiting.size() >= maxQueued) {
+                    emitter.fail(new TenantQuotaExceededException(customerId));
+                    return;
+                }
+                lane.waiting.add(job);
+                if (!lane.scheduled) {
+                    lane.scheduled = true;
+                    waitingLanes.add(lane);
+                }
+            }
+
+            long timer = vertx.setTimer(queueTimeoutMillis, id -> {
+                if (job.claim()) {
+                    dequeue(lane, job);
+                    emitter.fail(new TenantQuotaExceededException(customerId));
+                }
+            });
+            // Also fires on completion, when the job has long been claimed
+            emitter.onTermination(() -> {
+                vertx.cancelTimer(timer);
+                if (job.claim()) {
+                    dequeue(lane, job);
+                }
+            });
+
+            dispatch();
+        });
+    }
+
+    private void dispatch() {
+        synchronized (this) {
+            // Stop once every waiting lane has been offered a worker and was at its own limit
+            int skipped = 0;
+            while (skipped < waitingLanes.size() && workers.tryAcquire()) {
+                Lane lane = waitingLanes.poll();
+                if (!lane.permits.tryAcquire()) {
+                    workers.release();
+                    waitingLanes.add(lane);
+                    skipped++;
+                    continue;
+                }
+
+                Job<?> job = nextLiveJob(lane);
+                if (job == null) {
+                    lane.permits.release();
+                    workers.release();
+                    lane.scheduled = false;
+                    continue;
+                }
+
+                if (lane.waiting.isEmpty()) {
+                    lane.scheduled = false;
+                } else {
+                    waitingLanes.add(lane);
+                }
+                skipped = 0;
+                run(lane, job);
+            }
+        }
+    }
+
+    private synchronized void dequeue(Lane lane, Job<?> job) {
+        lane.waiting.remove(job);
+    }
+
+    private static Job<?> nextLiveJob(Lane lane) {
+        Job<?> job;
+        while ((job = lane.waiting.poll()) != null) {
+            if (job.claim()) {
+                return job;
+            }
+        }
+        return null;
+    }
+
+    private <T> void run(Lane lane, Job<T> job) {
+        // Start the work from the submitter's context rather than whichever job just finished,
+        // so the worker sees the submitter's context locals (trace, logging)
+        if (job.caller == null) {
+            execute(lane, job);
+        } else {
+            job.caller.execute(() -> execute(lane, job));
+        }
+    }
+
+    private <T> void execute(Lane lane, Job<T> job) {
+        executor.executeBlocking(job.work, false).onComplete(result -> {
+            lane.permits.release();
+            workers.release();
+            job.deliver(result);
+            dispatch();
+        });
+    }
+
+    private static final class Lane {
+        final Semaphore permits;
+        final ArrayDeque<Job<?>> waiting = new ArrayDeque<>();
+        boolean scheduled;
+
+        Lane(int maxConcurrent) {
+            this.permits = new Semaphore(maxConcurrent);
+        }
+    }
+
+    private static final class Job<T> {
+        final Callable<T> work;
+        final UniEmitter<? super T> emitter;
+        // Runs tasks on the submitter's Vert.x context; null when submitted from outside one
+        final Executor caller;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        Job(Callable<T> work, UniEmitter<? super T> emitter, Executor caller) {
+            this.work = work;
+            this.emitter = emitter;
+            this.caller = caller;
+        }
+
+        /** The first of start, timeout or cancellation wins. */
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        void deliver(AsyncResult<T> result) {
+            if (caller == null) {
+                complete(result);
+            } else {
+                caller.execute(() -> complete(result));
+            }
+        }
+
+        private void complete(AsyncResult<T> result) {
+            if (result.succeeded()) {
+                emitter.complete(result.result());
+            } else {
+                emitter.fail(result.cause());
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package no.snabel.service;
+
+import io.micrometer.core.instrument.Tags;
+import io.quarkus.micrometer.runtime.HttpServerMetricsTagsContributor;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import no.snabel.security.TenantContext;
+
+import java.util.Locale;
+
+/**
+ * Tags http.server.requests with the caller's tenant tier, so latency can be compared per tier
+ * without a time series per customer.
+ */
+@Singleton
+public class TenantTierTagsContributor implements HttpServerMetricsTagsContributor {
+
+    private static final Tags UNAUTHENTICATED = Tags.of("tier", "none");
+
+    @Inject
+    TenantQuotaService quotaService;
+
+    @Override
+    public Tags contribute(Context context) {
+        Long customerId = context.requestContextLocalData(TenantContext.CUSTOMER_ID_LOCAL);
+        if (customerId == null) {
+            return UNAUTHENTICATED;
+        }
+        return Tags.of("tier", quotaService.tierOf(customerId).name().toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,295 @@
+package no.snabel.service;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.common.vertx.ContextLocals;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.ext.web.Router;
+import io.vertx.ext.web.RoutingContext;
+import io.vertx.mutiny.sqlclient.Pool;
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.mutiny.sqlclient.Tuple;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import no.snabel.dto.ClientUsageResponse;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Meters requests, response bytes and latency per customer and API client.
+ *
+ * Counters are striped {@link LongAdder}s held in nested maps per day, so recording a request
+ * for a known customer/client pair is two map lookups and four adds with no allocation. The
+ * totals are drained and upserted into api_usage, on the day they were recorded, in one
+ * statement per interval.
+ */
+@ApplicationScoped
+public class UsageMeter {
+
+    private static final Logger LOG = Logger.getLogger(UsageMeter.class);
+
+    /** Routing context keys, set by TenantContextFilter once the token is resolved. */
+    public static final String CUSTOMER_ID = "snabel.usage.customerId";
+    public static final String CLIENT_ID = "snabel.usage.clientId";
+
+    // Stored for traffic with user tokens, which have no clientId
+    private static final String NO_CLIENT = "";
+
+    private static final String START_NANOS = "snabel.usage.startNanos";
+    private static final String ROUTING_CONTEXT_LOCAL = "snabel.usage.routingContext";
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    Pool pool;
+
+    @Inject
+    ReadReplicaRouter replicaRouter;
+
+    @ConfigProperty(name = "snabel.usage.flush-interval", defaultValue = "60000")
+    long flushIntervalMillis;
+
+    private final ZoneId zone;
+    private final Map<LocalDate, Day> days = new ConcurrentHashMap<>();
+    private volatile Day today;
+    private final Handler<AsyncResult<Void>> endHandler = this::onEnd;
+
+    private long flushTimer = -1;
+
+    public UsageMeter() {
+        this(ZoneId.systemDefault(), System.currentTimeMillis());
+    }
+
+    UsageMeter(ZoneId zone, long nowMillis) {
+        this.zone = zone;
+        LocalDate date = Instant.ofEpochMilli(nowMillis).atZone(zone).toLocalDate();
+        today = new Day(date, zone);
+        days.put(date, today);
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        flushTimer = vertx.setPeriodic(flushIntervalMillis, id -> flush()
+                .subscribe().with(
+                        v -> { },
+                        e -> LOG.warnf("Failed to flush API usage: %s", e.getMessage())));
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (flushTimer >= 0) {
+            vertx.cancelTimer(flushTimer);
+        }
+        try {
+            flush().await().atMost(Duration.ofSeconds(5));
+        } catch (RuntimeException e) {
+            LOG.warnf("Dropped API usage counters on shutdown: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * Runs ahead of RESTEasy and records every authenticated request once the response is written.
+     * The end handler is shared; it finds the request through the request's Vert.x context, on
+     * which Vert.x runs end handlers.
+     */
+    void installHandler(@Observes Router router) {
+        router.route().order(Integer.MIN_VALUE).handler(rc -> {
+            rc.put(START_NANOS, System.nanoTime());
+            ContextLocals.put(ROUTING_CONTEXT_LOCAL, rc);
+            rc.addEndHandler(endHandler);
+            rc.next();
+        });
+    }
+
+    private void onEnd(AsyncResult<Void> ignored) {
+        Context context = Vertx.currentContext();
+        RoutingContext rc = context != null ? context.getLocal(ROUTING_CONTEXT_LOCAL) : null;
+        if (rc == null) {
+            return;
+        }
+        Long customerId = rc.get(CUSTOMER_ID);
+        Long startNanos = rc.get(START_NANOS);
+        if (customerId == null || startNanos == null) {
+            return;
+        }
+        String clientId = rc.get(CLIENT_ID);
+        record(customerId, clientId, rc.response().bytesWritten(),
+                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos),
+                rc.response().getStatusCode() >= 500);
+    }
+
+    public void record(Long customerId, String clientId, long bytes, long latencyMicros, boolean error) {
+        record(System.currentTimeMillis(), customerId, clientId, bytes, latencyMicros, error);
+    }
+
+    void record(long nowMillis, Long customerId, String clientId, long bytes, long latencyMicros, boolean error) {
+        // Booked on the day the request ended, whenever it is flushed
+        Day day = today;
+        if (nowMillis >= day.endMillis) {
+            day = rollOver(nowMillis);
+        }
+        Map<String, Counters> byClient = day.counters.get(customerId);
+        if (byClient == null) {
+            byClient = day.counters.computeIfAbsent(customerId, k -> new ConcurrentHashMap<>());
+        }
+        String key = clientId != null ? clientId : NO_CLIENT;
+        Counters c = byClient.get(key);
+        if (c == null) {
+            c = byClient.computeIfAbsent(key, k -> new Counters());
+        }
+        c.requests.increment();
+        c.bytes.add(bytes);
+        c.latencyMicros.add(latencyMicros);
+        if (error) {
+            c.errors.increment();
+        }
+    }
+
+    private synchronized Day rollOver(long nowMillis) {
+        Day day = today;
+        if (nowMillis >= day.endMillis) {
+            LocalDate date = Instant.ofEpochMilli(nowMillis).atZone(zone).toLocalDate();
+            day = days.computeIfAbsent(date, d -> new Day(d, zone));
+            today = day;
+        }
+        return day;
+    }
+
+    /**
+     * Daily usage for one customer, oldest first. Counts not yet flushed are not included.
+     */
+    public Uni<List<ClientUsageResponse>> query(Long customerId, LocalDate from, LocalDate to, String clientId) {
+        return replicaRouter.forRead().preparedQuery("""
+                        SELECT usage_date, client_id, request_count, error_count, bytes_out, latency_micros
+                        FROM api_usage
+                        WHERE customer_id = $1 AND usage_date BETWEEN $2 AND $3 AND ($4::varchar IS NULL OR client_id = $4)
+                        ORDER BY usage_date, client_id""")
+                .execute(Tuple.of(customerId, from, to, clientId))
+                .map(rows -> {
+                    List<ClientUsageResponse> usage = new ArrayList<>();
+                    for (Row row : rows) {
+                        String client = row.getString("client_id");
+                        usage.add(new ClientUsageResponse(
+                                row.getLocalDate("usage_date"),
+                                NO_CLIENT.equals(client) ? null : client,
+                                row.getLong("request_count"),
+                                row.getLong("error_count"),
+                                row.getLong("bytes_out"),
+                                row.getLong("latency_micros")));
+                    }
+                    return usage;
+                });
+    }
+
+    Uni<Void> flush() {
+        Batch batch = drain();
+        if (batch.counters.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        return pool.preparedQuery("""
+                        INSERT INTO api_usage (usage_date, customer_id, client_id, request_count, error_count, bytes_out, latency_micros)
+                        SELECT * FROM unnest($1::date[], $2::bigint[], $3::varchar[], $4::bigint[], $5::bigint[], $6::bigint[], $7::bigint[])
+                        ON CONFLICT (usage_date, customer_id, client_id) DO UPDATE SET
+                            request_count = api_usage.request_count + EXCLUDED.request_count,
+                            error_count = api_usage.error_count + EXCLUDED.error_count,
+                            bytes_out = api_usage.bytes_out + EXCLUDED.bytes_out,
+                            latency_micros = api_usage.latency_micros + EXCLUDED.latency_micros""")
+                .execute(Tuple.tuple()
+                        .addValue(batch.dates.toArray(new LocalDate[0]))
+                        .addValue(batch.customerIds.toArray(new Long[0]))
+                        .addValue(batch.clientIds.toArray(new String[0]))
+                        .addValue(batch.requests.toArray(new Long[0]))
+                        .addValue(batch.errors.toArray(new Long[0]))
+                        .addValue(batch.bytes.toArray(new Long[0]))
+                        .addValue(batch.latencies.toArray(new Long[0])))
+                .onFailure().invoke(e -> batch.restore())
+                .replaceWithVoid();
+    }
+
+    /**
+     * Takes the totals of every day recorded since the last flush. Days before today that had
+     * nothing left are dropped.
+     */
+    Batch drain() {
+        Batch batch = new Batch();
+        for (Day day : days.values()) {
+            int before = batch.counters.size();
+            day.counters.forEach((customerId, byClient) -> byClient.forEach((clientId, c) -> {
+                long count = c.requests.sumThenReset();
+                if (count == 0) {
+                    return;
+                }
+                batch.counters.add(c);
+                batch.dates.add(day.date);
+                batch.customerIds.add(customerId);
+                batch.clientIds.add(clientId);
+                batch.requests.add(count);
+                batch.errors.add(c.errors.sumThenReset());
+                batch.bytes.add(c.bytes.sumThenReset());
+                batch.latencies.add(c.latencyMicros.sumThenReset());
+            }));
+            if (batch.counters.size() == before && day != today) {
+                days.remove(day.date, day);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Counters of one calendar day; a request is booked on the day it is recorded.
+     */
+    private static final class Day {
+        final LocalDate date;
+        final long endMillis;
+        final Map<Long, Map<String, Counters>> counters = new ConcurrentHashMap<>();
+
+        Day(LocalDate date, ZoneId zone) {
+            this.date = date;
+            this.endMillis = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        }
+    }
+
+    static final class Batch {
+        final List<Counters> counters = new ArrayList<>();
+        final List<LocalDate> dates = new ArrayList<>();
+        final List<Long> customerIds = new ArrayList<>();
+        final List<String> clientIds = new ArrayList<>();
+        final List<Long> requests = new ArrayList<>();
+        final List<Long> errors = new ArrayList<>();
+        final List<Long> bytes = new ArrayList<>();
+        final List<Long> latencies = new ArrayList<>();
+
+        // Adds the drained totals back so the next flush retries them on their own day
+        void restore() {
+            for (int i = 0; i < counters.size(); i++) {
+                Counters c = counters.get(i);
+                c.requests.add(requests.get(i));
+                c.errors.add(errors.get(i));
+                c.bytes.add(bytes.get(i));
+                c.latencyMicros.add(latencies.get(i));
+            }
+        }
+    }
+
+    private static final class Counters {
+        final LongAdder requests = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+        final LongAdder latencyMicros = new LongAdder();
+    }
+}
@@ -0,0 +1,67 @@
+package no.snabel.util;
+
+import no.snabel.dto.ImportError;
+import no.snabel.dto.ImportResult;
+import no.snabel.service.BulkImporter;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Imports a CSV file straight into the database, for files too large to upload (see
+ * docs/API.md, Bulk Import, for the columns of each kind)
+ * Run with: ./mvnw compile exec:java -Dexec.mainClass="no.snabel.util.BulkImportCli" -Dexec.args="--customer-id 1 --kind journal-lines journal.csv"
+ */
+public class BulkImportCli {
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        String file = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].startsWith("--") && i + 1 < args.length) {
+                options.put(args[i].substring(2), args[++i]);
+            } else {
+                file = args[i];
+            }
+        }
+        BulkImporter.Kind kind = BulkImporter.Kind.of(options.getOrDefault("kind", ""));
+        if (file == null || kind == null || !options.containsKey("customer-id")) {
+            System.err.println("Usage: BulkImportCli --customer-id <id> --kind <accounts|invoices|invoice-lines|journal-lines>");
+            System.err.println("       [--jdbc-url <url>] [--user <user>] [--password <password>] [--user-id <id>]");
+            System.err.println("       [--work-mem <256MB>] [--max-errors <100>] <file.csv>");
+            System.exit(1);
+        }
+
+        String url = options.getOrDefault("jdbc-url", "jdbc:postgresql://localhost:5432/snabel_accounting");
+        long customerId = Long.parseLong(options.get("customer-id"));
+        Long userId = options.containsKey("user-id") ? Long.valueOf(options.get("user-id")) : null;
+        BulkImporter importer = new BulkImporter(options.getOrDefault("work-mem", "256MB"),
+                Integer.parseInt(options.getOrDefault("max-errors", "100")));
+
+        ImportResult result;
+        try (Connection connection = DriverManager.getConnection(url,
+                options.getOrDefault("user", "snabel"), options.getOrDefault("password", "snabel"));
+             InputStream csv = Files.newInputStream(Path.of(file))) {
+            result = importer.run(connection, customerId, userId, kind, csv);
+        } catch (IllegalArgumentException | SQLException e) {
+            System.err.println("Import failed: " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        System.out.printf("%s: %d rows, %d inserted, %d updated, %d skipped in %d ms%n", result.kind, result.rows,
+                result.inserted, result.updated, result.skipped, result.durationMillis);
+        if (result.errorCount > 0) {
+            System.out.printf("Nothing imported, %d errors:%n", result.errorCount);
+            for (ImportError error : result.errors) {
+                System.out.printf("  line %d: %s%n", error.line, error.message);
+            }
+            System.exit(3);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package no.snabel.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+
+/**
+ * Computes the hash that seals a posted journal entry into its customer's chain.
+ *
+ * The digest covers the previous entry's hash followed by a canonical encoding of the entry
+ * and its lines (in line order). Every field is written as {@code <byte length>:<value>;} and
+ * null as {@code ~;}, so no two different entries encode to the same bytes. Amounts are
+ * normalized to the column scale, so a value hashes the same before and after a database
+ * round trip. Instances are reusable but not thread-safe.
+ */
+public final class JournalHasher {
+
+    /** prev_hash of the first entry in every chain. */
+    public static final String GENESIS = "0".repeat(64);
+
+    private static final byte[] NULL = {'~', ';'};
+
+    private final MessageDigest digest;
+
+    public JournalHasher() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public JournalHasher start(String prevHash, long customerId, long chainSeq) {
+        digest.reset();
+        field(prevHash);
+        field(Long.toString(customerId));
+        field(Long.toString(chainSeq));
+        return this;
+    }
+
+    public JournalHasher entry(String entryNumber, LocalDate entryDate, String description, String reference,
+                               String entryType, LocalDateTime postedAt) {
+        field(entryNumber);
+        field(entryDate != null ? entryDate.toString() : null);
+        field(description);
+        field(reference);
+        field(entryType);
+        field(postedAt != null ? postedAt.toString() : null);
+        return this;
+    }
+
+    public JournalHasher line(Long accountId, String description, BigDecimal debit, BigDecimal credit,
+                              BigDecimal vat, String vatCode, String currency, BigDecimal exchangeRate) {
+        field(accountId != null ? accountId.toString() : null);
+        field(description);
+        field(amount(debit, 2));
+        field(amount(credit, 2));
+        field(amount(vat, 2));
+        field(vatCode);
+        field(currency);
+        field(amount(exchangeRate, 6));
+        return this;
+    }
+
+    /**
+     * Finish the current entry and return its hash as 64 lowercase hex characters.
+     */
+    public String finish() {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private void field(String value) {
+        if (value == null) {
+            digest.update(NULL);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.US_ASCII));
+        digest.update((byte) ':');
+        digest.update(bytes);
+        digest.update((byte) ';');
+    }
+
+    private static String amount(BigDecimal value, int scale) {
+        return value != null ? value.setScale(scale, RoundingMode.HALF_UP).toPlainString() : null;
+    }
+}
@@ -0,0 +1,37 @@
+package no.snabel.util;
+
+import java.util.regex.Pattern;
+
+/**
+ * Reduces a SQL statement to its shape, so the same query with different parameters (or a
+ * different number of IN-list elements) is logged and grouped as one statement.
+ *
+ * Literals and bind markers become {@code ?}, lists of them collapse to {@code ?, ...},
+ * comments are dropped and whitespace is folded. Identifiers are left alone.
+ */
+public final class SqlNormalizer {
+
+    private static final Pattern BLOCK_COMMENT = Pattern.compile("/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern LINE_COMMENT = Pattern.compile("--[^\\n]*");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern BIND_MARKER = Pattern.compile("\\$\\d+|\\?");
+    private static final Pattern NUMBER = Pattern.compile("(?<![\\w$.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+    private static final Pattern LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+    private static final Pattern ROWS = Pattern.compile("\\(\\?, \\.\\.\\.\\)(?:\\s*,\\s*\\(\\?, \\.\\.\\.\\))+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private SqlNormalizer() {
+    }
+
+    public static String normalize(String sql, int maxLength) {
+        String s = BLOCK_COMMENT.matcher(sql).replaceAll(" ");
+        s = LINE_COMMENT.matcher(s).replaceAll(" ");
+        s = STRING_LITERAL.matcher(s).replaceAll("?");
+        s = BIND_MARKER.matcher(s).replaceAll("?");
+        s = NUMBER.matcher(s).replaceAll("?");
+        s = LIST.matcher(s).replaceAll("?, ...");
+        s = ROWS.matcher(s).replaceAll("(?, ...), ...");
+        s = WHITESPACE.matcher(s).replaceAll(" ").trim();
+        return s.length() > maxLength ? s.substring(0, maxLength) + "..." : s;
+    }
+}
@@ -0,0 +1,20 @@
+-- Rotating refresh tokens for app clients
+-- The token itself is opaque and only its SHA-256 hash is stored
+CREATE TABLE refresh_tokens (
+    id BIGSERIAL PRIMARY KEY,
+    user_id BIGINT NOT NULL REFERENCES users(id) ON DELETE CASCADE,
+    device_id VARCHAR(100) NOT NULL,
+    device_type VARCHAR(20) NOT NULL DEFAULT 'app',
+    token_hash CHAR(64) UNIQUE NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL,
+    revoked_at TIMESTAMP,
+    replaced_by BIGINT REFERENCES refresh_tokens(id)
+);
+
+CREATE INDEX idx_refresh_tokens_user_device ON refresh_tokens(user_id, device_id);
+CREATE INDEX idx_refresh_tokens_expires ON refresh_tokens(expires_at);
+
+COMMENT ON TABLE refresh_tokens IS 'Refresh tokens per user device; rotated on every use';
+COMMENT ON COLUMN refresh_tokens.token_hash IS 'Hex SHA-256 of the opaque refresh token';
+COMMENT ON COLUMN refresh_tokens.replaced_by IS 'Token issued when this one was used; reuse of a replaced token revokes the device';
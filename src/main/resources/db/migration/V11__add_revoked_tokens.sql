@@ -0,0 +1,12 @@
+-- Revoked JWTs (by jti claim) until they would have expired anyway
+-- Nodes keep the set in memory and fetch new rows incrementally by id
+CREATE TABLE revoked_tokens (
+    id BIGSERIAL PRIMARY KEY,
+    jti VARCHAR(64) UNIQUE NOT NULL,
+    expires_at TIMESTAMP NOT NULL,
+    revoked_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_revoked_tokens_expires ON revoked_tokens(expires_at);
+
+COMMENT ON TABLE revoked_tokens IS 'Denylist of JWT ids; rows can be deleted once expires_at has passed';
@@ -0,0 +1,16 @@
+-- Per-day API usage per customer and API client, upserted in batches by UsageMeter
+-- client_id is '' for interactive (user token) traffic so it can be part of the primary key
+CREATE TABLE api_usage (
+    usage_date DATE NOT NULL,
+    customer_id BIGINT NOT NULL REFERENCES customers(id) ON DELETE CASCADE,
+    client_id VARCHAR(100) NOT NULL DEFAULT '',
+    request_count BIGINT NOT NULL DEFAULT 0,
+    error_count BIGINT NOT NULL DEFAULT 0,
+    bytes_out BIGINT NOT NULL DEFAULT 0,
+    latency_micros BIGINT NOT NULL DEFAULT 0,  -- sum over all requests; divide by request_count for the mean
+    PRIMARY KEY (usage_date, customer_id, client_id)
+);
+
+CREATE INDEX idx_api_usage_customer ON api_usage(customer_id, usage_date);
+
+COMMENT ON TABLE api_usage IS 'Request, byte and latency totals per day, customer and API client';
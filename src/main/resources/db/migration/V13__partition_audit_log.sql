@@ -0,0 +1,79 @@
+-- Range-partition audit_log by month
+-- Old months are removed by dropping their partition instead of a bulk DELETE.
+-- The primary key has to include the partition key, hence (created_at, id).
+
+ALTER TABLE audit_log RENAME TO audit_log_unpartitioned;
+ALTER INDEX idx_audit_log_customer RENAME TO idx_audit_log_unpartitioned_customer;
+ALTER INDEX idx_audit_log_entity RENAME TO idx_audit_log_unpartitioned_entity;
+ALTER SEQUENCE audit_log_id_seq OWNED BY NONE;
+
+CREATE TABLE audit_log (
+    id BIGINT NOT NULL DEFAULT nextval('audit_log_id_seq'),
+    customer_id BIGINT REFERENCES customers(id),
+    user_id BIGINT REFERENCES users(id),
+    entity_type VARCHAR(100) NOT NULL,
+    entity_id BIGINT NOT NULL,
+    action VARCHAR(50) NOT NULL, -- CREATE, UPDATE, DELETE
+    old_values JSONB,
+    new_values JSONB,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (created_at, id)
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE audit_log_id_seq OWNED BY audit_log.id;
+
+-- Both match the keyset order of GET /api/audit (newest first)
+CREATE INDEX idx_audit_log_customer ON audit_log(customer_id, created_at DESC, id DESC);
+CREATE INDEX idx_audit_log_entity ON audit_log(customer_id, entity_type, entity_id, created_at DESC, id DESC);
+
+-- Creates the partitions for the current month and the next months_ahead months.
+-- The advisory lock keeps nodes that start at the same time from racing on the catalog.
+CREATE OR REPLACE FUNCTION ensure_audit_log_partitions(months_ahead INT, from_month DATE DEFAULT NULL)
+RETURNS void AS $$
+DECLARE
+    month_start DATE := date_trunc('month', COALESCE(from_month, CURRENT_DATE))::date;
+    last_month DATE := (date_trunc('month', CURRENT_DATE) + make_interval(months => months_ahead))::date;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('audit_log_partitions'));
+    WHILE month_start <= last_month LOOP
+        EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF audit_log FOR VALUES FROM (%L) TO (%L)',
+                       'audit_log_' || to_char(month_start, 'YYYY_MM'),
+                       month_start,
+                       (month_start + INTERVAL '1 month')::date);
+        month_start := (month_start + INTERVAL '1 month')::date;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Drops whole partitions that ended before the retention window; returns how many were dropped
+CREATE OR REPLACE FUNCTION drop_audit_log_partitions(retention_months INT)
+RETURNS INT AS $$
+DECLARE
+    cutoff DATE := (date_trunc('month', CURRENT_DATE) - make_interval(months => retention_months))::date;
+    partition_name TEXT;
+    dropped INT := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('audit_log_partitions'));
+    FOR partition_name IN
+        SELECT c.relname FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        JOIN pg_class p ON p.oid = i.inhparent
+        WHERE p.relname = 'audit_log' AND c.relname ~ '^audit_log_\d{4}_\d{2}$'
+    LOOP
+        IF to_date(substring(partition_name FROM 11), 'YYYY_MM') < cutoff THEN
+            EXECUTE format('DROP TABLE %I', partition_name);
+            dropped := dropped + 1;
+        END IF;
+    END LOOP;
+    RETURN dropped;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Move existing rows over
+SELECT ensure_audit_log_partitions(3, (SELECT min(created_at)::date FROM audit_log_unpartitioned));
+INSERT INTO audit_log (id, customer_id, user_id, entity_type, entity_id, action, old_values, new_values, created_at)
+SELECT id, customer_id, user_id, entity_type, entity_id, action, old_values, new_values, created_at
+FROM audit_log_unpartitioned;
+DROP TABLE audit_log_unpartitioned;
+
+COMMENT ON TABLE audit_log IS 'Entity change history, one partition per month (audit_log_YYYY_MM)';
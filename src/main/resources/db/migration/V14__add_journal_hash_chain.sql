@@ -0,0 +1,54 @@
+-- Tamper-evident journal: every posted entry is sealed into a per-customer SHA-256 hash chain
+-- entry_hash = SHA-256(prev_hash || canonical entry and lines), see JournalHasher
+ALTER TABLE journal_entries ADD COLUMN chain_seq BIGINT;
+ALTER TABLE journal_entries ADD COLUMN prev_hash CHAR(64);
+ALTER TABLE journal_entries ADD COLUMN entry_hash CHAR(64);
+ALTER TABLE journal_entries ADD CONSTRAINT uq_journal_entries_chain UNIQUE (customer_id, chain_seq);
+
+-- Tip of each customer's chain; posting locks this row, which serializes posting per customer
+CREATE TABLE journal_chain_heads (
+    customer_id BIGINT PRIMARY KEY REFERENCES customers(id),
+    last_seq BIGINT NOT NULL DEFAULT 0,
+    last_hash CHAR(64) NOT NULL
+);
+
+-- Chain hash at every N-th entry, so a chain can be verified in independent segments
+CREATE TABLE journal_chain_checkpoints (
+    customer_id BIGINT NOT NULL REFERENCES customers(id),
+    chain_seq BIGINT NOT NULL,
+    entry_hash CHAR(64) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (customer_id, chain_seq)
+);
+
+-- Sealed entries and their lines are read-only; only the reversal columns may still change
+CREATE OR REPLACE FUNCTION reject_sealed_journal_change() RETURNS trigger AS $$
+BEGIN
+    IF TG_TABLE_NAME = 'journal_entries' THEN
+        IF OLD.entry_hash IS NOT NULL AND (TG_OP = 'DELETE' OR
+            (NEW.customer_id, NEW.entry_number, NEW.entry_date, NEW.description, NEW.reference, NEW.entry_type,
+             NEW.posted, NEW.posted_at, NEW.chain_seq, NEW.prev_hash, NEW.entry_hash)
+            IS DISTINCT FROM
+            (OLD.customer_id, OLD.entry_number, OLD.entry_date, OLD.description, OLD.reference, OLD.entry_type,
+             OLD.posted, OLD.posted_at, OLD.chain_seq, OLD.prev_hash, OLD.entry_hash)) THEN
+            RAISE EXCEPTION 'Journal entry % is posted and sealed', OLD.id;
+        END IF;
+    ELSIF EXISTS (SELECT 1 FROM journal_entries
+                  WHERE id = CASE WHEN TG_OP = 'INSERT' THEN NEW.journal_entry_id ELSE OLD.journal_entry_id END
+                    AND entry_hash IS NOT NULL) THEN
+        RAISE EXCEPTION 'Lines of a posted journal entry cannot be changed';
+    END IF;
+    RETURN CASE WHEN TG_OP = 'DELETE' THEN OLD ELSE NEW END;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_journal_entries_sealed
+    BEFORE UPDATE OR DELETE ON journal_entries
+    FOR EACH ROW EXECUTE FUNCTION reject_sealed_journal_change();
+
+CREATE TRIGGER trg_journal_entry_lines_sealed
+    BEFORE INSERT OR UPDATE OR DELETE ON journal_entry_lines
+    FOR EACH ROW EXECUTE FUNCTION reject_sealed_journal_change();
+
+COMMENT ON TABLE journal_chain_heads IS 'Last sequence number and hash of each customer''s journal hash chain';
+COMMENT ON TABLE journal_chain_checkpoints IS 'Chain hash every snabel.journal.checkpoint-interval entries, for segmented verification';
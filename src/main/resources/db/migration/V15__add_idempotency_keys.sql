@@ -0,0 +1,19 @@
+-- Idempotency-Key of each write and the response it produced, replayed for retries of the same key
+-- status_code is NULL while the first request is still running; locked_at lets another node take
+-- over a key whose request died without completing
+CREATE TABLE idempotency_keys (
+    customer_id BIGINT NOT NULL REFERENCES customers(id) ON DELETE CASCADE,
+    idempotency_key VARCHAR(255) NOT NULL,
+    request_hash CHAR(64) NOT NULL,       -- SHA-256 of method, path and request body
+    status_code INTEGER,
+    content_type VARCHAR(100),
+    location TEXT,
+    body BYTEA,
+    locked_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    expires_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (customer_id, idempotency_key)
+);
+
+CREATE INDEX idx_idempotency_keys_expires ON idempotency_keys(expires_at);
+
+COMMENT ON TABLE idempotency_keys IS 'Stored responses for Idempotency-Key retries; rows can be deleted once expires_at has passed';
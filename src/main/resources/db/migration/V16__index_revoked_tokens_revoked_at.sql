@@ -0,0 +1,3 @@
+-- Nodes sync the denylist by revoked_at rather than by id: ids are assigned before commit,
+-- so a lower id can become visible after a higher one was already read
+CREATE INDEX idx_revoked_tokens_revoked_at ON revoked_tokens(revoked_at);
@@ -0,0 +1,48 @@
+-- Catch-all partition so audit writes never fail when no monthly partition covers created_at
+-- (maintenance job not running, clock ahead). ensure_audit_log_partitions moves such rows into
+-- their monthly partition when it creates it, and returns how many it moved.
+
+CREATE TABLE audit_log_default PARTITION OF audit_log DEFAULT;
+
+DROP FUNCTION ensure_audit_log_partitions(INT, DATE);
+
+-- A month whose rows are in the default partition cannot be created with PARTITION OF, so each
+-- new month is built as a plain table, filled from the default partition and then attached.
+CREATE FUNCTION ensure_audit_log_partitions(months_ahead INT, from_month DATE DEFAULT NULL)
+RETURNS INT AS $$
+DECLARE
+    month_start DATE := date_trunc('month', COALESCE(from_month, CURRENT_DATE))::date;
+    last_month DATE := (date_trunc('month', CURRENT_DATE) + make_interval(months => months_ahead))::date;
+    month_end DATE;
+    partition_name TEXT;
+    moved INT;
+    total_moved INT := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('audit_log_partitions'));
+    -- Also cover the months of rows in the default partition (LEAST/GREATEST ignore NULL when it is empty)
+    SELECT LEAST(month_start, date_trunc('month', min(created_at))::date),
+           GREATEST(last_month, date_trunc('month', max(created_at))::date)
+    INTO month_start, last_month
+    FROM audit_log_default;
+
+    WHILE month_start <= last_month LOOP
+        month_end := (month_start + INTERVAL '1 month')::date;
+        partition_name := 'audit_log_' || to_char(month_start, 'YYYY_MM');
+        IF to_regclass(partition_name) IS NULL THEN
+            EXECUTE format('CREATE TABLE %I (LIKE audit_log INCLUDING DEFAULTS)', partition_name);
+            EXECUTE format('WITH moved AS (DELETE FROM audit_log_default WHERE created_at >= %L AND created_at < %L RETURNING *) '
+                           'INSERT INTO %I SELECT * FROM moved',
+                           month_start, month_end, partition_name);
+            GET DIAGNOSTICS moved = ROW_COUNT;
+            total_moved := total_moved + moved;
+            -- Indexes and foreign keys of audit_log are added to the partition on attach
+            EXECUTE format('ALTER TABLE audit_log ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                           partition_name, month_start, month_end);
+        END IF;
+        month_start := month_end;
+    END LOOP;
+    RETURN total_moved;
+END;
+$$ LANGUAGE plpgsql;
+
+COMMENT ON TABLE audit_log IS 'Entity change history, one partition per month (audit_log_YYYY_MM) plus audit_log_default for rows outside them';
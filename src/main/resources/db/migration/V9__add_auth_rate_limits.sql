@@ -0,0 +1,12 @@
+-- Shared counters for login/token rate limiting across nodes
+-- Rows are short-lived (two windows), so the table is UNLOGGED to keep WAL traffic down
+CREATE UNLOGGED TABLE auth_rate_limits (
+    limit_key VARCHAR(255) NOT NULL,   -- u:<username>, c:<clientId> or ip:<address>
+    window_start BIGINT NOT NULL,      -- epoch millis divided by the window length
+    hits BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (limit_key, window_start)
+);
+
+CREATE INDEX idx_auth_rate_limits_window ON auth_rate_limits(window_start);
+
+COMMENT ON TABLE auth_rate_limits IS 'Cluster-wide sliding window hit counts for /api/auth/login and /api/auth/token';
@@ -5,11 +5,16 @@ import io.quarkus.test.security.TestSecurity;
 import io.quarkus.test.security.jwt.Claim;
 import io.quarkus.test.security.jwt.JwtSecurity;
 import io.restassured.http.ContentType;
+import io.restassured.response.Response;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 @QuarkusTest
 public class AccountResourceTest {
@@ -47,7 +52,69 @@ public class AccountResourceTest {
             .statusCode(200)
             .body("id", equalTo(1))
             .body("accountNumber", equalTo("1900"))
-            .body("accountName", equalTo("Bankkonto Hovedkonto"));
+            .body("accountName", equalTo("Bankkonto Hovedkonto"))
+            .header(QueryCount.HEADER, QueryCount.atMost(1));
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ADMIN")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ADMIN")
+    })
+    public void testListAccountsQueryCountDoesNotGrowWithAccounts() {
+        // Creating an account invalidates the tenant's account cache, so each list below is a cold load
+        List<Integer> created = new ArrayList<>();
+        created.add(createAccount());
+        Response few = listAccounts();
+
+        for (int i = 0; i < 5; i++) {
+            created.add(createAccount());
+        }
+        Response many = listAccounts();
+
+        assertEquals(few.<Integer>path("size()") + 5, many.<Integer>path("size()"));
+        assertEquals(QueryCount.of(few), QueryCount.of(many), "listAccounts query count grew with the number of accounts");
+
+        for (Integer id : created) {
+            given()
+            .when()
+                .delete("/api/accounts/" + id)
+            .then()
+                .statusCode(204);
+        }
+    }
+
+    private Integer createAccount() {
+        String requestBody = String.format("""
+            {
+                "accountNumber": "Q%08d",
+                "accountName": "Query Count Account",
+                "accountType": "EXPENSE"
+            }
+            """, System.nanoTime() % 100_000_000);
+
+        return given()
+            .contentType(ContentType.JSON)
+            .body(requestBody)
+        .when()
+            .post("/api/accounts")
+        .then()
+            .statusCode(201)
+            .extract()
+            .path("id");
+    }
+
+    private Response listAccounts() {
+        return given()
+        .when()
+            .get("/api/accounts")
+        .then()
+            .statusCode(200)
+            .header(QueryCount.HEADER, QueryCount.atMost(1))
+            .extract()
+            .response();
     }
 
     @Test
@@ -95,6 +162,58 @@ public class AccountResourceTest {
             .body("accountType", equalTo("ASSET"));
     }
 
+    @Test
+    @TestSecurity(user = "testuser", roles = "ADMIN")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ADMIN")
+    })
+    public void testCreateAccountRetryWithSameBodyIsReplayed() {
+        String key = "test-" + System.nanoTime();
+        String accountNumber = String.valueOf(7000000 + System.nanoTime() % 1000000);
+        String requestBody = String.format("""
+            {
+                "accountNumber": "%s",
+                "accountName": "Retried Account",
+                "accountType": "ASSET"
+            }
+            """, accountNumber);
+
+        Integer firstId = given()
+            .contentType(ContentType.JSON)
+            .header("Idempotency-Key", key)
+            .body(requestBody)
+        .when()
+            .post("/api/accounts")
+        .then()
+            .statusCode(201)
+            .header("Idempotent-Replayed", nullValue())
+            .extract()
+            .path("id");
+
+        // The entity gets fresh timestamps on every deserialization; the retry must still match
+        given()
+            .contentType(ContentType.JSON)
+            .header("Idempotency-Key", key)
+            .body(requestBody)
+        .when()
+            .post("/api/accounts")
+        .then()
+            .statusCode(201)
+            .header("Idempotent-Replayed", equalTo("true"))
+            .body("id", equalTo(firstId));
+
+        List<String> numbers = given()
+        .when()
+            .get("/api/accounts")
+        .then()
+            .statusCode(200)
+            .extract()
+            .path("accountNumber");
+        assertEquals(1, numbers.stream().filter(accountNumber::equals).count());
+    }
+
     @Test
     @TestSecurity(user = "testuser", roles = "ADMIN")
     @JwtSecurity(claims = {
@@ -84,4 +84,59 @@ public class AuthResourceTest {
             .body("token", notNullValue())
             .body("expiresIn", equalTo(7200)); // App token duration
     }
+
+    @Test
+    public void testRefreshTokenIsRotatedAndReuseRevokesDevice() {
+        LoginRequest request = new LoginRequest();
+        request.username = "testuser";
+        request.password = "password";
+        request.deviceType = "app";
+
+        String deviceId = given()
+            .contentType(ContentType.JSON)
+            .body(request)
+        .when()
+            .post("/api/auth/login")
+        .then()
+            .statusCode(200)
+            .body("deviceId", notNullValue())
+            .extract().path("deviceId");
+        String first = given()
+            .contentType(ContentType.JSON)
+            .body(request)
+        .when()
+            .post("/api/auth/login")
+        .then()
+            .statusCode(200)
+            .extract().path("refreshToken");
+
+        // Each login without a deviceId is a device of its own
+        String second = given()
+            .contentType(ContentType.JSON)
+            .body("{\"refreshToken\": \"" + first + "\"}")
+        .when()
+            .post("/api/auth/refresh")
+        .then()
+            .statusCode(200)
+            .body("token", notNullValue())
+            .body("deviceId", not(equalTo(deviceId)))
+            .extract().path("refreshToken");
+
+        given()
+            .contentType(ContentType.JSON)
+            .body("{\"refreshToken\": \"" + first + "\"}")
+        .when()
+            .post("/api/auth/refresh")
+        .then()
+            .statusCode(401);
+
+        // The reuse revoked the token that replaced it as well
+        given()
+            .contentType(ContentType.JSON)
+            .body("{\"refreshToken\": \"" + second + "\"}")
+        .when()
+            .post("/api/auth/refresh")
+        .then()
+            .statusCode(401);
+    }
 }
@@ -0,0 +1,94 @@
+package no.snabel.resource;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.quarkus.test.security.TestSecurity;
+import io.quarkus.test.security.jwt.Claim;
+import io.quarkus.test.security.jwt.JwtSecurity;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+@QuarkusTest
+public class ImportResourceTest {
+
+    private static List<String> accountNumbers() {
+        return given()
+        .when()
+            .get("/api/accounts")
+        .then()
+            .statusCode(200)
+            .extract()
+            .path("accountNumber");
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ADMIN")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ADMIN")
+    })
+    public void testImportRejectsFileWithBadRowsAndImportsCleanFile() {
+        long base = 8000000 + System.nanoTime() % 100000 * 10;
+        String good = (base + 1) + ",Imported Bank,ASSET\n";
+        String csv = "account_number,account_name,account_type\n"
+                + good
+                + (base + 2) + ",,ASSET\n"
+                + (base + 3) + ",Imported Gadget,GADGET\n";
+
+        // One transaction: the bad rows are reported by line and nothing is inserted
+        given()
+            .contentType("text/csv")
+            .body(csv)
+        .when()
+            .post("/api/import/accounts")
+        .then()
+            .statusCode(400)
+            .body("rows", equalTo(3))
+            .body("inserted", equalTo(0))
+            .body("errorCount", equalTo(2))
+            .body("errors[0].line", equalTo(3))
+            .body("errors[0].message", equalTo("account_name is required"))
+            .body("errors[1].line", equalTo(4))
+            .body("errors[1].message", equalTo("Unknown account_type GADGET"));
+
+        assertFalse(accountNumbers().contains(String.valueOf(base + 1)));
+
+        given()
+            .contentType("text/csv")
+            .body("account_number,account_name,account_type\n" + good)
+        .when()
+            .post("/api/import/accounts")
+        .then()
+            .statusCode(200)
+            .body("rows", equalTo(1))
+            .body("inserted", equalTo(1))
+            .body("errorCount", equalTo(0));
+
+        List<String> numbers = accountNumbers();
+        assertTrue(numbers.contains(String.valueOf(base + 1)));
+        assertFalse(numbers.contains(String.valueOf(base + 2)));
+        assertFalse(numbers.contains(String.valueOf(base + 3)));
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ADMIN")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ADMIN")
+    })
+    public void testUnknownKindIsNotFound() {
+        given()
+            .contentType("text/csv")
+            .body("a,b\n1,2\n")
+        .when()
+            .post("/api/import/customers")
+        .then()
+            .statusCode(404);
+    }
+}
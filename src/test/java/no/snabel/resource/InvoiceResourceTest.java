@@ -5,12 +5,14 @@ import io.quarkus.test.security.TestSecurity;
 import io.quarkus.test.security.jwt.Claim;
 import io.quarkus.test.security.jwt.JwtSecurity;
 import io.restassured.http.ContentType;
+import io.restassured.response.Response;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDate;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 @QuarkusTest
 public class InvoiceResourceTest {
@@ -27,7 +29,57 @@ public class InvoiceResourceTest {
         .when()
             .get("/api/invoices")
         .then()
-            .statusCode(200);
+            .statusCode(200)
+            .header(QueryCount.HEADER, QueryCount.atMost(2));
+    }
+
+    @Test
+    @TestSecurity(user = "testuser", roles = "ACCOUNTANT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ACCOUNTANT")
+    })
+    public void testListInvoicesQueryCountDoesNotGrowWithPageSize() {
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < 5; i++) {
+            String requestBody = String.format("""
+                {
+                    "invoiceNumber": "NQ-%d-%d",
+                    "invoiceDate": "%s",
+                    "dueDate": "%s",
+                    "clientName": "Query Count Client",
+                    "totalAmount": 100.00
+                }
+                """, System.nanoTime(), i, today, today.plusDays(14));
+
+            given()
+                .contentType(ContentType.JSON)
+                .body(requestBody)
+            .when()
+                .post("/api/invoices")
+            .then()
+                .statusCode(201);
+        }
+
+        int onePage = QueryCount.of(listInvoices(1));
+        int fivePage = QueryCount.of(listInvoices(5));
+
+        // Lazy associations loaded per serialized invoice would add queries per row
+        assertEquals(onePage, fivePage, "listInvoices query count grew with the page size");
+    }
+
+    private Response listInvoices(int limit) {
+        return given()
+            .queryParam("limit", limit)
+        .when()
+            .get("/api/invoices")
+        .then()
+            .statusCode(200)
+            .body("size()", equalTo(limit))
+            .header(QueryCount.HEADER, QueryCount.atMost(2))
+            .extract()
+            .response();
     }
 
     @Test
@@ -73,6 +125,61 @@ public class InvoiceResourceTest {
             .body("totalAmount", equalTo(12500.00f));
     }
 
+    @Test
+    @TestSecurity(user = "testuser", roles = "ACCOUNTANT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "userId", value = "1"),
+        @Claim(key = "role", value = "ACCOUNTANT")
+    })
+    public void testCreateInvoiceWithIdempotencyKeyIsNotDuplicated() {
+        LocalDate today = LocalDate.now();
+        String key = "test-" + System.nanoTime();
+        String requestBody = String.format("""
+            {
+                "invoiceNumber": "IK-%d",
+                "invoiceDate": "%s",
+                "dueDate": "%s",
+                "clientName": "Retrying Client AS",
+                "totalAmount": 500.00
+            }
+            """, System.nanoTime(), today, today.plusDays(14));
+
+        Integer firstId = given()
+            .contentType(ContentType.JSON)
+            .header("Idempotency-Key", key)
+            .body(requestBody)
+        .when()
+            .post("/api/invoices")
+        .then()
+            .statusCode(201)
+            .header("Idempotent-Replayed", nullValue())
+            .extract()
+            .path("id");
+
+        // A retry gets the stored response instead of a second invoice
+        given()
+            .contentType(ContentType.JSON)
+            .header("Idempotency-Key", key)
+            .body(requestBody)
+        .when()
+            .post("/api/invoices")
+        .then()
+            .statusCode(201)
+            .header("Idempotent-Replayed", equalTo("true"))
+            .body("id", equalTo(firstId));
+
+        // The same key for a different request is rejected
+        given()
+            .contentType(ContentType.JSON)
+            .header("Idempotency-Key", key)
+            .body(requestBody.replace("Retrying Client AS", "Other Client AS"))
+        .when()
+            .post("/api/invoices")
+        .then()
+            .statusCode(422);
+    }
+
     @Test
     @TestSecurity(user = "testuser", roles = "ACCOUNTANT")
     @JwtSecurity(claims = {
@@ -113,6 +220,7 @@ public class InvoiceResourceTest {
             .get("/api/invoices/" + invoiceId)
         .then()
             .statusCode(200)
+            .header(QueryCount.HEADER, QueryCount.atMost(2))
             .body("id", equalTo(invoiceId))
             .body("invoiceNumber", equalTo("INV-002"));
     }
@@ -231,4 +339,67 @@ public class InvoiceResourceTest {
         .then()
             .statusCode(403);
     }
+
+    @Test
+    @TestSecurity(user = "test-client", roles = "CLIENT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "clientId", value = "test-client"),
+        @Claim(key = "tokenType", value = "client"),
+        @Claim(key = "scopes", value = "read:invoices,write:invoices")
+    })
+    public void testClientWithWriteScopeCanCreateInvoice() {
+        String requestBody = String.format("""
+            {
+                "invoiceNumber": "CL-%d",
+                "invoiceDate": "2025-01-01",
+                "dueDate": "2025-01-15",
+                "clientName": "Integration Client AS",
+                "totalAmount": 1000.00
+            }
+            """, System.nanoTime());
+
+        given()
+            .contentType(ContentType.JSON)
+            .body(requestBody)
+        .when()
+            .post("/api/invoices")
+        .then()
+            .statusCode(201)
+            .body("status", equalTo("DRAFT"));
+    }
+
+    @Test
+    @TestSecurity(user = "test-client", roles = "CLIENT")
+    @JwtSecurity(claims = {
+        @Claim(key = "customerId", value = "1"),
+        @Claim(key = "clientId", value = "test-client"),
+        @Claim(key = "tokenType", value = "client"),
+        @Claim(key = "scopes", value = "read:invoices")
+    })
+    public void testClientWithoutWriteScopeCannotCreateInvoice() {
+        String requestBody = """
+            {
+                "invoiceNumber": "CL-FORBIDDEN",
+                "invoiceDate": "2025-01-01",
+                "dueDate": "2025-01-15",
+                "clientName": "Integration Client AS",
+                "totalAmount": 1000.00
+            }
+            """;
+
+        given()
+            .contentType(ContentType.JSON)
+            .body(requestBody)
+        .when()
+            .post("/api/invoices")
+        .then()
+            .statusCode(403);
+
+        given()
+        .when()
+            .get("/api/invoices")
+        .then()
+            .statusCode(200);
+    }
 }
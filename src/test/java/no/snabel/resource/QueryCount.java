@@ -0,0 +1,48 @@
+package no.snabel.resource;
+
+import io.restassured.response.Response;
+import org.hamcrest.FeatureMatcher;
+import org.hamcrest.Matcher;
+
+import java.util.regex.Pattern;
+
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Database statements issued by one request, read from the Server-Timing header that
+ * {@code DbRoundTripFilter} adds to every response.
+ *
+ * Pin an endpoint's query budget with {@code .header(QueryCount.HEADER, QueryCount.atMost(2))},
+ * and catch N+1 queries by comparing {@link #of(Response)} for a small and a large data set.
+ */
+public final class QueryCount {
+
+    public static final String HEADER = "Server-Timing";
+
+    private static final Pattern ROUND_TRIPS = Pattern.compile("db;desc=\"(\\d+) round trips\"");
+
+    private QueryCount() {
+    }
+
+    public static int of(Response response) {
+        return parse(response.getHeader(HEADER));
+    }
+
+    public static Matcher<String> atMost(int max) {
+        return new FeatureMatcher<>(lessThanOrEqualTo(max), "database round trips", "round trips") {
+            @Override
+            protected Integer featureValueOf(String header) {
+                return parse(header);
+            }
+        };
+    }
+
+    private static int parse(String header) {
+        assertNotNull(header, HEADER + " header missing; is tracing enabled for the test profile?");
+        java.util.regex.Matcher matcher = ROUND_TRIPS.matcher(header);
+        assertTrue(matcher.find(), "No db entry in " + HEADER + ": " + header);
+        return Integer.parseInt(matcher.group(1));
+    }
+}
@@ -0,0 +1,30 @@
+package no.snabel.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScopeRegistryTest {
+
+    @Test
+    public void testGrantedScopesCoverRequirement() {
+        long granted = ScopeRegistry.parse("read:invoices, write:invoices,read:accounts");
+
+        assertTrue(ScopeRegistry.grants(granted, ScopeRegistry.mask("read:invoices")));
+        assertTrue(ScopeRegistry.grants(granted, ScopeRegistry.mask("read:invoices", "write:invoices")));
+        assertFalse(ScopeRegistry.grants(granted, ScopeRegistry.mask("write:accounts")));
+    }
+
+    @Test
+    public void testEmptyOrUnknownScopesGrantNothing() {
+        assertEquals(0L, ScopeRegistry.parse(null));
+        assertEquals(0L, ScopeRegistry.parse(""));
+        assertEquals(0L, ScopeRegistry.parse("admin:everything"));
+        assertFalse(ScopeRegistry.grants(0L, ScopeRegistry.mask("read:invoices")));
+    }
+
+    @Test
+    public void testUnknownRequiredScopeFailsFast() {
+        assertThrows(IllegalArgumentException.class, () -> ScopeRegistry.mask("read:invoice"));
+    }
+}
@@ -0,0 +1,59 @@
+package no.snabel.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScopeRequirementsTest {
+
+    static class Endpoints {
+        @RequiresScope("read:invoices")
+        public void read() {
+        }
+
+        @RequiresScope({"read:invoices", "write:invoices"})
+        public void write() {
+        }
+
+        public void open() {
+        }
+    }
+
+    @RequiresScope("read:accounts")
+    static class ScopedEndpoints {
+        public void list() {
+        }
+    }
+
+    static class MisspelledEndpoints {
+        @RequiresScope("read:invoice")
+        public void read() {
+        }
+    }
+
+    @Test
+    public void testAnnotatedMethodsAreResolved() throws NoSuchMethodException {
+        Map<Method, Long> masks = ScopeRequirements.resolve(Endpoints.class);
+
+        assertEquals(ScopeRegistry.mask("read:invoices"), masks.get(Endpoints.class.getMethod("read")));
+        assertEquals(ScopeRegistry.mask("read:invoices", "write:invoices"), masks.get(Endpoints.class.getMethod("write")));
+        assertFalse(masks.containsKey(Endpoints.class.getMethod("open")));
+    }
+
+    @Test
+    public void testClassLevelAnnotationCoversEveryMethod() throws NoSuchMethodException {
+        Map<Method, Long> masks = ScopeRequirements.resolve(ScopedEndpoints.class);
+
+        assertEquals(ScopeRegistry.mask("read:accounts"), masks.get(ScopedEndpoints.class.getMethod("list")));
+    }
+
+    @Test
+    public void testUnknownScopeFailsResolution() {
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> ScopeRequirements.resolve(MisspelledEndpoints.class));
+        assertTrue(e.getMessage().contains("read:invoice"));
+    }
+}
@@ -0,0 +1,58 @@
+package no.snabel.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SlidingWindowCounterTest {
+
+    private static final long WINDOW = 60_000;
+
+    @Test
+    public void testCountsHitsWithinWindow() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(WINDOW);
+        long start = 10 * WINDOW;
+
+        assertEquals(1, counter.incrementAndEstimate(start));
+        assertEquals(2, counter.incrementAndEstimate(start + 1000));
+        assertEquals(3, counter.incrementAndEstimate(start + 2000));
+    }
+
+    @Test
+    public void testPreviousWindowDecaysLinearly() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(WINDOW);
+        long start = 10 * WINDOW;
+        for (int i = 0; i < 10; i++) {
+            counter.incrementAndEstimate(start);
+        }
+
+        // Half-way into the next window, half of the previous window still overlaps
+        assertEquals(5, counter.estimate(start + WINDOW + WINDOW / 2));
+        // Two windows later nothing is left
+        assertEquals(0, counter.estimate(start + 2 * WINDOW + WINDOW / 2));
+    }
+
+    @Test
+    public void testRemoteHitsAreNotCountedTwice() {
+        SlidingWindowCounter counter = new SlidingWindowCounter(WINDOW);
+        long start = 10 * WINDOW;
+        counter.incrementAndEstimate(start);
+        counter.incrementAndEstimate(start);
+
+        Map<Long, Long> pushed = new HashMap<>();
+        counter.drainUnpushed(pushed::put);
+        assertEquals(Map.of(10L, 2L), pushed);
+
+        // The shared table now holds our 2 hits plus 3 from another node
+        counter.updateGlobal(10, 5);
+        assertEquals(5, counter.estimate(start));
+
+        // Nothing new to push
+        pushed.clear();
+        counter.drainUnpushed(pushed::put);
+        assertTrue(pushed.isEmpty());
+    }
+}
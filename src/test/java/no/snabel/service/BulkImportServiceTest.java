@@ -0,0 +1,130 @@
+package no.snabel.service;
+
+import io.quarkus.runtime.configuration.MemorySize;
+import io.quarkus.vertx.http.runtime.ServerLimitsConfig;
+import io.quarkus.vertx.http.runtime.options.HttpServerCommonHandlers;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpServer;
+import io.vertx.ext.web.Router;
+import org.jboss.resteasy.reactive.server.vertx.VertxInputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the import route's size handlers next to Quarkus' own max-body-size handler, so an upgrade
+ * that changes how Quarkus enforces the global limit fails here instead of silently lifting or
+ * breaking the import limit.
+ */
+public class BulkImportServiceTest {
+
+    private static final long GLOBAL_LIMIT = 1024;
+    private static final long IMPORT_LIMIT = 8192;
+
+    private Vertx vertx;
+    private HttpServer server;
+
+    @BeforeEach
+    public void setUp() {
+        vertx = Vertx.vertx();
+        Router router = Router.router(vertx);
+        HttpServerCommonHandlers.enforceMaxBodySize(limits(GLOBAL_LIMIT), router);
+
+        BulkImportService service = new BulkImportService();
+        service.maxBodySize = new MemorySize(BigInteger.valueOf(IMPORT_LIMIT));
+        service.installHandlers(router);
+
+        // Stands in for the REST layer: answers with the read limit it would apply
+        router.route().handler(rc -> rc.response().end(String.valueOf(rc.<Long>get(VertxInputStream.MAX_REQUEST_SIZE_KEY))));
+        server = vertx.createHttpServer().requestHandler(router).listen(0)
+                .toCompletionStage().toCompletableFuture().join();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        vertx.close().toCompletionStage().toCompletableFuture().join();
+    }
+
+    private static ServerLimitsConfig limits(long maxBodySize) {
+        return (ServerLimitsConfig) Proxy.newProxyInstance(ServerLimitsConfig.class.getClassLoader(),
+                new Class<?>[]{ServerLimitsConfig.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("maxBodySize")) {
+                        return Optional.of(new MemorySize(BigInteger.valueOf(maxBodySize)));
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /** Posts a body of {@code contentLength} bytes; returns the status and the response body. */
+    private Response post(String path, long contentLength) throws IOException {
+        return post(path, "Content-Length: " + contentLength, new byte[(int) Math.min(contentLength, IMPORT_LIMIT)]);
+    }
+
+    private Response post(String path, String lengthHeader, byte[] body) throws IOException {
+        try (Socket socket = new Socket("localhost", server.actualPort())) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            out.write(("POST " + path + " HTTP/1.1\r\nHost: localhost\r\nContent-Type: text/csv\r\n"
+                    + lengthHeader + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(body);
+            out.flush();
+
+            String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            int status = Integer.parseInt(response.substring(response.indexOf(' ') + 1, response.indexOf(' ') + 4));
+            return new Response(status, response.substring(response.indexOf("\r\n\r\n") + 4));
+        }
+    }
+
+    private record Response(int status, String body) {
+    }
+
+    @Test
+    public void testImportAboveGlobalLimitIsReadUpToImportLimit() throws IOException {
+        Response response = post("/api/import/accounts", 4096);
+
+        assertEquals(200, response.status());
+        assertEquals(String.valueOf(IMPORT_LIMIT), response.body());
+    }
+
+    @Test
+    public void testChunkedImportIsReadUpToImportLimit() throws IOException {
+        Response response = post("/api/import/accounts", "Transfer-Encoding: chunked",
+                "3\r\na,b\r\n0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+
+        assertEquals(200, response.status());
+        assertEquals(String.valueOf(IMPORT_LIMIT), response.body());
+    }
+
+    @Test
+    public void testImportAboveImportLimitIsRejected() throws IOException {
+        assertEquals(413, post("/api/import/accounts", IMPORT_LIMIT + 1).status());
+    }
+
+    @Test
+    public void testMalformedContentLengthIsBadRequest() throws IOException {
+        for (String length : new String[]{"12abc", "-5", "99999999999999999999"}) {
+            Response response = post("/api/import/accounts", "Content-Length: " + length, new byte[0]);
+            assertEquals(400, response.status(), length);
+        }
+    }
+
+    @Test
+    public void testOtherRoutesKeepGlobalLimit() throws IOException {
+        assertEquals(413, post("/api/accounts", 4096).status());
+        assertEquals(200, post("/api/accounts", 16).status());
+
+        Response chunked = post("/api/accounts", "Transfer-Encoding: chunked",
+                "3\r\na,b\r\n0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(String.valueOf(GLOBAL_LIMIT), chunked.body());
+    }
+}
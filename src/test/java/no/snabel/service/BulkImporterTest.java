@@ -0,0 +1,68 @@
+package no.snabel.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkImporterTest {
+
+    private static InputStream csv(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testHeaderIsNormalizedAndStreamLeftAtFirstRow() throws IOException {
+        InputStream in = csv("\uFEFF\"Account_Number\", account_name ,ACCOUNT_TYPE\r\n1920,Bank,ASSET\n");
+
+        List<String> header = BulkImporter.readHeader(in, BulkImporter.Kind.ACCOUNTS);
+
+        assertEquals(List.of("account_number", "account_name", "account_type"), header);
+        assertEquals("1920,Bank,ASSET\n", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testUnknownColumnIsRejected() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () ->
+                BulkImporter.readHeader(csv("account_number,account_name,account_type,balance\n"),
+                        BulkImporter.Kind.ACCOUNTS));
+        assertTrue(e.getMessage().contains("balance"));
+    }
+
+    @Test
+    public void testMissingRequiredColumnIsRejected() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () ->
+                BulkImporter.readHeader(csv("entry_number,entry_date,entry_description\n"),
+                        BulkImporter.Kind.JOURNAL_LINES));
+        assertTrue(e.getMessage().contains("account_number"));
+    }
+
+    @Test
+    public void testDuplicateColumnIsRejected() {
+        assertThrows(IllegalArgumentException.class, () ->
+                BulkImporter.readHeader(csv("account_number,account_name,account_type,account_name\n"),
+                        BulkImporter.Kind.ACCOUNTS));
+    }
+
+    @Test
+    public void testEmptyFileIsRejected() {
+        assertThrows(IllegalArgumentException.class, () ->
+                BulkImporter.readHeader(csv(""), BulkImporter.Kind.INVOICES));
+    }
+
+    @Test
+    public void testKindsAreLookedUpByPath() {
+        assertEquals(BulkImporter.Kind.INVOICE_LINES, BulkImporter.Kind.of("invoice-lines"));
+        assertNull(BulkImporter.Kind.of("customers"));
+    }
+
+    @Test
+    public void testWorkMemIsValidated() {
+        assertThrows(IllegalArgumentException.class, () -> new BulkImporter("256MB'; DROP TABLE x; --", 10));
+    }
+}
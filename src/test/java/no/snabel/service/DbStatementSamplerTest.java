@@ -0,0 +1,53 @@
+package no.snabel.service;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DbStatementSamplerTest {
+
+    private static final String TRACE_ID = "0af7651916cd43dd8448eb211c80319c";
+
+    private static DbStatementSampler sampler(String configured) {
+        DbStatementSampler sampler = new DbStatementSampler();
+        sampler.sampler = configured;
+        sampler.ratio = 1.0;
+        sampler.init();
+        return sampler;
+    }
+
+    private static SamplingDecision decide(DbStatementSampler sampler, SpanKind kind, Attributes attributes) {
+        return sampler.shouldSample(Context.root(), TRACE_ID, "span", kind, attributes, List.of()).getDecision();
+    }
+
+    @Test
+    public void testUnsampledStatementsAreStillRecorded() {
+        DbStatementSampler sampler = sampler("always_off");
+
+        assertEquals(SamplingDecision.RECORD_ONLY,
+                decide(sampler, SpanKind.CLIENT, Attributes.builder().put("db.system", "postgresql").build()));
+        assertEquals(SamplingDecision.DROP,
+                decide(sampler, SpanKind.SERVER, Attributes.empty()));
+        assertEquals(SamplingDecision.DROP,
+                decide(sampler, SpanKind.CLIENT, Attributes.builder().put("http.request.method", "GET").build()));
+    }
+
+    @Test
+    public void testSampledSpansAreLeftAlone() {
+        DbStatementSampler sampler = sampler("parentbased_always_on");
+
+        assertEquals(SamplingDecision.RECORD_AND_SAMPLE,
+                decide(sampler, SpanKind.CLIENT, Attributes.builder().put("db.system", "postgresql").build()));
+    }
+
+    @Test
+    public void testUnknownSamplerIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> sampler("sometimes"));
+    }
+}
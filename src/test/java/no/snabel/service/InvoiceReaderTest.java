@@ -0,0 +1,172 @@
+package no.snabel.service;
+
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.sqlclient.impl.ArrayTuple;
+import no.snabel.dto.InvoiceSummary;
+import no.snabel.model.Invoice;
+import no.snabel.model.InvoiceLine;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InvoiceReaderTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, 3, 1);
+    private static final LocalDateTime CREATED = LocalDateTime.of(2025, 3, 1, 9, 30);
+
+    /** A row with the given columns, in order. */
+    private static final class TestRow extends ArrayTuple implements io.vertx.sqlclient.Row {
+        private final List<String> columns;
+
+        TestRow(Map<String, Object> values) {
+            super(new ArrayList<>(values.values()));
+            this.columns = new ArrayList<>(values.keySet());
+        }
+
+        @Override
+        public String getColumnName(int pos) {
+            return columns.get(pos);
+        }
+
+        @Override
+        public int getColumnIndex(String column) {
+            return columns.indexOf(column);
+        }
+    }
+
+    private static Row row(Map<String, Object> values) {
+        return Row.newInstance(new TestRow(values));
+    }
+
+    private static Map<String, Object> invoiceColumns() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("id", 42L);
+        values.put("customer_id", 1L);
+        values.put("invoice_number", "INV-42");
+        values.put("invoice_date", DATE);
+        values.put("due_date", DATE.plusDays(14));
+        values.put("client_name", "Fjord AS");
+        values.put("client_organization_number", "987654321");
+        values.put("client_address", "Bryggen 1");
+        values.put("client_postal_code", "5003");
+        values.put("client_city", "Bergen");
+        values.put("subtotal", new BigDecimal("1000.00"));
+        values.put("vat_amount", new BigDecimal("250.00"));
+        values.put("total_amount", new BigDecimal("1250.00"));
+        values.put("currency", "NOK");
+        values.put("status", "SENT");
+        values.put("payment_terms", "14 dager");
+        values.put("notes", null);
+        values.put("journal_entry_id", null);
+        values.put("created_by", 1L);
+        values.put("created_at", CREATED);
+        values.put("updated_at", CREATED);
+        values.put("sent_at", CREATED.plusHours(1));
+        values.put("paid_at", null);
+        values.put("payment_reference", "1234567890");
+        values.put("bank_account", "12345678903");
+        values.put("buyer_reference", "PO-7");
+        values.put("contract_reference", null);
+        values.put("order_reference", "ORD-7");
+        values.put("client_endpoint_id", "987654321");
+        values.put("client_endpoint_scheme", "0192");
+        return values;
+    }
+
+    @Test
+    public void mapsEveryInvoiceColumnUsedForDocuments() {
+        Invoice invoice = InvoiceReader.toInvoice(row(invoiceColumns()));
+
+        assertEquals(42L, invoice.id);
+        assertEquals("INV-42", invoice.invoiceNumber);
+        assertEquals(DATE, invoice.invoiceDate);
+        assertEquals(DATE.plusDays(14), invoice.dueDate);
+        assertEquals("Fjord AS", invoice.clientName);
+        assertEquals("987654321", invoice.clientOrganizationNumber);
+        assertEquals("Bryggen 1", invoice.clientAddress);
+        assertEquals("5003", invoice.clientPostalCode);
+        assertEquals("Bergen", invoice.clientCity);
+        assertEquals(new BigDecimal("1000.00"), invoice.subtotal);
+        assertEquals(new BigDecimal("250.00"), invoice.vatAmount);
+        assertEquals(new BigDecimal("1250.00"), invoice.totalAmount);
+        assertEquals("NOK", invoice.currency);
+        assertEquals("SENT", invoice.status);
+        assertEquals("14 dager", invoice.paymentTerms);
+        assertEquals("1234567890", invoice.paymentReference);
+        assertEquals("12345678903", invoice.bankAccount);
+        assertEquals("PO-7", invoice.buyerReference);
+        assertNull(invoice.contractReference);
+        assertEquals("ORD-7", invoice.orderReference);
+        assertEquals("987654321", invoice.clientEndpointId);
+        assertEquals("0192", invoice.clientEndpointScheme);
+        assertEquals(CREATED.plusHours(1), invoice.sentAt);
+        assertNull(invoice.paidAt);
+        // Detached: associations are not loaded
+        assertNull(invoice.customer);
+        assertTrue(invoice.lines.isEmpty());
+    }
+
+    @Test
+    public void mapsLineAndLinksItToTheInvoice() {
+        Invoice invoice = InvoiceReader.toInvoice(row(invoiceColumns()));
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("id", 7L);
+        values.put("invoice_id", 42L);
+        values.put("line_number", 2);
+        values.put("description", "Consulting");
+        values.put("quantity", new BigDecimal("4.00"));
+        values.put("unit_price", new BigDecimal("250.00"));
+        values.put("vat_rate", new BigDecimal("25.00"));
+        values.put("vat_amount", new BigDecimal("250.00"));
+        values.put("line_total", new BigDecimal("1000.00"));
+        values.put("account_id", null);
+        values.put("created_at", CREATED);
+        values.put("unit_code", "HUR");
+        values.put("item_name", "Advisory");
+        values.put("item_id", "ADV-1");
+
+        InvoiceLine line = InvoiceReader.toLine(row(values), invoice);
+
+        assertSame(invoice, line.invoice);
+        assertEquals(7L, line.id);
+        assertEquals(2, line.lineNumber);
+        assertEquals("Consulting", line.description);
+        assertEquals(new BigDecimal("4.00"), line.quantity);
+        assertEquals(new BigDecimal("250.00"), line.unitPrice);
+        assertEquals(new BigDecimal("25.00"), line.vatRate);
+        assertEquals(new BigDecimal("250.00"), line.vatAmount);
+        assertEquals(new BigDecimal("1000.00"), line.lineTotal);
+        assertEquals("HUR", line.unitCode);
+        assertEquals("Advisory", line.itemName);
+        assertEquals("ADV-1", line.itemId);
+    }
+
+    @Test
+    public void mapsSummaryColumns() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (String column : List.of("id", "invoice_number", "invoice_date", "due_date", "client_name",
+                "client_organization_number", "subtotal", "vat_amount", "total_amount", "currency", "status",
+                "created_at", "sent_at", "paid_at")) {
+            values.put(column, invoiceColumns().get(column));
+        }
+
+        InvoiceSummary summary = InvoiceReader.toSummary(row(values));
+
+        assertEquals(42L, summary.id);
+        assertEquals("INV-42", summary.invoiceNumber);
+        assertEquals(DATE, summary.invoiceDate);
+        assertEquals("Fjord AS", summary.clientName);
+        assertEquals(new BigDecimal("1250.00"), summary.totalAmount);
+        assertEquals("SENT", summary.status);
+        assertEquals(CREATED, summary.createdAt);
+        assertNull(summary.paidAt);
+    }
+}
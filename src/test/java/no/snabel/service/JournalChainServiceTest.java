@@ -0,0 +1,156 @@
+package no.snabel.service;
+
+import io.vertx.mutiny.sqlclient.Row;
+import io.vertx.sqlclient.impl.ArrayTuple;
+import no.snabel.util.JournalHasher;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournalChainServiceTest {
+
+    private static final long CUSTOMER = 7L;
+    private static final LocalDate DATE = LocalDate.of(2025, 1, 31);
+    private static final LocalDateTime POSTED = LocalDateTime.of(2025, 1, 31, 12, 0, 0, 123_456_000);
+
+    private static final List<String> COLUMNS = List.of("chain_seq", "prev_hash", "entry_hash", "entry_number",
+            "entry_date", "description", "reference", "entry_type", "posted_at", "account_id", "line_description",
+            "debit_amount", "credit_amount", "vat_amount", "vat_code", "currency", "exchange_rate");
+
+    /** A row as the segment query returns it, with the columns check() reads. */
+    private static final class TestRow extends ArrayTuple implements io.vertx.sqlclient.Row {
+        TestRow(List<Object> values) {
+            super(values);
+        }
+
+        @Override
+        public String getColumnName(int pos) {
+            return COLUMNS.get(pos);
+        }
+
+        @Override
+        public int getColumnIndex(String column) {
+            return COLUMNS.indexOf(column);
+        }
+    }
+
+    /**
+     * Rows of a valid chain of {@code count} entries with two lines each, seq 1..count.
+     */
+    private static List<List<Object>> chain(int count) {
+        List<List<Object>> rows = new ArrayList<>();
+        String prev = JournalHasher.GENESIS;
+        for (long seq = 1; seq <= count; seq++) {
+            BigDecimal amount = BigDecimal.valueOf(100 * seq, 2);
+            String hash = new JournalHasher().start(prev, CUSTOMER, seq)
+                    .entry("B-" + seq, DATE, "Sale " + seq, null, "MANUAL", POSTED)
+                    .line(1920L, null, amount, BigDecimal.ZERO, BigDecimal.ZERO, null, "NOK", BigDecimal.ONE)
+                    .line(3000L, null, BigDecimal.ZERO, amount, BigDecimal.ZERO, null, "NOK", BigDecimal.ONE)
+                    .finish();
+            rows.add(row(seq, prev, hash, 1920L, amount, BigDecimal.ZERO));
+            rows.add(row(seq, prev, hash, 3000L, BigDecimal.ZERO, amount));
+            prev = hash;
+        }
+        return rows;
+    }
+
+    private static List<Object> row(long seq, String prev, String hash, long accountId, BigDecimal debit,
+                                    BigDecimal credit) {
+        List<Object> values = new ArrayList<>();
+        values.add(seq);
+        values.add(prev);
+        values.add(hash);
+        values.add("B-" + seq);
+        values.add(DATE);
+        values.add("Sale " + seq);
+        values.add(null);
+        values.add("MANUAL");
+        values.add(POSTED);
+        values.add(accountId);
+        values.add(null);
+        values.add(debit);
+        values.add(credit);
+        values.add(BigDecimal.ZERO);
+        values.add(null);
+        values.add("NOK");
+        values.add(BigDecimal.ONE);
+        return values;
+    }
+
+    private static List<Row> rows(List<List<Object>> values) {
+        return values.stream().map(v -> Row.newInstance(new TestRow(v))).toList();
+    }
+
+    private static String lastHash(List<List<Object>> rows) {
+        return (String) rows.get(rows.size() - 1).get(2);
+    }
+
+    private static JournalChainService.Segment segment(long toSeq, String endHash) {
+        return new JournalChainService.Segment(CUSTOMER, 0, JournalHasher.GENESIS, toSeq, endHash);
+    }
+
+    @Test
+    public void testIntactChainVerifies() {
+        List<List<Object>> chain = chain(3);
+
+        JournalChainService.SegmentResult result = JournalChainService.check(segment(3, lastHash(chain)), rows(chain));
+
+        assertNull(result.firstInvalidSeq());
+        assertEquals(3, result.entries());
+    }
+
+    @Test
+    public void testAlteredLineIsDetected() {
+        List<List<Object>> chain = chain(3);
+        String endHash = lastHash(chain);
+        // Debit line of entry 2
+        chain.get(2).set(11, new BigDecimal("999.00"));
+
+        JournalChainService.SegmentResult result = JournalChainService.check(segment(3, endHash), rows(chain));
+
+        assertEquals(2L, result.firstInvalidSeq());
+        assertEquals("entry content does not match its hash", result.error());
+        assertEquals(1, result.entries());
+    }
+
+    @Test
+    public void testDeletedEntryIsDetected() {
+        List<List<Object>> chain = chain(3);
+        String endHash = lastHash(chain);
+        chain.subList(2, 4).clear();
+
+        JournalChainService.SegmentResult result = JournalChainService.check(segment(3, endHash), rows(chain));
+
+        assertEquals(2L, result.firstInvalidSeq());
+        assertEquals("entry is missing from the chain", result.error());
+    }
+
+    @Test
+    public void testTruncatedChainIsDetected() {
+        List<List<Object>> chain = chain(3);
+        String endHash = lastHash(chain);
+        chain.subList(4, 6).clear();
+
+        JournalChainService.SegmentResult result = JournalChainService.check(segment(3, endHash), rows(chain));
+
+        assertEquals(3L, result.firstInvalidSeq());
+        assertEquals("entry is missing from the chain", result.error());
+    }
+
+    @Test
+    public void testCheckpointMismatchIsDetected() {
+        List<List<Object>> chain = chain(2);
+
+        JournalChainService.SegmentResult result = JournalChainService.check(
+                segment(2, JournalHasher.GENESIS), rows(chain));
+
+        assertEquals(2L, result.firstInvalidSeq());
+        assertEquals("chain does not match its checkpoint", result.error());
+    }
+}
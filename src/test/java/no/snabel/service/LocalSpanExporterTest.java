@@ -0,0 +1,91 @@
+package no.snabel.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LocalSpanExporterTest {
+
+    private final List<SpanData> exported = new ArrayList<>();
+
+    private final SpanExporter collector = new SpanExporter() {
+        @Override
+        public CompletableResultCode export(Collection<SpanData> spans) {
+            exported.addAll(spans);
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode flush() {
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            return CompletableResultCode.ofSuccess();
+        }
+    };
+
+    @Test
+    public void testSpansAreWrittenAsOtlpJson() throws Exception {
+        try (SdkTracerProvider provider = SdkTracerProvider.builder()
+                .addSpanProcessor(SimpleSpanProcessor.create(collector))
+                .build()) {
+            Tracer tracer = provider.get("snabel-test", "1.0");
+            Span parent = tracer.spanBuilder("GET /api/invoices").setSpanKind(SpanKind.SERVER).startSpan();
+            try (Scope scope = parent.makeCurrent()) {
+                tracer.spanBuilder("SELECT invoices").setSpanKind(SpanKind.CLIENT)
+                        .setAttribute("db.rows", 3L)
+                        .setAttribute("db.system", "postgresql")
+                        .startSpan()
+                        .setStatus(StatusCode.ERROR, "timeout")
+                        .end();
+            }
+            parent.end();
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LocalSpanExporter.writeJson(exported, out);
+        JsonNode request = new ObjectMapper().readTree(out.toByteArray());
+
+        JsonNode scopeSpans = request.at("/resourceSpans/0/scopeSpans/0");
+        assertEquals("snabel-test", scopeSpans.at("/scope/name").asText());
+        JsonNode spans = scopeSpans.get("spans");
+        assertEquals(2, spans.size());
+
+        JsonNode child = spans.get(0);
+        JsonNode parent = spans.get(1);
+        assertEquals("SELECT invoices", child.get("name").asText());
+        assertEquals(3, child.get("kind").asInt());
+        assertEquals(2, parent.get("kind").asInt());
+        assertEquals(parent.get("spanId").asText(), child.get("parentSpanId").asText());
+        assertFalse(parent.has("parentSpanId"));
+        assertTrue(child.get("startTimeUnixNano").isTextual());
+        assertEquals(2, child.at("/status/code").asInt());
+        assertEquals("timeout", child.at("/status/message").asText());
+
+        List<String> attributes = new ArrayList<>();
+        for (JsonNode attribute : child.get("attributes")) {
+            attributes.add(attribute.get("key").asText() + "=" + attribute.get("value"));
+        }
+        assertTrue(attributes.contains("db.rows={\"intValue\":\"3\"}"));
+        assertTrue(attributes.contains("db.system={\"stringValue\":\"postgresql\"}"));
+    }
+}
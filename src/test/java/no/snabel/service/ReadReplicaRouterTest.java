@@ -0,0 +1,36 @@
+package no.snabel.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReadReplicaRouterTest {
+
+    @Test
+    public void testLsnRoundTrip() {
+        long lsn = ReadReplicaRouter.parseLsn("16/B374D848");
+        assertEquals(0x16B374D848L, lsn);
+        assertEquals("16/B374D848", ReadReplicaRouter.formatLsn(lsn));
+        assertEquals(0L, ReadReplicaRouter.parseLsn("0/0"));
+    }
+
+    @Test
+    public void testLsnOrderFollowsWalPosition() {
+        // The low word wraps into the high word, so comparing the text would get this wrong
+        assertTrue(ReadReplicaRouter.parseLsn("1/0") > ReadReplicaRouter.parseLsn("0/FFFFFFFF"));
+        assertTrue(ReadReplicaRouter.parseLsn("A/1") > ReadReplicaRouter.parseLsn("9/FFFFFFF0"));
+    }
+
+    @Test
+    public void testPrimaryOnlyTokenIsAheadOfAnyPosition() {
+        long token = ReadReplicaRouter.parseLsn(ReadReplicaRouter.formatLsn(Long.MAX_VALUE));
+        assertTrue(token > ReadReplicaRouter.parseLsn("FFFF/FFFFFFFF"));
+    }
+
+    @Test
+    public void testMalformedTokensAreRejected() {
+        for (String token : new String[]{"", "/", "16", "16/", "/B374D848", "x/1", "1/-1", "123456789/0", "0/123456789"}) {
+            assertThrows(IllegalArgumentException.class, () -> ReadReplicaRouter.parseLsn(token), token);
+        }
+    }
+}
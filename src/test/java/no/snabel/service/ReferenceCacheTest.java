@@ -0,0 +1,81 @@
+package no.snabel.service;
+
+import io.smallrye.mutiny.Uni;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReferenceCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private Uni<String> load(String value) {
+        return Uni.createFrom().item(() -> {
+            loads.incrementAndGet();
+            return value;
+        });
+    }
+
+    @Test
+    public void testHitDoesNotReload() {
+        ReferenceCache.Region<String> region = new ReferenceCache.Region<>(Duration.ofMinutes(5), 10);
+        assertEquals("a", region.getOrLoad(1L, () -> load("a")).await().indefinitely());
+        assertEquals("a", region.getOrLoad(1L, () -> load("b")).await().indefinitely());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testMissingRowIsNotCached() {
+        ReferenceCache.Region<String> region = new ReferenceCache.Region<>(Duration.ofMinutes(5), 10);
+        assertNull(region.getOrLoad(1L, () -> load(null)).await().indefinitely());
+        assertEquals("a", region.getOrLoad(1L, () -> load("a")).await().indefinitely());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testInvalidationDropsOnlyThatKey() {
+        ReferenceCache.Region<String> region = new ReferenceCache.Region<>(Duration.ofMinutes(5), 10);
+        region.getOrLoad(1L, () -> load("a")).await().indefinitely();
+        region.getOrLoad(2L, () -> load("b")).await().indefinitely();
+
+        region.onInvalidation("1");
+
+        assertEquals("a2", region.getOrLoad(1L, () -> load("a2")).await().indefinitely());
+        assertEquals("b", region.getOrLoad(2L, () -> load("b2")).await().indefinitely());
+    }
+
+    @Test
+    public void testReconnectDropsEverything() {
+        ReferenceCache.Region<String> region = new ReferenceCache.Region<>(Duration.ofMinutes(5), 10);
+        region.getOrLoad(1L, () -> load("a")).await().indefinitely();
+
+        region.onInvalidation(ClusterNotifier.ALL);
+
+        assertEquals("a2", region.getOrLoad(1L, () -> load("a2")).await().indefinitely());
+    }
+
+    @Test
+    public void testLoadRacingWithInvalidationIsNotCached() {
+        ReferenceCache.Region<String> region = new ReferenceCache.Region<>(Duration.ofMinutes(5), 10);
+        // The row is written on another node while it is being read here
+        Uni<String> stale = Uni.createFrom().item(() -> {
+            region.onInvalidation("1");
+            return "stale";
+        });
+
+        assertEquals("stale", region.getOrLoad(1L, () -> stale).await().indefinitely());
+        assertEquals("fresh", region.getOrLoad(1L, () -> load("fresh")).await().indefinitely());
+    }
+
+    @Test
+    public void testTenantMismatchIsNotVisible() {
+        ReferenceCache.Owned<String> owned = new ReferenceCache.Owned<>(1L, "dept");
+        assertTrue(owned.isOwnedBy(1L));
+        assertFalse(owned.isOwnedBy(2L));
+        assertFalse(owned.isOwnedBy(null));
+        assertFalse(new ReferenceCache.Owned<>(null, "dept").isOwnedBy(null));
+    }
+}
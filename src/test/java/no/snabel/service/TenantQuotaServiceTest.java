@@ -0,0 +1,117 @@
+package no.snabel.service;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.TraceFlags;
+import io.opentelemetry.api.trace.TraceState;
+import io.opentelemetry.context.Scope;
+import io.smallrye.common.vertx.VertxContext;
+import io.vertx.core.Vertx;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TenantQuotaServiceTest {
+
+    private static final Long TENANT_A = 1L;
+    private static final Long TENANT_B = 2L;
+
+    private Vertx vertx;
+    private TenantQuotaService quotaService;
+
+    @BeforeEach
+    public void setUp() {
+        vertx = Vertx.vertx();
+        quotaService = new TenantQuotaService();
+        quotaService.vertx = vertx;
+        quotaService.poolSize = 1;
+        quotaService.standardMaxConcurrent = 1;
+        quotaService.premiumMaxConcurrent = 2;
+        quotaService.premiumCustomerIds = Optional.of(List.of(TENANT_B));
+        quotaService.maxQueued = 2;
+        quotaService.queueTimeoutMillis = 5000;
+        quotaService.onStart(null);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        quotaService.onStop(null);
+        vertx.close().toCompletionStage().toCompletableFuture().join();
+    }
+
+    @Test
+    public void testWaitingTenantsAreServedRoundRobin() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = new CopyOnWriteArrayList<>();
+
+        var first = quotaService.submit(TENANT_A, () -> {
+            release.await(5, TimeUnit.SECONDS);
+            order.add("a1");
+            return "a1";
+        }).subscribeAsCompletionStage();
+        var second = quotaService.submit(TENANT_A, () -> order.add("a2")).subscribeAsCompletionStage();
+        var third = quotaService.submit(TENANT_A, () -> order.add("a3")).subscribeAsCompletionStage();
+        var other = quotaService.submit(TENANT_B, () -> order.add("b1")).subscribeAsCompletionStage();
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        third.get(5, TimeUnit.SECONDS);
+        other.get(5, TimeUnit.SECONDS);
+
+        // FIFO would run b1 last, after every job tenant A queued before it
+        assertEquals(List.of("a1", "a2", "b1", "a3"), order);
+    }
+
+    @Test
+    public void testFullQueueIsRejected() {
+        CountDownLatch release = new CountDownLatch(1);
+        quotaService.submit(TENANT_A, () -> release.await(5, TimeUnit.SECONDS)).subscribeAsCompletionStage();
+        quotaService.submit(TENANT_A, () -> true).subscribeAsCompletionStage();
+        quotaService.submit(TENANT_A, () -> true).subscribeAsCompletionStage();
+
+        assertThrows(TenantQuotaExceededException.class,
+                () -> quotaService.submit(TENANT_A, () -> true).await().atMost(Duration.ofSeconds(5)));
+        release.countDown();
+    }
+
+    @Test
+    public void testWorkRunsInSubmittersTraceContext() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        // Occupy the only worker so the traced job is dispatched later, from another job's completion
+        var blocker = quotaService.submit(TENANT_B, () -> release.await(5, TimeUnit.SECONDS))
+                .subscribeAsCompletionStage();
+
+        SpanContext parent = SpanContext.create("0af7651916cd43dd8448eb211c80319c", "b7ad6b7169203331",
+                TraceFlags.getSampled(), TraceState.getDefault());
+        CompletableFuture<SpanContext> seen = new CompletableFuture<>();
+        // Like a request: submitted from its own duplicated context with a span current
+        VertxContext.createNewDuplicatedContext(vertx.getOrCreateContext()).runOnContext(v -> {
+            try (Scope ignored = Span.wrap(parent).makeCurrent()) {
+                quotaService.submit(TENANT_A, () -> Span.current().getSpanContext())
+                        .subscribe().with(seen::complete, seen::completeExceptionally);
+            }
+        });
+
+        release.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+        assertEquals(parent, seen.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testTierFromConfiguredCustomers() {
+        assertEquals(TenantQuotaService.Tier.STANDARD, quotaService.tierOf(TENANT_A));
+        assertEquals(TenantQuotaService.Tier.PREMIUM, quotaService.tierOf(TENANT_B));
+        assertEquals(TenantQuotaService.Tier.STANDARD, quotaService.tierOf(null));
+    }
+}
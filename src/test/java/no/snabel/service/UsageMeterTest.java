@@ -0,0 +1,64 @@
+package no.snabel.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UsageMeterTest {
+
+    private static final ZoneId OSLO = ZoneId.of("Europe/Oslo");
+
+    private static long at(String dateTime) {
+        return ZonedDateTime.of(LocalDateTime.parse(dateTime), OSLO).toInstant().toEpochMilli();
+    }
+
+    @Test
+    public void testRequestsAreBookedOnTheDayTheyWereRecorded() {
+        UsageMeter meter = new UsageMeter(OSLO, at("2026-03-01T23:00:00"));
+        meter.record(at("2026-03-01T23:59:59"), 1L, "erp", 100, 10, false);
+        meter.record(at("2026-03-02T00:00:01"), 1L, "erp", 200, 20, true);
+
+        UsageMeter.Batch batch = meter.drain();
+
+        assertEquals(2, batch.dates.size());
+        int first = batch.dates.indexOf(LocalDate.of(2026, 3, 1));
+        int second = batch.dates.indexOf(LocalDate.of(2026, 3, 2));
+        assertEquals(100L, batch.bytes.get(first));
+        assertEquals(0L, batch.errors.get(first));
+        assertEquals(200L, batch.bytes.get(second));
+        assertEquals(1L, batch.errors.get(second));
+    }
+
+    @Test
+    public void testFailedFlushIsRetriedOnTheOriginalDay() {
+        UsageMeter meter = new UsageMeter(OSLO, at("2026-03-01T12:00:00"));
+        meter.record(at("2026-03-01T23:59:00"), 1L, null, 100, 10, false);
+
+        meter.drain().restore();
+        meter.record(at("2026-03-02T00:01:00"), 1L, null, 50, 5, false);
+        UsageMeter.Batch retry = meter.drain();
+
+        assertEquals(2, retry.dates.size());
+        assertEquals(1L, retry.requests.get(retry.dates.indexOf(LocalDate.of(2026, 3, 1))));
+        assertEquals(50L, retry.bytes.get(retry.dates.indexOf(LocalDate.of(2026, 3, 2))));
+    }
+
+    @Test
+    public void testDrainedPastDaysAreDropped() {
+        UsageMeter meter = new UsageMeter(OSLO, at("2026-03-01T12:00:00"));
+        meter.record(at("2026-03-01T13:00:00"), 1L, null, 1, 1, false);
+        meter.record(at("2026-03-02T13:00:00"), 1L, null, 1, 1, false);
+
+        assertEquals(2, meter.drain().dates.size());
+        assertTrue(meter.drain().dates.isEmpty());
+
+        meter.record(at("2026-03-02T14:00:00"), 1L, null, 1, 1, false);
+        assertEquals(List.of(LocalDate.of(2026, 3, 2)), meter.drain().dates);
+    }
+}
@@ -0,0 +1,54 @@
+package no.snabel.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournalHasherTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, 1, 31);
+    private static final LocalDateTime POSTED = LocalDateTime.of(2025, 1, 31, 12, 0, 0, 123_456_000);
+
+    private static String hash(String prevHash, String description, BigDecimal amount) {
+        return new JournalHasher()
+                .start(prevHash, 1L, 1L)
+                .entry("B-1", DATE, description, null, "MANUAL", POSTED)
+                .line(1920L, null, amount, BigDecimal.ZERO, BigDecimal.ZERO, null, "NOK", BigDecimal.ONE)
+                .line(3000L, null, BigDecimal.ZERO, amount, BigDecimal.ZERO, null, "NOK", BigDecimal.ONE)
+                .finish();
+    }
+
+    @Test
+    public void testHashIsStableAcrossAmountScales() {
+        // Amounts come back from the database with the column scale
+        assertEquals(hash(JournalHasher.GENESIS, "Sale", new BigDecimal("100")),
+                hash(JournalHasher.GENESIS, "Sale", new BigDecimal("100.00")));
+        assertEquals(64, hash(JournalHasher.GENESIS, "Sale", BigDecimal.TEN).length());
+    }
+
+    @Test
+    public void testAnyChangeAltersHash() {
+        String original = hash(JournalHasher.GENESIS, "Sale", new BigDecimal("100.00"));
+        assertNotEquals(original, hash(JournalHasher.GENESIS, "Sale", new BigDecimal("100.01")));
+        assertNotEquals(original, hash(JournalHasher.GENESIS, "Sale.", new BigDecimal("100.00")));
+        assertNotEquals(original, hash(original, "Sale", new BigDecimal("100.00")));
+    }
+
+    @Test
+    public void testFieldBoundariesAreUnambiguous() {
+        String a = new JournalHasher().start(JournalHasher.GENESIS, 1L, 1L)
+                .entry("B-1", DATE, "ab", "c", "MANUAL", POSTED).finish();
+        String b = new JournalHasher().start(JournalHasher.GENESIS, 1L, 1L)
+                .entry("B-1", DATE, "a", "bc", "MANUAL", POSTED).finish();
+        String nullVsEmpty = new JournalHasher().start(JournalHasher.GENESIS, 1L, 1L)
+                .entry("B-1", DATE, "ab", "", "MANUAL", POSTED).finish();
+        String withNull = new JournalHasher().start(JournalHasher.GENESIS, 1L, 1L)
+                .entry("B-1", DATE, "ab", null, "MANUAL", POSTED).finish();
+        assertNotEquals(a, b);
+        assertNotEquals(nullVsEmpty, withNull);
+    }
+}
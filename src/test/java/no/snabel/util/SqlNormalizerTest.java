@@ -0,0 +1,50 @@
+package no.snabel.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SqlNormalizerTest {
+
+    private static String normalize(String sql) {
+        return SqlNormalizer.normalize(sql, 1000);
+    }
+
+    @Test
+    public void testBindMarkersAndLiteralsBecomePlaceholders() {
+        assertEquals("select i1_0.id from invoices i1_0 where i1_0.customer_id=? and i1_0.status=? limit ?",
+                normalize("select i1_0.id from invoices i1_0 where i1_0.customer_id=$1 and i1_0.status='DRAFT' limit 50"));
+        assertEquals("select * from users where name=?", normalize("select * from users where name='O''Brien'"));
+    }
+
+    @Test
+    public void testInListsOfAnyLengthNormalizeAlike() {
+        String one = normalize("select * from accounts where id in ($1)");
+        String three = normalize("select * from accounts where id in ($1, $2,$3)");
+        assertEquals("select * from accounts where id in (?)", one);
+        assertEquals("select * from accounts where id in (?, ...)", three);
+        assertEquals(three, normalize("select * from accounts where id in (7, 8, 9, 10)"));
+    }
+
+    @Test
+    public void testMultiRowValuesCollapse() {
+        assertEquals("insert into audit_log (a, b) values (?, ...), ...",
+                normalize("insert into audit_log (a, b) values ($1, $2), ($3, $4), ($5, $6)"));
+    }
+
+    @Test
+    public void testIdentifiersAreKept() {
+        assertEquals("select t1_0.col2 from table3 t1_0", normalize("select t1_0.col2 from table3 t1_0"));
+    }
+
+    @Test
+    public void testCommentsAndWhitespaceAreRemoved() {
+        assertEquals("select ? from dual",
+                normalize("/* load invoices */\n  select   1 -- trailing\n  from dual"));
+    }
+
+    @Test
+    public void testLongStatementsAreTruncated() {
+        assertEquals("select...", SqlNormalizer.normalize("select * from invoices", 6));
+    }
+}